@@ -0,0 +1,44 @@
+package com.ukom.aboot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BootSimulator 每秒可以完成的模拟次数（参数扫描的吞吐），依赖图只在 setUp 中编译一次
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BootSimulatorBenchmark {
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND_LATTICE", "RANDOM_DAG"})
+    public GraphShapes shape;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    @Param({"CRITICAL_PATH", "FIFO"})
+    public SimulationConfig.Policy policy;
+
+    private BootSimulator simulator;
+    private SimulationConfig config;
+
+    @Setup
+    public void setUp() {
+        simulator = new BootSimulator(shape.create(size, BootStep.Lane.CPU));
+        config = SimulationConfig.of(4, 8).withPolicy(policy);
+    }
+
+    @Benchmark
+    public SimulationResult simulate() {
+        return simulator.simulate(config);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ukom.aboot;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空步骤的端到端开销：从 BootTask.start 到 onTaskFinished，包括装载、依赖检查、分发与所有步骤的完成回调，
+ * steps 计数给出平均每个步骤的耗时；traced 对比开启 BootTracer 的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BootTaskBenchmark {
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND_LATTICE", "RANDOM_DAG"})
+    public GraphShapes shape;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"COORDINATOR", "CPU"})
+    public BootStep.Lane lane;
+
+    @Param({"false", "true"})
+    public boolean lockFree;
+
+    @Param({"false", "true"})
+    public boolean traced;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long steps;
+    }
+
+    @Benchmark
+    public TaskResult run(Counters counters) throws InterruptedException {
+        BootTask task = new BootTask() {
+            @Override
+            protected void load() {
+                //BootStep 只能执行一次，每次运行都需要重新创建
+                List<BootStep> steps = shape.create(size, lane);
+                for (BootStep step : steps) loadBootStep(step);
+            }
+        };
+        task.setLockFreeCompletion(lockFree);
+        //缓冲区足够容纳所有事件
+        if (traced) task.setTracer(new BootTracer(size * 4));
+
+        final TaskResult[] result = new TaskResult[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult r) {
+                result[0] = r;
+                latch.countDown();
+            }
+        });
+        latch.await();
+        counters.steps += size;
+        return result[0];
+    }
+}
@@ -0,0 +1,88 @@
+package com.ukom.aboot;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步骤完成的处理吞吐（handleStepResult 中的依赖图部分）：完成一个步骤、释放其后继、取出下一个就绪步骤，
+ * 以每秒处理的步骤数（steps）报告
+ *
+ * 依赖图是有状态的，每次调用前重新编译（不计入耗时，但 gc 分析器统计的分配包含编译的分配，
+ * 需减去 DependencyCheckBenchmark 的结果）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompletionBenchmark {
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND_LATTICE", "RANDOM_DAG"})
+    public GraphShapes shape;
+
+    @Param({"10", "100", "1000", "10000", "50000"})
+    public int size;
+
+    private List<BootStep> steps;
+    private StepGraph graph;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long steps;
+    }
+
+    @Setup(Level.Trial)
+    public void setUpSteps() {
+        steps = shape.create(size, BootStep.Lane.COORDINATOR);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpGraph() {
+        graph = StepGraph.compile(steps).getValue();
+    }
+
+    @Benchmark
+    public int completeAll(Counters counters) {
+        StepGraph graph = this.graph;
+        int completed = 0;
+        int index;
+        while ((index = graph.pollReady()) >= 0){
+            graph.complete(index);
+            for (int dependent : graph.dependents(index)) graph.release(dependent);
+            completed++;
+        }
+        counters.steps += completed;
+        return completed;
+    }
+
+    @Benchmark
+    public int completeAllConcurrently(Counters counters) {
+        StepGraph graph = this.graph;
+        int[] stack = new int[graph.size()];
+        int top = 0;
+        int index;
+        while ((index = graph.pollReady()) >= 0) stack[top++] = index;
+
+        int completed = 0;
+        while (top > 0){
+            index = stack[--top];
+            graph.complete(index);
+            for (int dependent : graph.dependents(index)){
+                if (graph.releaseConcurrently(dependent)) stack[top++] = dependent;
+            }
+            completed++;
+        }
+        counters.steps += completed;
+        return completed;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ukom.aboot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BootTask.checkDependencyChains 的耗时：依赖检查、循环检测与依赖图编译（StepGraph.compile）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DependencyCheckBenchmark {
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND_LATTICE", "RANDOM_DAG"})
+    public GraphShapes shape;
+
+    @Param({"10", "100", "1000", "10000", "50000"})
+    public int size;
+
+    private List<BootStep> steps;
+
+    @Setup
+    public void setUp() {
+        steps = shape.create(size, BootStep.Lane.COORDINATOR);
+    }
+
+    @Benchmark
+    public Result<StepGraph> checkDependencyChains() {
+        return StepGraph.compile(steps);
+    }
+}
@@ -0,0 +1,103 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的依赖图形状，步骤均为立即成功的空步骤
+ */
+public enum GraphShapes {
+    //一条链：每个步骤依赖前一个步骤
+    CHAIN {
+        @Override
+        List<BootStep> create(int size, BootStep.Lane lane) {
+            List<BootStep> steps = new ArrayList<>(size);
+            for (int i = 0; i < size; i++){
+                NoopStep step = new NoopStep(i, lane);
+                if (i > 0) step.dependOn(steps.get(i - 1));
+                steps.add(step);
+            }
+            return steps;
+        }
+    },
+    //一个根步骤，其余步骤都依赖它
+    FAN_OUT {
+        @Override
+        List<BootStep> create(int size, BootStep.Lane lane) {
+            List<BootStep> steps = new ArrayList<>(size);
+            for (int i = 0; i < size; i++){
+                NoopStep step = new NoopStep(i, lane);
+                if (i > 0) step.dependOn(steps.get(0));
+                steps.add(step);
+            }
+            return steps;
+        }
+    },
+    //每层 4 个步骤，都依赖上一层的全部步骤，路径数随层数指数增长
+    DIAMOND_LATTICE {
+        @Override
+        List<BootStep> create(int size, BootStep.Lane lane) {
+            List<BootStep> steps = new ArrayList<>(size);
+            for (int i = 0; i < size; i++){
+                NoopStep step = new NoopStep(i, lane);
+                int layerStart = i / LATTICE_WIDTH * LATTICE_WIDTH;
+                for (int j = layerStart - LATTICE_WIDTH; j >= 0 && j < layerStart; j++){
+                    step.dependOn(steps.get(j));
+                }
+                steps.add(step);
+            }
+            return steps;
+        }
+    },
+    //每个步骤随机依赖之前的 0 ~ 4 个步骤
+    RANDOM_DAG {
+        @Override
+        List<BootStep> create(int size, BootStep.Lane lane) {
+            Random random = new Random(size);
+            List<BootStep> steps = new ArrayList<>(size);
+            for (int i = 0; i < size; i++){
+                NoopStep step = new NoopStep(i, lane);
+                int count = i == 0 ? 0 : random.nextInt(Math.min(i, 4) + 1);
+                for (int j = 0; j < count; j++) step.dependOn(steps.get(random.nextInt(i)));
+                steps.add(step);
+            }
+            return steps;
+        }
+    };
+
+    private static final int LATTICE_WIDTH = 4;
+
+    abstract List<BootStep> create(int size, BootStep.Lane lane);
+
+    static class NoopStep extends BootStep {
+        private final Type type;
+        private final Lane lane;
+
+        NoopStep(int id, Lane lane) {
+            this.type = typeOfName("step" + id);
+            this.lane = lane;
+        }
+
+        void dependOn(BootStep step) {
+            if (!stepDependencies.contains(step.getType())) addDependency(step.getType(), false);
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            callback.onStepFinished(type, Result.success());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ukom.aboot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StepProfile.load 的耗时：启动时在排序之前同步读取上次记录的耗时，几百个步骤应当在 1 ms 以内。
+ * 每次启动为每个步骤追加一条记录，launches 次启动之后文件中有 size * launches 条记录（压缩之前最多约 8 倍）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StepProfileBenchmark {
+
+    @Param({"300"})
+    public int size;
+
+    @Param({"1", "7"})
+    public int launches;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("aboot-profile", ".bin");
+        BootStep.Type[] types = new BootStep.Type[size];
+        for (int i = 0; i < size; i++) types[i] = BootStep.typeOfName("profile" + i);
+        for (int launch = 0; launch < launches; launch++){
+            StepProfile profile = new StepProfile(file);
+            for (int i = 0; i < size; i++) profile.record(types[i], 1000 + i + launch, 10);
+            profile.save();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public StepProfile load() {
+        StepProfile profile = new StepProfile(file);
+        profile.load();
+        return profile;
+    }
+}
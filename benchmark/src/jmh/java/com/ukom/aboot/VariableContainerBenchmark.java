@@ -0,0 +1,77 @@
+package com.ukom.aboot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 Type id 为下标的 VariableContainer 与原来基于 ConcurrentHashMap 的实现对比：
+ * - lookup*：依次检查并读取所有变量（每个步骤执行前的 isVariableExist + 步骤中的 getVariable），报告遍历所有变量的耗时，除以 size 即每次查找的耗时；
+ * - fill*：创建容器并写入所有变量，gc 分析器的 gc.alloc.rate.norm 即一个装满的容器占用的堆大小
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VariableContainerBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private BootStep.Type[] types;
+    private Object value;
+    private int capacity;
+
+    private VariableContainer arrayContainer;
+    private Map<BootStep.Type, Object> mapContainer;
+
+    @Setup
+    public void setUp() {
+        types = new BootStep.Type[size];
+        for (int i = 0; i < size; i++){
+            types[i] = BootStep.typeOfName("variable" + i);
+            capacity = Math.max(capacity, types[i].getId() + 1);
+        }
+        value = new Object();
+        arrayContainer = fillArray();
+        mapContainer = fillMap();
+    }
+
+    @Benchmark
+    public void lookupArray(Blackhole blackhole) {
+        for (BootStep.Type type : types){
+            if (arrayContainer.isVariableExist(type)) blackhole.consume(arrayContainer.getVariable(type));
+        }
+    }
+
+    @Benchmark
+    public void lookupMap(Blackhole blackhole) {
+        for (BootStep.Type type : types){
+            if (mapContainer.containsKey(type)) blackhole.consume(mapContainer.get(type));
+        }
+    }
+
+    @Benchmark
+    public VariableContainer fillArray() {
+        VariableContainer container = new VariableContainer();
+        container.ensureCapacity(capacity);
+        for (BootStep.Type type : types) container.putVariable(type, value);
+        return container;
+    }
+
+    @Benchmark
+    public Map<BootStep.Type, Object> fillMap() {
+        Map<BootStep.Type, Object> container = new ConcurrentHashMap<>();
+        for (BootStep.Type type : types) container.put(type, value);
+        return container;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 变量提前释放对启动期间堆峰值的影响：链状依赖图，每个步骤读取前一个步骤的变量，再产生 payloadKb 大小的变量。
+ * retention 为 RESULT 时所有变量由 TaskResult 保留到启动完成，TRANSIENT 时最后一个读取者结束即释放。
+ *
+ * 每个步骤开始执行时先 System.gc() 再读取已用的堆，peakHeapKb 为单次启动中相对启动前的最大增量，
+ * JMH 报告的是所有测量迭代之和，需除以迭代次数；每个步骤都会触发 GC，报告的耗时没有参考意义。
+ * 16 个 1 MB 的步骤，RESULT 约 15 MB，TRANSIENT 约 1.2 MB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class VariableReleaseBenchmark {
+
+    @Param({"16", "64"})
+    public int size;
+
+    @Param({"1024"})
+    public int payloadKb;
+
+    @Param({"RESULT", "TRANSIENT"})
+    public BootStep.Retention retention;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long peakHeapKb;
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            peakHeapKb = 0;
+        }
+    }
+
+    @Benchmark
+    public TaskResult run(Counters counters) throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        final long baseline = memory.getHeapMemoryUsage().getUsed();
+        final AtomicLong peak = new AtomicLong();
+
+        BootTask task = new BootTask() {
+            @Override
+            protected void load() {
+                PayloadStep previous = null;
+                for (int i = 0; i < size; i++){
+                    PayloadStep step = new PayloadStep(i, previous, memory, baseline, peak);
+                    loadBootStep(step);
+                    previous = step;
+                }
+            }
+        };
+
+        final TaskResult[] result = new TaskResult[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult r) {
+                result[0] = r;
+                latch.countDown();
+            }
+        });
+        latch.await();
+        counters.peakHeapKb = peak.get() / 1024;
+        return result[0];
+    }
+
+    private class PayloadStep extends BootStep {
+        private final Type type;
+        private final Type previous;
+        private final MemoryMXBean memory;
+        private final long baseline;
+        private final AtomicLong peak;
+
+        PayloadStep(int id, PayloadStep previous, MemoryMXBean memory, long baseline, AtomicLong peak) {
+            this.type = typeOfName("payload" + id);
+            this.previous = previous == null ? null : previous.getType();
+            this.memory = memory;
+            this.baseline = baseline;
+            this.peak = peak;
+            if (previous != null) addDependency(previous.getType(), true);
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Retention getRetention() {
+            return retention;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            System.gc();
+            long used = memory.getHeapMemoryUsage().getUsed() - baseline;
+            long max;
+            while ((max = peak.get()) < used && !peak.compareAndSet(max, used)) {
+                //重试
+            }
+            byte[] input = previous == null ? null : (byte[]) container.getVariable(previous);
+            byte[] payload = new byte[payloadKb * 1024];
+            if (input != null) payload[0] = (byte) (input[0] + 1);
+            callback.onStepFinished(type, Result.success(payload));
+        }
+    }
+}
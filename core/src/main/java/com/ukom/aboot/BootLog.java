@@ -0,0 +1,29 @@
+package com.ukom.aboot;
+
+/**
+ * 内部使用的日志入口，转发到当前 BootPlatform 的 BootLogger
+ */
+final class BootLog {
+
+    private BootLog(){ }
+
+    static void d(String tag, String msg){
+        BootPlatform.get().logger().log(BootLogger.DEBUG, tag, msg, null);
+    }
+
+    static void i(String tag, String msg){
+        BootPlatform.get().logger().log(BootLogger.INFO, tag, msg, null);
+    }
+
+    static void w(String tag, String msg){
+        BootPlatform.get().logger().log(BootLogger.WARN, tag, msg, null);
+    }
+
+    static void e(String tag, String msg){
+        BootPlatform.get().logger().log(BootLogger.ERROR, tag, msg, null);
+    }
+
+    static void e(String tag, String msg, Throwable throwable){
+        BootPlatform.get().logger().log(BootLogger.ERROR, tag, msg, throwable);
+    }
+}
@@ -0,0 +1,16 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * aBoot 的日志输出，由 BootPlatform 提供，优先级与 android.util.Log 相同
+ */
+public interface BootLogger {
+    int DEBUG = 3;
+    int INFO = 4;
+    int WARN = 5;
+    int ERROR = 6;
+
+    void log(int priority, @NonNull String tag, @NonNull String msg, @Nullable Throwable throwable);
+}
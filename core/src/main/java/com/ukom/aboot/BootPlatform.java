@@ -0,0 +1,121 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 平台相关的实现：BootTask 的工作线程与日志输出
+ *
+ * 引入 Android 模块时自动使用 HandlerThread 与 android.util.Log（见 AndroidPlatform），
+ * 否则使用普通的单线程 Executor 与标准错误输出（WARN 及以上），以便在 JVM 上运行、测试与基准测试。
+ * 也可以通过 install() 指定其他实现。
+ *
+ */
+public abstract class BootPlatform {
+    private static final String ANDROID_PLATFORM = "com.ukom.aboot.AndroidPlatform";
+
+    private static volatile BootPlatform platform;
+
+    public static BootPlatform get(){
+        BootPlatform p = platform;
+        if (p == null){
+            synchronized (BootPlatform.class){
+                if (platform == null) platform = findPlatform();
+                p = platform;
+            }
+        }
+        return p;
+    }
+
+    //替换当前的平台实现，需要在 BootTask 启动之前调用
+    public static void install(@NonNull BootPlatform p){
+        platform = p;
+    }
+
+    private static BootPlatform findPlatform(){
+        try {
+            Class<?> clazz = Class.forName(ANDROID_PLATFORM);
+            return (BootPlatform) clazz.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e){
+            return new JvmPlatform();
+        } catch (ReflectiveOperationException e){
+            throw new IllegalStateException("failed to create " + ANDROID_PLATFORM, e);
+        }
+    }
+
+    //创建一个新的工作线程
+    @NonNull
+    public abstract CoordinatorExecutor newCoordinator();
+
+    @NonNull
+    public abstract BootLogger logger();
+
+    //普通 JVM 的实现
+    public static class JvmPlatform extends BootPlatform {
+        private final BootLogger logger;
+
+        public JvmPlatform(){
+            this(new StandardErrorLogger(BootLogger.WARN));
+        }
+
+        public JvmPlatform(@NonNull BootLogger logger){
+            this.logger = logger;
+        }
+
+        @NonNull
+        @Override
+        public CoordinatorExecutor newCoordinator() {
+            return new ExecutorCoordinator();
+        }
+
+        @NonNull
+        @Override
+        public BootLogger logger() {
+            return logger;
+        }
+    }
+
+    //输出不低于指定优先级的日志
+    public static class StandardErrorLogger implements BootLogger {
+        private final int minPriority;
+
+        public StandardErrorLogger(int minPriority){
+            this.minPriority = minPriority;
+        }
+
+        @Override
+        public void log(int priority, @NonNull String tag, @NonNull String msg, Throwable throwable) {
+            if (priority < minPriority) return;
+            System.err.println(tag + ": " + msg);
+            if (throwable != null) throwable.printStackTrace();
+        }
+    }
+
+    private static class ExecutorCoordinator implements CoordinatorExecutor {
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "aBoot-coordinator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        private volatile boolean isReleased;
+
+        @Override
+        public void execute(Runnable runnable) {
+            if (isReleased) throw new IllegalStateException("Already released!");
+            executor.execute(runnable);
+        }
+
+        @Override
+        public void release() {
+            isReleased = true;
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+/**
+ * 由注解处理器根据 @Step 生成的步骤注册表：步骤按拓扑序排列，依赖以下标表示，
+ * 编译期已经检查过依赖缺失与循环依赖，BootTask 装载时不再检查，也不使用反射
+ *
+ */
+public interface BootRegistry {
+
+    int size();
+
+    //创建第 index 个步骤
+    @NonNull BootStep create(int index);
+
+    //依赖的步骤的下标，都小于 index
+    @NonNull int[] dependencies(int index);
+
+    //依赖并读取其变量的步骤的下标，是 dependencies 的子集
+    @NonNull int[] variables(int index);
+
+    //依赖该步骤的步骤的下标，都大于 index
+    @NonNull int[] dependents(int index);
+}
@@ -0,0 +1,282 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次启动的事后分析，由 TaskResult.getReport() 获取，第一次访问时计算，耗时与步骤数、依赖数成线性关系
+ *
+ * - 关键路径：从最后完成的步骤出发，沿最后完成的依赖回溯到没有依赖的步骤，即实际决定启动耗时的依赖链；
+ * - 松弛时间：其他步骤从依赖完成到自身完成的耗时不变时，该步骤最多可以推迟多久完成而不推迟最后一个步骤的完成，
+ *   松弛时间大的步骤可以考虑放到 DEFERRED、IDLE 阶段；
+ * - 并行度：同时执行的步骤数随时间的变化，重试的步骤只计最后一次执行；
+ * - 工作线程延迟：步骤完成到在工作线程中被处理、就绪到被分发、COORDINATOR Lane 的步骤排队等待工作线程的时间，
+ *   无锁完成模式下前两项接近 0。
+ *
+ * 时间单位均为纳秒，以调用 BootTask.start 的时间为起点
+ *
+ */
+public final class BootReport {
+
+    private final long taskStartedAt;
+    private final BootStep.Type[] types;
+    private final BootStep.Lane[] lanes;
+    private final BootStep.Phase[] phases;
+    private final long[] readyAt;
+    private final long[] dispatchedAt;
+    private final long[] startedAt;
+    private final long[] finishedAt;
+    private final int[][] dependents;
+    private final int[] topologicalOrder;
+    //以 Type 的 id 查找步骤的下标
+    private final int[] indexes;
+
+    private boolean isAnalyzed;
+    private long endedAt;
+    private long[] slack;
+    private long[] coordinatorDelay;
+    private int[] criticalPath;
+
+    BootReport(@NonNull StepGraph graph, long taskStartedAt){
+        int size = graph.size();
+        this.taskStartedAt = taskStartedAt;
+        types = new BootStep.Type[size];
+        lanes = new BootStep.Lane[size];
+        phases = new BootStep.Phase[size];
+        readyAt = new long[size];
+        dispatchedAt = new long[size];
+        startedAt = new long[size];
+        finishedAt = new long[size];
+        dependents = new int[size][];
+        indexes = new int[graph.typeCapacity()];
+        Arrays.fill(indexes, -1);
+        for (int i = 0; i < size; i++){
+            BootStep step = graph.step(i);
+            types[i] = step.getType();
+            lanes[i] = step.getLane();
+            phases[i] = graph.phase(i);
+            readyAt[i] = graph.readyAt(i);
+            dispatchedAt[i] = graph.dispatchedAt(i);
+            startedAt[i] = graph.startedAt(i);
+            finishedAt[i] = graph.finishedAt(i);
+            dependents[i] = graph.dependents(i);
+            indexes[types[i].getId()] = i;
+        }
+        topologicalOrder = graph.topologicalOrder();
+    }
+
+    //从 BootTask.start 到最后一个步骤完成
+    public synchronized long getDurationNanos(){
+        analyze();
+        return endedAt - taskStartedAt;
+    }
+
+    //装载与依赖检查等准备工作的耗时：从 BootTask.start 到第一批步骤就绪
+    public long getPreparationNanos(){
+        long first = Long.MAX_VALUE;
+        for (long time : readyAt){
+            if (time != 0 && time < first) first = time;
+        }
+        return first == Long.MAX_VALUE ? 0 : first - taskStartedAt;
+    }
+
+    //关键路径，从没有依赖的步骤到最后完成的步骤
+    public synchronized List<BootStep.Type> getCriticalPath(){
+        analyze();
+        List<BootStep.Type> path = new ArrayList<>(criticalPath.length);
+        for (int index : criticalPath) path.add(types[index]);
+        return Collections.unmodifiableList(path);
+    }
+
+    //松弛时间，关键路径上的步骤为 0；没有装载该步骤或者启动时没有执行（懒加载）时返回 -1
+    public synchronized long getSlackNanos(@NonNull BootStep.Type type){
+        analyze();
+        int index = indexOf(type);
+        return index < 0 ? -1 : slack[index];
+    }
+
+    //松弛时间不少于 minSlackNanos 的步骤，按拓扑序排列
+    public synchronized List<BootStep.Type> getStepsWithSlack(long minSlackNanos){
+        analyze();
+        List<BootStep.Type> list = new ArrayList<>();
+        for (int index : topologicalOrder){
+            if (slack[index] >= minSlackNanos) list.add(types[index]);
+        }
+        return list;
+    }
+
+    //该步骤等待工作线程的时间，没有装载该步骤时返回 -1
+    public synchronized long getCoordinatorDelayNanos(@NonNull BootStep.Type type){
+        analyze();
+        int index = indexOf(type);
+        return index < 0 ? -1 : coordinatorDelay[index];
+    }
+
+    //所有步骤等待工作线程的时间之和
+    public synchronized long getTotalCoordinatorDelayNanos(){
+        analyze();
+        long total = 0;
+        for (long delay : coordinatorDelay) total += delay;
+        return total;
+    }
+
+    //关键路径上的步骤等待工作线程的时间之和，即工作线程直接拖慢启动的时间
+    public synchronized long getCriticalPathCoordinatorDelayNanos(){
+        analyze();
+        long total = 0;
+        for (int index : criticalPath) total += coordinatorDelay[index];
+        return total;
+    }
+
+    //平均并行度：所有步骤的执行时间之和除以启动耗时
+    public synchronized double getAverageParallelism(){
+        analyze();
+        long duration = endedAt - taskStartedAt;
+        if (duration <= 0) return 0;
+        long busy = 0;
+        for (int i = 0; i < types.length; i++){
+            if (startedAt[i] != 0) busy += finishedAt[i] - startedAt[i];
+        }
+        return (double) busy / duration;
+    }
+
+    /**
+     * 将启动耗时等分为 buckets 段，返回每段时间内平均同时执行的步骤数，
+     * 与线程数（COORDINATOR 1 个，加上 StepDispatcher 的 CPU、IO 线程数）对比即线程的利用率
+     */
+    public synchronized double[] getParallelism(int buckets){
+        if (buckets <= 0) throw new IllegalArgumentException("buckets must be positive: " + buckets);
+        analyze();
+        double[] parallelism = new double[buckets];
+        long duration = endedAt - taskStartedAt;
+        if (duration <= 0) return parallelism;
+
+        //完整覆盖的段用差分数组累加，首尾两段按覆盖的比例累加
+        double width = (double) duration / buckets;
+        int[] diff = new int[buckets + 1];
+        for (int i = 0; i < types.length; i++){
+            if (startedAt[i] == 0) continue;
+            double from = (startedAt[i] - taskStartedAt) / width;
+            double to = (finishedAt[i] - taskStartedAt) / width;
+            int first = Math.min(buckets - 1, Math.max(0, (int) from));
+            int last = Math.min(buckets - 1, Math.max(0, (int) to));
+            if (first == last){
+                parallelism[first] += to - from;
+            } else {
+                parallelism[first] += first + 1 - from;
+                parallelism[last] += to - last;
+                diff[first + 1]++;
+                diff[last]--;
+            }
+        }
+        int running = 0;
+        for (int bucket = 0; bucket < buckets; bucket++){
+            running += diff[bucket];
+            parallelism[bucket] += running;
+        }
+        return parallelism;
+    }
+
+    private int indexOf(BootStep.Type type){
+        int id = type.getId();
+        return id < indexes.length ? indexes[id] : -1;
+    }
+
+    private void analyze(){
+        if (isAnalyzed) return;
+        isAnalyzed = true;
+        int size = types.length;
+
+        //由反向邻接表得到每个步骤的依赖（CSR 格式）
+        int[] offsets = new int[size + 1];
+        for (int[] list : dependents){
+            for (int dependent : list) offsets[dependent + 1]++;
+        }
+        for (int i = 0; i < size; i++) offsets[i + 1] += offsets[i];
+        int[] dependencies = new int[offsets[size]];
+        int[] cursor = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < size; i++){
+            for (int dependent : dependents[i]) dependencies[cursor[dependent]++] = i;
+        }
+
+        //每个步骤最后完成的依赖，没有依赖时为 -1
+        int[] lastDependency = new int[size];
+        int end = -1;
+        for (int i = 0; i < size; i++){
+            lastDependency[i] = -1;
+            for (int j = offsets[i]; j < offsets[i + 1]; j++){
+                int dependency = dependencies[j];
+                if (lastDependency[i] < 0 || finishedAt[dependency] > finishedAt[lastDependency[i]]){
+                    lastDependency[i] = dependency;
+                }
+            }
+            if (end < 0 || finishedAt[i] > finishedAt[end]) end = i;
+        }
+        endedAt = end < 0 ? taskStartedAt : finishedAt[end];
+
+        int length = 0;
+        for (int index = end; index >= 0; index = lastDependency[index]) length++;
+        criticalPath = new int[length];
+        for (int index = end; index >= 0; index = lastDependency[index]) criticalPath[--length] = index;
+
+        //按拓扑逆序计算最晚完成时间：依赖它的步骤从最后一个依赖完成到自身完成的耗时不变
+        long[] latestFinish = new long[size];
+        slack = new long[size];
+        for (int i = topologicalOrder.length - 1; i >= 0; i--){
+            int index = topologicalOrder[i];
+            long latest = endedAt;
+            for (int dependent : dependents[index]){
+                long span = readyAt[dependent] != 0 ? finishedAt[dependent] - finishedAt[lastDependency[dependent]] : 0;
+                latest = Math.min(latest, latestFinish[dependent] - span);
+            }
+            latestFinish[index] = latest;
+            //未执行的懒加载步骤没有松弛时间
+            slack[index] = finishedAt[index] == 0 ? -1 : Math.max(0, latest - finishedAt[index]);
+        }
+
+        coordinatorDelay = new long[size];
+        for (int i = 0; i < size; i++){
+            long delay = 0;
+            //依赖完成到在工作线程中处理完成、使该步骤就绪
+            if (readyAt[i] != 0 && lastDependency[i] >= 0){
+                delay += Math.max(0, readyAt[i] - finishedAt[lastDependency[i]]);
+            }
+            //就绪之后等待工作线程分发，暂存等待阶段开放的时间不计入
+            if (readyAt[i] != 0 && dispatchedAt[i] != 0 && phases[i] == BootStep.Phase.CRITICAL){
+                delay += Math.max(0, dispatchedAt[i] - readyAt[i]);
+            }
+            //COORDINATOR Lane 的步骤排队等待工作线程
+            if (lanes[i] == BootStep.Lane.COORDINATOR && dispatchedAt[i] != 0 && startedAt[i] != 0){
+                delay += Math.max(0, startedAt[i] - dispatchedAt[i]);
+            }
+            coordinatorDelay[i] = delay;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        analyze();
+        StringBuilder builder = new StringBuilder("BootReport { duration: ")
+                .append((endedAt - taskStartedAt) / 1000).append(" us, preparation: ")
+                .append(getPreparationNanos() / 1000).append(" us, average parallelism: ")
+                .append(String.format("%.2f", getAverageParallelism()))
+                .append(", coordinator delay: ").append(getTotalCoordinatorDelayNanos() / 1000)
+                .append(" us (critical path: ").append(getCriticalPathCoordinatorDelayNanos() / 1000)
+                .append(" us), critical path: [");
+        for (int i = 0; i < criticalPath.length; i++){
+            int index = criticalPath[i];
+            if (i > 0) builder.append(" -> ");
+            builder.append(types[index]);
+            if (startedAt[index] != 0){
+                builder.append(" (wait ").append(readyAt[index] != 0 ? (startedAt[index] - readyAt[index]) / 1000 : 0)
+                        .append(" us, run ").append((finishedAt[index] - startedAt[index]) / 1000).append(" us)");
+            }
+        }
+        return builder.append("] }").toString();
+    }
+}
@@ -0,0 +1,145 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 多个 BootTask 共享的运行环境：一个工作线程（CoordinatorExecutor）、一个步骤调度器（StepDispatcher），
+ * 以及用于步骤超时与任务时限的定时器线程（按需创建）
+ *
+ * BootTask 默认使用进程内共享的 getDefault()，启动时不再为每次执行创建与销毁线程，
+ * 多个 BootTask 可以同时执行，公平地共享调度器的线程；工作线程中每个 BootTask 的回调按轮转的顺序交替处理（见 TaskCoordinator）。
+ * 可以在启动任务之前调用 prestart() 预先创建所有线程。
+ * shutdown() 之后不再接受新的 BootTask，已经开始执行的 BootTask 正常结束之后才释放所有线程。
+ *
+ */
+public class BootRuntime {
+    private static volatile BootRuntime defaultRuntime;
+
+    private final StepDispatcher dispatcher;
+
+    private volatile CoordinatorExecutor coordinator;
+    private volatile ScheduledThreadPoolExecutor scheduler;
+    private volatile boolean isShutdown;
+    private volatile boolean isReleased;
+    //正在使用运行环境的 BootTask，包括启动结束之后保留依赖图等待懒加载步骤的任务
+    private final Set<BootTask> tasks = new HashSet<>();
+
+    public BootRuntime(){
+        this(new StepDispatcher());
+    }
+
+    public BootRuntime(@NonNull StepDispatcher dispatcher){
+        this.dispatcher = dispatcher;
+    }
+
+    //进程内共享的默认运行环境
+    public static BootRuntime getDefault(){
+        if (defaultRuntime == null){
+            synchronized (BootRuntime.class){
+                if (defaultRuntime == null) defaultRuntime = new BootRuntime();
+            }
+        }
+        return defaultRuntime;
+    }
+
+    public StepDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    //预先创建工作线程与调度器的所有线程
+    public BootRuntime prestart(){
+        if (isShutdown) throw new IllegalStateException("The runtime has been shut down");
+        coordinator();
+        dispatcher.prestart();
+        return this;
+    }
+
+    /**
+     * 关闭运行环境：之后启动的 BootTask 抛出 IllegalStateException；正在执行的 BootTask 会继续执行完，
+     * 包括步骤的超时与重试，并正常回调 onTaskFinished，不再等待其中未被请求的懒加载步骤（以失败结束）。
+     * 最后一个 BootTask 结束之后释放工作线程、定时器与调度器的线程
+     */
+    public void shutdown(){
+        List<BootTask> attached;
+        synchronized (this){
+            if (isShutdown) return;
+            isShutdown = true;
+            attached = new ArrayList<>(tasks);
+        }
+        if (attached.isEmpty()){
+            release();
+            return;
+        }
+        for (BootTask task : attached) task.onRuntimeShutdown();
+    }
+
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+
+    //BootTask 开始执行，返回共享的工作线程
+    CoordinatorExecutor attach(@NonNull BootTask task){
+        synchronized (this){
+            if (isShutdown) throw new IllegalStateException("The runtime has been shut down");
+            tasks.add(task);
+            return coordinator();
+        }
+    }
+
+    //BootTask 执行结束，运行环境已经关闭时由最后一个结束的 BootTask 释放线程
+    void detach(@NonNull BootTask task){
+        synchronized (this){
+            if (!tasks.remove(task) || !isShutdown || !tasks.isEmpty()) return;
+        }
+        release();
+    }
+
+    private void release(){
+        synchronized (this){
+            isReleased = true;
+            if (coordinator != null) coordinator.release();
+            if (scheduler != null) scheduler.shutdownNow();
+        }
+        dispatcher.shutdown();
+    }
+
+    CoordinatorExecutor coordinator(){
+        if (coordinator == null){
+            synchronized (this){
+                if (isReleased) throw new IllegalStateException("The runtime has been shut down");
+                if (coordinator == null) coordinator = BootPlatform.get().newCoordinator();
+            }
+        }
+        return coordinator;
+    }
+
+    ScheduledExecutorService scheduler(){
+        if (scheduler == null){
+            synchronized (this){
+                if (isReleased) throw new IllegalStateException("The runtime has been shut down");
+                if (scheduler == null){
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable r) {
+                            Thread thread = new Thread(r, "aBoot-timer");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    //setRemoveOnCancelPolicy 需要 API 21，取消的超时任务到期后才从队列中移除
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+}
@@ -0,0 +1,268 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+
+/**
+ * 离线的启动调度模拟：在与 BootTask 相同的依赖图上做离散事件模拟，预测不同线程数、Lane 与调度策略下的启动耗时与关键路径
+ *
+ * 步骤的耗时来自 StepProfile 的记录，没有记录时使用 BootStep.getCost() 声明的耗时。
+ * 模拟的模型：COORDINATOR Lane 1 个线程，CPU、IO Lane 各自的线程数；就绪的步骤按调度策略进入所在 Lane 的队列，
+ * 有空闲线程时立即开始执行；步骤的完成由工作线程处理（SimulationConfig.withCompletionOverhead），之后依赖它的步骤就绪。
+ * 不模拟启动阶段（所有步骤视为 CRITICAL）、超时与重试；未被请求的懒加载步骤不在启动时执行，耗时视为 0。
+ *
+ * 依赖图只编译一次，每次模拟的耗时为 O((V + E) log V)，只分配与步骤数成正比的数组，适合参数扫描；
+ * 改动依赖关系时，用改动后的步骤重新创建 BootSimulator。非线程安全，多线程扫描时每个线程使用各自的 BootSimulator。
+ *
+ */
+public final class BootSimulator {
+
+    private static final int COORDINATOR = 0;
+
+    private final StepGraph graph;
+    private final BootStep.Type[] types;
+    private final int[] dependencyCounts;
+    private final long[] durations;
+
+    //每次模拟的状态，按步骤数一次性分配，多次模拟之间复用
+    private final int[] remaining;
+    private final long[] keys;
+    private final long[] finishAt;
+    private final int[] lanes;
+    private final int[][] readyHeaps = new int[3][];
+    private final int[] readySizes = new int[3];
+    //事件：步骤完成或步骤就绪，编码为 index * 2 + kind
+    private final int[] events;
+    private final long[] eventTimes;
+    private int eventCount;
+    private long readySequence;
+
+    public BootSimulator(@NonNull Collection<BootStep> steps){
+        this(steps, null);
+    }
+
+    /**
+     * @param steps 与 BootTask 装载的相同的步骤，只读取依赖、Lane 与耗时，不会执行
+     * @param profile 为 null 时使用声明的耗时
+     * @throws TaskDependenciesException 依赖缺失或存在循环依赖
+     */
+    public BootSimulator(@NonNull Collection<BootStep> steps, @Nullable StepProfile profile){
+        Result<StepGraph> result = StepGraph.compile(steps);
+        if (!result.isSuccessful()) throw new TaskDependenciesException(result.getMessage());
+        graph = result.getValue();
+
+        int size = graph.size();
+        types = new BootStep.Type[size];
+        dependencyCounts = new int[size];
+        durations = new long[size];
+        for (int i = 0; i < size; i++){
+            BootStep step = graph.step(i);
+            types[i] = step.getType();
+            dependencyCounts[i] = step.stepDependencies.size();
+            long micros = profile == null ? -1 : profile.getCostMicros(step.getType());
+            durations[i] = graph.isDormant(i) ? 0 : micros >= 0 ? micros : Math.max(0, step.getCost()) * 1000;
+        }
+
+        remaining = new int[size];
+        keys = new long[size];
+        finishAt = new long[size];
+        lanes = new int[size];
+        for (int lane = 0; lane < readyHeaps.length; lane++) readyHeaps[lane] = new int[size];
+        events = new int[size * 2];
+        eventTimes = new long[size * 2];
+    }
+
+    //用于模拟的步骤耗时（微秒），没有该步骤时返回 -1
+    public long getDurationMicros(@NonNull BootStep.Type type){
+        int index = graph.indexOf(type);
+        return index < 0 ? -1 : durations[index];
+    }
+
+    public SimulationResult simulate(@NonNull SimulationConfig config){
+        int size = types.length;
+        long[] duration = durations.clone();
+        for (int i = 0; i < size; i++){
+            Long override = config.durations().isEmpty() ? null : config.durations().get(types[i]);
+            if (override != null) duration[i] = override;
+            BootStep.Lane lane = config.lanes().isEmpty() ? null : config.lanes().get(types[i]);
+            lanes[i] = (lane != null ? lane : graph.step(i).getLane()).ordinal();
+        }
+        prepareKeys(config.getPolicy(), duration);
+
+        System.arraycopy(dependencyCounts, 0, remaining, 0, size);
+        for (int lane = 0; lane < readySizes.length; lane++) readySizes[lane] = 0;
+        eventCount = 0;
+        readySequence = 0;
+        int[] idle = {1, config.getCpuThreads(), config.getIoThreads()};
+        long[] busy = new long[3];
+        long overhead = config.getCompletionOverheadMicros();
+        //工作线程（COORDINATOR Lane 的线程）空闲的时间
+        long coordinatorFreeAt = 0;
+
+        for (int i = 0; i < size; i++){
+            if (remaining[i] == 0) offer(i, config.getPolicy());
+        }
+        long time = 0;
+        while (true){
+            //有空闲线程的 Lane 取出就绪的步骤开始执行
+            for (int lane = 0; lane < readyHeaps.length; lane++){
+                while (idle[lane] > 0 && readySizes[lane] > 0){
+                    int index = pollReady(lane);
+                    long start = lane == COORDINATOR ? Math.max(time, coordinatorFreeAt) : time;
+                    finishAt[index] = start + duration[index];
+                    if (lane == COORDINATOR) coordinatorFreeAt = finishAt[index];
+                    busy[lane] += duration[index];
+                    idle[lane]--;
+                    pushEvent(index * 2, finishAt[index]);
+                }
+            }
+            if (eventCount == 0) break;
+
+            time = eventTimes[0];
+            int event = pollEvent();
+            int index = event >>> 1;
+            if ((event & 1) == 0){
+                //步骤完成，在工作线程中处理之后依赖它的步骤就绪
+                idle[lanes[index]]++;
+                long handledAt = time;
+                if (overhead > 0){
+                    handledAt = Math.max(time, coordinatorFreeAt) + overhead;
+                    coordinatorFreeAt = handledAt;
+                    busy[COORDINATOR] += overhead;
+                }
+                pushEvent(index * 2 + 1, handledAt);
+            } else {
+                for (int dependent : graph.dependents(index)){
+                    if (--remaining[dependent] == 0) offer(dependent, config.getPolicy());
+                }
+            }
+        }
+
+        return new SimulationResult(config, makespan(size), types, criticalPath(), finishAt.clone(), busy);
+    }
+
+    //出队的排序键，越小越先执行
+    private void prepareKeys(SimulationConfig.Policy policy, long[] duration){
+        if (policy != SimulationConfig.Policy.CRITICAL_PATH){
+            for (int i = 0; i < keys.length; i++) keys[i] = i;
+            return;
+        }
+        //到终点的最长路径，与 StepGraph.prioritize 相同
+        int[] order = graph.topologicalOrder();
+        for (int i = order.length - 1; i >= 0; i--){
+            int index = order[i];
+            long longest = 0;
+            for (int dependent : graph.dependents(index)){
+                if (-keys[dependent] > longest) longest = -keys[dependent];
+            }
+            keys[index] = -(duration[index] + longest);
+        }
+    }
+
+    private void offer(int index, SimulationConfig.Policy policy){
+        if (policy == SimulationConfig.Policy.FIFO) keys[index] = readySequence++;
+        int lane = lanes[index];
+        int[] heap = readyHeaps[lane];
+        int cursor = readySizes[lane]++;
+        while (cursor > 0){
+            int parent = (cursor - 1) >>> 1;
+            if (!before(index, heap[parent])) break;
+            heap[cursor] = heap[parent];
+            cursor = parent;
+        }
+        heap[cursor] = index;
+    }
+
+    private int pollReady(int lane){
+        int[] heap = readyHeaps[lane];
+        int head = heap[0];
+        int size = --readySizes[lane];
+        if (size == 0) return head;
+        int index = heap[size];
+        int cursor = 0;
+        int half = size >>> 1;
+        while (cursor < half){
+            int child = 2 * cursor + 1;
+            if (child + 1 < size && before(heap[child + 1], heap[child])) child++;
+            if (!before(heap[child], index)) break;
+            heap[cursor] = heap[child];
+            cursor = child;
+        }
+        heap[cursor] = index;
+        return head;
+    }
+
+    private boolean before(int a, int b){
+        return keys[a] != keys[b] ? keys[a] < keys[b] : a < b;
+    }
+
+    //事件按时间排序，同一时间先处理完成（偶数）再处理就绪
+    private void pushEvent(int event, long time){
+        int cursor = eventCount++;
+        while (cursor > 0){
+            int parent = (cursor - 1) >>> 1;
+            if (!eventBefore(event, time, events[parent], eventTimes[parent])) break;
+            events[cursor] = events[parent];
+            eventTimes[cursor] = eventTimes[parent];
+            cursor = parent;
+        }
+        events[cursor] = event;
+        eventTimes[cursor] = time;
+    }
+
+    private int pollEvent(){
+        int head = events[0];
+        int size = --eventCount;
+        if (size == 0) return head;
+        int event = events[size];
+        long time = eventTimes[size];
+        int cursor = 0;
+        int half = size >>> 1;
+        while (cursor < half){
+            int child = 2 * cursor + 1;
+            if (child + 1 < size && eventBefore(events[child + 1], eventTimes[child + 1], events[child], eventTimes[child])) child++;
+            if (!eventBefore(events[child], eventTimes[child], event, time)) break;
+            events[cursor] = events[child];
+            eventTimes[cursor] = eventTimes[child];
+            cursor = child;
+        }
+        events[cursor] = event;
+        eventTimes[cursor] = time;
+        return head;
+    }
+
+    private static boolean eventBefore(int a, long timeA, int b, long timeB){
+        return timeA != timeB ? timeA < timeB : a < b;
+    }
+
+    private long makespan(int size){
+        long makespan = 0;
+        for (int i = 0; i < size; i++) makespan = Math.max(makespan, finishAt[i]);
+        return makespan;
+    }
+
+    //从最后完成的步骤沿最后完成的依赖回溯
+    private int[] criticalPath(){
+        int end = -1;
+        for (int i = 0; i < finishAt.length; i++){
+            if (end < 0 || finishAt[i] > finishAt[end]) end = i;
+        }
+        int length = 0;
+        for (int index = end; index >= 0; index = lastDependency(index)) length++;
+        int[] path = new int[length];
+        for (int index = end; index >= 0; index = lastDependency(index)) path[--length] = index;
+        return path;
+    }
+
+    private int lastDependency(int index){
+        int last = -1;
+        for (BootStep.Type type : graph.step(index).stepDependencies){
+            int dependency = graph.indexOf(type);
+            if (last < 0 || finishAt[dependency] > finishAt[last]) last = dependency;
+        }
+        return last;
+    }
+}
@@ -0,0 +1,326 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Administrator on 2018/6/20 0020.
+ *
+ * 启动步骤
+ *
+ */
+public abstract class BootStep {
+    private static final String TAG = "BootStep";
+
+    List<Type> stepDependencies = new ArrayList<>();
+    List<Type> variableDependencies = new ArrayList<>();
+    //流式依赖，同时也在 stepDependencies 中
+    List<Type> streamingDependencies = new ArrayList<>();
+
+    //展开之后所属的组合步骤
+    CompositeStep owner;
+
+    private boolean isInvalid = false;
+
+    //当前一次执行的取消标记，每次执行（包括重试）使用新的标记
+    private volatile CancellationToken cancellationToken;
+    //正在当前线程中执行的 executeImpl 所属那一次执行的取消标记
+    private static final ThreadLocal<CancellationToken> attemptToken = new ThreadLocal<>();
+
+    public abstract Type getType();
+
+    //预估耗时（毫秒），用于计算关键路径，决定多个步骤同时就绪时的执行顺序
+    public long getCost(){
+        return 1;
+    }
+
+    //步骤执行所在的 Lane，默认在 BootTask 的工作线程中执行，由 executeImpl 自行决定是否切换线程
+    public Lane getLane(){
+        return Lane.COORDINATOR;
+    }
+
+    //超时（毫秒），从开始执行时计时，超时后以失败的结果结束并取消该步骤；0 表示不限时
+    public long getTimeout(){
+        return 0;
+    }
+
+    //失败时的重试策略，默认不重试；重试期间依赖它的步骤保持等待，已经向输出流发布过元素的步骤不再重试
+    public RetryPolicy getRetryPolicy(){
+        return RetryPolicy.NONE;
+    }
+
+    //产生的变量的保留方式，默认在启动完成之后仍保留在 TaskResult 中
+    public Retention getRetention(){
+        return Retention.RESULT;
+    }
+
+    //步骤所属的启动阶段，默认立即执行；被更早阶段的步骤依赖时会随之提前
+    public Phase getPhase(){
+        return Phase.CRITICAL;
+    }
+
+    /**
+     * 懒加载：启动时不执行，直到被请求（BootTask.request、await、whenReady 或 VariableContainer.requestVariable）时
+     * 才与未执行的懒加载祖先步骤一起执行，适合只为可能用到的功能准备对象的步骤；
+     * 有非懒加载的步骤依赖它时仍在启动时执行
+     */
+    public boolean isLazy(){
+        return false;
+    }
+
+    /**
+     * 快照的失效标识（例如应用版本、输入文件的哈希），与 getSnapshotSerializer() 一起声明时，
+     * BootTask 设置了 StepSnapshot 且标识与上次保存的一致时不再执行，直接以快照中的值作为成功的结果；
+     * 只适用于结果只由失效标识决定的步骤。为 null 时不使用快照
+     */
+    public String getSnapshotKey(){
+        return null;
+    }
+
+    //快照中步骤结果的值的序列化，为 null 时不使用快照
+    public StepSnapshot.Serializer<?> getSnapshotSerializer(){
+        return null;
+    }
+
+    //步骤所属的资源组（见 ResourceGroup），就绪之后获得所有资源组的许可才会分发，结束时释放；为 null 时不限制
+    public ResourceGroup[] getResourceGroups(){
+        return null;
+    }
+
+    //有流式依赖者时输出流（StepChannel）的容量，通道满时发布元素的 put 阻塞
+    public int getChannelCapacity(){
+        return 16;
+    }
+
+    boolean hasStepDependencies(){
+        return stepDependencies != null && !stepDependencies.isEmpty();
+    }
+
+    //检查是否缺少必须的变量
+    private boolean isAllVariablesExist(VariableContainer container){
+        if (variableDependencies == null || variableDependencies.isEmpty()){
+            return true;
+        }
+        for (int i = 0; i < variableDependencies.size(); i++){
+            Type type = variableDependencies.get(i);
+            if (!container.isVariableExist(type)){
+                BootLog.e(TAG, "isAllVariablesExist: variable -- " + type + " not exists");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    //开始一次执行（包括重试），创建这一次执行的取消标记；超时只取消这一次执行的标记
+    CancellationToken newAttempt(){
+        CancellationToken token = new CancellationToken();
+        cancellationToken = token;
+        return token;
+    }
+
+    void execute(VariableContainer container, Callback callback, CancellationToken token){
+        synchronized (this){
+            if (isInvalid) {
+                callback.onStepFinished(getType(), Result.failure("This BootStep has been executed, should create a new one!"));
+                return;
+            }
+            isInvalid = true;
+        }
+        executeAttempt(container, callback, token);
+    }
+
+    //按 getRetryPolicy() 重试时再次执行，token 为 newAttempt() 创建的新标记
+    void retry(VariableContainer container, Callback callback, CancellationToken token){
+        executeAttempt(container, callback, token);
+    }
+
+    private void executeAttempt(VariableContainer container, Callback callback, CancellationToken token){
+        //依赖步骤是否完成由 BootTask 的依赖图保证
+        if (!isAllVariablesExist(container)){
+            //缺乏依赖的变量
+            BootLog.e(TAG, "execute: " + getType() + " lack of variable: " + variableDependencies);
+            callback.onStepFinished(getType(), Result.failure(getType() + " lack of variable: " + variableDependencies));
+            return;
+        }
+        //executeImpl 期间 getCancellationToken 返回这一次执行的标记，重试开始之后超时的执行仍然看到已取消
+        CancellationToken previous = attemptToken.get();
+        attemptToken.set(token);
+        try {
+            executeImpl(container, callback);
+        } finally {
+            if (previous == null) attemptToken.remove(); else attemptToken.set(previous);
+        }
+    }
+
+    /**
+     * executeImpl 中检查步骤是否已经被取消（超时、启动任务超出时限或被取消）。
+     * 在 executeImpl 中调用时返回这一次执行的标记；切换到其他线程的工作应在 executeImpl 中先取得标记再传递过去，
+     * 否则重试之后得到的是最新一次执行的标记
+     */
+    protected final CancellationToken getCancellationToken(){
+        CancellationToken token = attemptToken.get();
+        if (token != null) return token;
+        token = cancellationToken;
+        if (token == null){
+            synchronized (this){
+                if (cancellationToken == null) cancellationToken = new CancellationToken();
+                token = cancellationToken;
+            }
+        }
+        return token;
+    }
+
+    void cancel(@NonNull String reason){
+        getCancellationToken().cancel(reason);
+    }
+
+    //在 getLane() 声明的线程中调用，COORDINATOR Lane 的步骤可由方法实现者决定在当前线程，还是子线程执行
+    public abstract void executeImpl(@NonNull VariableContainer container, Callback callback);
+
+    protected void addDependency(@NonNull Type type, boolean needVariable){
+        stepDependencies.add(type);
+        if (needVariable) variableDependencies.add(type);
+    }
+
+    /**
+     * 流式依赖：依赖的步骤通过 VariableContainer.getChannel 发布第一个元素时即开始执行，
+     * 执行期间从同一个通道中读取元素，依赖的步骤结束（成功或失败）时通道关闭；
+     * 依赖的步骤没有发布任何元素时，与普通依赖一样在它成功完成之后执行。不能读取依赖的步骤的变量
+     */
+    protected void addStreamingDependency(@NonNull Type type){
+        stepDependencies.add(type);
+        streamingDependencies.add(type);
+    }
+
+    @Override
+    public String toString() {
+        return getType().getName();
+    }
+
+    public interface Callback{
+        void onStepFinished(Type type, Result result);
+    }
+
+    //启动步骤执行所在的 Lane，由 StepDispatcher 分发
+    public enum Lane {
+        //BootTask 的工作线程
+        COORDINATOR,
+        //CPU 密集型，线程数等于 CPU 核数
+        CPU,
+        //IO 密集型，独立的有界线程池
+        IO
+    }
+
+    /**
+     * 步骤产生的变量（成功结果的值）的保留方式。
+     * 无论哪种方式，变量在最后一个读取它（addDependency 时 needVariable 为 true）的步骤结束之后都会从 VariableContainer 中释放
+     */
+    public enum Retention {
+        //保留在 TaskResult 中，启动完成之后仍可以通过 getStepResult 获取
+        RESULT,
+        //只供依赖它的步骤读取，TaskResult 以及启动完成之后的 await、whenReady 得到的结果不包含值
+        TRANSIENT
+    }
+
+    //启动阶段，由 BootTask.setMilestoneSignal 与 BootTask.setIdleSignal 设置的信号开放
+    public enum Phase {
+        //立即执行
+        CRITICAL,
+        //里程碑（例如首帧绘制完成）之后执行
+        DEFERRED,
+        //里程碑之后，每次空闲时执行一个
+        IDLE
+    }
+
+    //启动步骤类型
+    //同名的 Type 是同一个对象，分配连续的 id，用作依赖图、变量与结果的数组下标；
+    //不再被引用的 Type 被回收之后，它的 id 分配给之后新建的 Type，id 的范围与同时存在的 Type 数量相当
+    public static class Type {
+        private static final ConcurrentHashMap<String, Entry> registry = new ConcurrentHashMap<>();
+        private static final ReferenceQueue<Type> collected = new ReferenceQueue<>();
+        //已经分配的 id，新建的 Type 使用最小的空闲 id，只在持有 registry 的锁时访问
+        private static final BitSet ids = new BitSet();
+
+        private final String name;
+        private final int id;
+
+        private Type(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        //仍在使用的 id 的上界，所有存在的 Type 的 id 都小于它
+        static int count(){
+            synchronized (registry){
+                return ids.length();
+            }
+        }
+
+        static Type intern(@NonNull String name){
+            Entry entry = registry.get(name);
+            Type type = entry == null ? null : entry.get();
+            if (type != null) return type;
+            synchronized (registry){
+                expungeCollected();
+                entry = registry.get(name);
+                type = entry == null ? null : entry.get();
+                if (type == null){
+                    int id = ids.nextClearBit(0);
+                    ids.set(id);
+                    type = new Type(name, id);
+                    registry.put(name, new Entry(type));
+                }
+                return type;
+            }
+        }
+
+        //释放已经被回收的 Type 的 id；保存变量与结果的数组同时保存 Type，有数据的 id 不会被回收
+        private static void expungeCollected(){
+            Reference<? extends Type> reference;
+            while ((reference = collected.poll()) != null){
+                Entry entry = (Entry) reference;
+                ids.clear(entry.id);
+                registry.remove(entry.name, entry);
+            }
+        }
+
+        private static class Entry extends WeakReference<Type> {
+            final String name;
+            final int id;
+
+            Entry(Type type){
+                super(type, collected);
+                this.name = type.name;
+                this.id = type.id;
+            }
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    protected static Type typeOfName(@NonNull String name){
+        return Type.intern(name);
+    }
+
+}
@@ -0,0 +1,1345 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by Administrator on 2018/6/20 0020.
+ *
+ * 一次启动任务(BootTask)由一系列启动步骤(BootStep)构成
+ *
+ * 注：不支持重复的同类型启动步骤
+ *
+ * 有未被请求的懒加载步骤（BootStep.isLazy）时，onTaskFinished 之后仍保留依赖图与这些步骤需要的变量，
+ * 直到它们都被请求执行完成或者调用 cancel()，在此之前不能再次 start()
+ *
+ */
+public abstract class BootTask implements BootStep.Callback {
+    private static final String TAG = "BootTask";
+
+    private final VariableContainer container;
+    private final Map<BootStep.Type, BootStep> stepMap;
+
+    private final List<BootStep.Type> failedSteps;
+
+    //本次执行编译得到的依赖图，执行完成后置空
+    private StepGraph graph;
+
+    private ComplexCallback callback;
+
+    private BootRuntime runtime = BootRuntime.getDefault();
+
+    private StepProfile profile;
+
+    private StepSnapshot snapshot;
+
+    //增量模式：执行结束之后保留所有变量，供 invalidate 只重新执行失效的步骤
+    private boolean incremental;
+    //增量执行中被 invalidate 的步骤、结果发生变化的步骤，以及上一次执行的结果；完整执行时为 null
+    private Set<BootStep.Type> invalidated;
+    private Set<BootStep.Type> changed;
+    private TaskResult previousResult;
+
+    private boolean lockFreeCompletion;
+
+    //为 null 时不追踪
+    private BootTracer tracer;
+
+    //load() 中装载的注册表，只在工作线程中访问
+    private BootRegistry registry;
+
+    //调用 start 的时间，BootReport 的时间起点
+    private long taskStartedAt;
+
+    //启动任务的时限（毫秒），0 表示不限时
+    private long deadlineMillis;
+    private Future<?> deadline;
+
+    private PhaseSignal milestoneSignal;
+    private PhaseSignal idleSignal;
+    private final PhaseSignal.Listener milestoneListener = new PhaseSignal.Listener() {
+        @Override
+        public void onSignal() {
+            onPhaseSignal(BootStep.Phase.DEFERRED);
+        }
+    };
+    private final PhaseSignal.Listener idleListener = new PhaseSignal.Listener() {
+        @Override
+        public void onSignal() {
+            onPhaseSignal(BootStep.Phase.IDLE);
+        }
+    };
+
+    private TaskResult taskResult;
+
+    //已经回调 onTaskFinished，只剩下懒加载的步骤，只在工作线程中访问
+    private boolean isBootFinished;
+
+    //request 返回的 Future，同一个步骤的请求共享一个
+    private final ConcurrentHashMap<BootStep.Type, StepFuture> requests = new ConcurrentHashMap<>();
+
+    //最近一次执行的结果，供执行完成之后的 await/whenReady 使用
+    private volatile TaskResult lastTaskResult;
+
+    private final StepWaiters waiters = new StepWaiters();
+
+    private volatile CoordinatorExecutor executor;
+    //该 BootTask 在共享工作线程上的队列，与其他 BootTask 轮转执行
+    private TaskCoordinator coordinator;
+
+    public BootTask(){
+        failedSteps = new CopyOnWriteArrayList<>();
+        container = new VariableContainer();
+        container.setLoader(new VariableContainer.Loader() {
+            @NonNull
+            @Override
+            public Future<Object> request(@NonNull BootStep.Type type) {
+                return BootTask.this.request(type);
+            }
+        });
+        stepMap = new HashMap<>();
+    }
+
+    //装载 BootStep
+    protected abstract void load();
+
+    protected void loadBootStep(BootStep step){
+        stepMap.put(step.getType(), step);
+    }
+
+    /**
+     * 装载注解处理器生成的注册表（见 Step），只装载注册表时不再检查依赖；
+     * 同时用 loadBootStep 装载了其他步骤时，与其他步骤一起检查
+     */
+    protected void loadRegistry(@NonNull BootRegistry registry){
+        this.registry = registry;
+    }
+
+    //作为组合步骤的子图（见 CompositeStep）装载步骤，不执行
+    List<BootStep> collectSteps(){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+        }
+        stepMap.clear();
+        registry = null;
+        load();
+        List<BootStep> steps = new ArrayList<>(stepMap.values());
+        if (registry != null) Collections.addAll(steps, StepGraph.createSteps(registry));
+        registry = null;
+        stepMap.clear();
+        return steps;
+    }
+
+    //设置执行的运行环境（工作线程与步骤调度器），默认使用进程内共享的 BootRuntime.getDefault()
+    public void setRuntime(@NonNull BootRuntime runtime){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.runtime = runtime;
+        }
+    }
+
+    /**
+     * 设置耗时记录，每次执行完成后记录各步骤的耗时（在 IO Lane 中异步写入），下次执行时以记录的耗时计算步骤的优先级
+     * @param profile 为 null 时不记录，使用 BootStep.getCost() 声明的耗时
+     */
+    public void setProfile(@Nullable StepProfile profile){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.profile = profile;
+        }
+    }
+
+    /**
+     * 设置结果快照，声明了快照的步骤（BootStep.getSnapshotKey）在失效标识一致时以快照恢复结果，不再执行；
+     * 执行产生的新结果在 onTaskFinished 之后异步写入，不占用启动时间
+     * @param snapshot 为 null 时不使用快照
+     */
+    public void setSnapshot(@Nullable StepSnapshot snapshot){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * 设置增量模式：执行结束之后不再释放变量（包括 Retention.TRANSIENT 的变量），
+     * 之后可以调用 invalidate 只重新执行失效的步骤及其后继；start() 仍然完整执行
+     */
+    public void setIncremental(boolean enabled){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.incremental = enabled;
+        }
+    }
+
+    /**
+     * 无锁的步骤完成模式：步骤完成的回调不再切换到 BootTask 的工作线程处理，
+     * 而是在回调的线程中直接更新依赖计数，由使依赖计数归零的线程分发该步骤。
+     * 每个步骤仍然只会执行一次，onTaskFinished 也只会回调一次（在 BootTask 的工作线程中）。
+     *
+     * 注：开启后 ComplexCallback.onStepFinished 会在各个步骤回调的线程中并发调用
+     */
+    public void setLockFreeCompletion(boolean enabled){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.lockFreeCompletion = enabled;
+        }
+    }
+
+    /**
+     * 设置追踪记录，记录每个步骤的就绪、分发、开始与结束，可以导出为 Chrome trace-event JSON（BootTracer.writeChromeTrace）
+     * @param tracer 为 null 时不追踪
+     */
+    public void setTracer(@Nullable BootTracer tracer){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.tracer = tracer;
+        }
+    }
+
+    /**
+     * 设置里程碑信号（例如首帧绘制完成），DEFERRED 阶段的步骤在信号到来之后执行
+     * @param signal 为 null 时 DEFERRED 阶段的步骤与 CRITICAL 阶段一样立即执行
+     */
+    public void setMilestoneSignal(@Nullable PhaseSignal signal){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.milestoneSignal = signal;
+        }
+    }
+
+    /**
+     * 设置空闲信号，里程碑之后每次信号到来时执行一个 IDLE 阶段的步骤；上一个步骤结束之前到来的信号被忽略
+     * @param signal 为 null 时 IDLE 阶段的步骤在里程碑之后全部执行
+     */
+    public void setIdleSignal(@Nullable PhaseSignal signal){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.idleSignal = signal;
+        }
+    }
+
+    /**
+     * 设置启动任务的时限，从 start() 开始计时，超出时限后所有未完成的步骤以失败的结果（TimeoutException）结束
+     * @param timeout 为 0 时不限时
+     */
+    public void setDeadline(long timeout, @NonNull TimeUnit unit){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            this.deadlineMillis = unit.toMillis(timeout);
+        }
+    }
+
+    public void start(Callback callback){
+        start(new CallbackWrapper(callback));
+    }
+
+    public void start(final ComplexCallback callback){
+        start(callback, null);
+    }
+
+    public void invalidate(Callback callback, @NonNull BootStep.Type... types){
+        invalidate(new CallbackWrapper(callback), types);
+    }
+
+    /**
+     * 增量执行（需要 setIncremental(true) 并且已经执行过一次）：重新装载步骤，只执行 types 中的步骤及其所有后继，
+     * 上一次执行中没有结果的步骤（新增的步骤、未被请求的懒加载步骤）也重新计入；
+     * 其他步骤沿用上一次的结果与保留的变量。依赖的步骤的结果都与上一次相等（equals）时，后继步骤直接沿用上一次的结果，不再执行
+     */
+    public void invalidate(ComplexCallback callback, @NonNull BootStep.Type... types){
+        start(callback, new HashSet<>(Arrays.asList(types)));
+    }
+
+    private void start(final ComplexCallback callback, final Set<BootStep.Type> invalidated){
+        synchronized (this){
+            if (executor != null) throw new IllegalStateException("The task is executing");
+            if (invalidated != null && (!incremental || lastTaskResult == null || lastTaskResult.isDependenciesError()))
+                throw new IllegalStateException("invalidate requires a finished incremental execution");
+            CoordinatorExecutor shared = runtime.attach(this);
+            if (coordinator == null || coordinator.shared != shared) coordinator = new TaskCoordinator(shared);
+            executor = coordinator;
+            previousResult = invalidated != null ? lastTaskResult : null;
+            lastTaskResult = null;
+            taskStartedAt = System.nanoTime();
+        }
+        //上一次执行中已经完成的请求不再共享
+        for (Iterator<StepFuture> iterator = requests.values().iterator(); iterator.hasNext(); ){
+            if (iterator.next().isDone()) iterator.remove();
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (graph != null){
+                    BootLog.w(TAG, "start: graph is not null, did last execution finish normally ?");
+                    graph = null;
+                }
+
+                if (!stepMap.isEmpty()){
+                    BootLog.w(TAG, "start: stepMap is not empty, last execution unfinished ?");
+                    stepMap.clear();
+                }
+
+                load();
+                BootRegistry registry = BootTask.this.registry;
+                BootTask.this.registry = null;
+                if (registry != null && !stepMap.isEmpty()){
+                    //与其他步骤混合装载，需要一起检查
+                    for (BootStep step : StepGraph.createSteps(registry)) loadBootStep(step);
+                    registry = null;
+                }
+                if (stepMap.isEmpty() && (registry == null || registry.size() == 0)){
+                    BootLog.w(TAG, "start: did not load any BootStep !");
+                    TaskResult taskResult = new TaskResult();
+                    taskResult.setResult(true);
+                    lastTaskResult = taskResult;
+                    detach();
+                    waiters.completeAll(Result.failure("did not load any BootStep"));
+                    callback.onTaskFinished(taskResult);
+                    return;
+                }
+
+                //检查依赖链是否完备，是否存在循环依赖；注册表在编译期已经检查过
+                Result<StepGraph> result = registry != null
+                        ? StepGraph.fromRegistry(registry)
+                        : checkDependencyChains();
+                if (!result.isSuccessful()){
+                    BootLog.w(TAG, "start: checkDependencyChains failed: " + result.getMessage());
+                    stepMap.clear();
+                    TaskResult taskResult = new TaskResult(new TaskDependenciesException(result.getMessage()));
+                    lastTaskResult = taskResult;
+                    detach();
+                    waiters.completeAll(Result.failure(result.getMessage()));
+                    callback.onTaskFinished(taskResult);
+                    return;
+                }
+
+                //依赖图持有所有步骤，stepMap 只用于装载与检查
+                StepGraph compiled = result.getValue();
+                stepMap.clear();
+
+                //变量与结果以 Type 的 id 为下标，执行之前一次性分配
+                container.ensureCapacity(compiled.typeCapacity());
+                taskResult = new TaskResult(compiled.typeCapacity());
+                if (invalidated != null){
+                    BootTask.this.invalidated = invalidated;
+                    changed = Collections.newSetFromMap(new ConcurrentHashMap<BootStep.Type, Boolean>());
+                    graph = invalidatedSubgraph(compiled);
+                } else {
+                    //增量模式下完整执行，不沿用保留的变量
+                    if (incremental) container.clear();
+                    graph = compiled;
+                }
+                if (profile != null) prioritizeByProfile();
+                BootTask.this.callback = callback;
+                openChannels(graph);
+                //在 start() 之前登记的等待
+                for (BootStep.Type type : waiters.types()) checkWaiter(type);
+
+                if (milestoneSignal == null) graph.openDeferred();
+                if (idleSignal == null) graph.openIdle();
+                if (deadlineMillis > 0) scheduleDeadline();
+                //只有未被请求的懒加载步骤
+                if (graph.isAllFinished()){
+                    taskFinished();
+                    return;
+                }
+                markRootsReady();
+                executeStepsWithoutDependency();
+                //所有步骤都在工作线程中同步完成时，启动已经结束
+                if (graph == null || isBootFinished) return;
+                //信号可能立即回调，在依赖图准备好之后再监听
+                if (milestoneSignal != null) milestoneSignal.observe(milestoneListener);
+                if (idleSignal != null) idleSignal.observe(idleListener);
+            }
+        });
+    }
+
+    /**
+     * 阻塞等待某个步骤完成，等待期间该步骤及其未完成的祖先步骤先于其他就绪的步骤执行。
+     * 可以在 start() 之前调用；没有正在进行的执行时，返回最近一次执行中该步骤的结果。
+     * 被阻塞的时间记录在 TaskResult.getBlockedNanos 中。
+     *
+     * 注：不能在 BootTask 的工作线程（COORDINATOR Lane 的步骤）中调用
+     * @return 步骤的结果，步骤没有被装载或依赖检查失败时为失败的 Result
+     * @throws TimeoutException 超时，步骤仍会继续执行
+     */
+    public Result<?> await(@NonNull BootStep.Type type, long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        StepWaiters.Waiter waiter = StepWaiters.Waiter.blocking(type);
+        long start = System.nanoTime();
+        addWaiter(waiter);
+        Result<?> result = waiter.await(timeout, unit);
+        BootLog.i(TAG, "await: " + type + " blocked " + (System.nanoTime() - start) / 1000 + " us");
+        if (result == null) throw new TimeoutException("await " + type + " timed out");
+        return result;
+    }
+
+    /**
+     * 异步等待某个步骤完成，与 await 一样会提升该步骤及其祖先步骤的优先级。
+     * 回调在 BootTask 的工作线程或者完成该步骤的线程中调用，步骤已经完成时可能在当前线程中直接调用
+     */
+    public void whenReady(@NonNull BootStep.Type type, @NonNull BootStep.Callback callback){
+        addWaiter(StepWaiters.Waiter.async(type, callback));
+    }
+
+    /**
+     * 请求某个步骤的变量，与 whenReady 一样会提升该步骤及其祖先步骤的优先级；
+     * 未执行的懒加载步骤（BootStep.isLazy）及其懒加载的祖先步骤此时才开始执行，可以在 onTaskFinished 之后调用。
+     * 同一个步骤的请求共享一个 Future，步骤只会执行一次
+     * @return 步骤成功时为步骤产生的变量，失败时 get 抛出 ExecutionException
+     */
+    public @NonNull Future<Object> request(@NonNull BootStep.Type type){
+        StepFuture future = requests.get(type);
+        if (future != null) return future;
+        StepFuture created = new StepFuture();
+        future = requests.putIfAbsent(type, created);
+        if (future != null) return future;
+        whenReady(type, created);
+        return created;
+    }
+
+    private void addWaiter(final StepWaiters.Waiter waiter){
+        waiters.add(waiter);
+        CoordinatorExecutor executor;
+        TaskResult lastTaskResult;
+        synchronized (this){
+            executor = this.executor;
+            lastTaskResult = this.lastTaskResult;
+        }
+
+        if (executor != null){
+            //正在执行，依赖图只能在工作线程中访问
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    checkWaiter(waiter.type);
+                }
+            });
+        } else if (lastTaskResult != null){
+            completeWaiterFromLast(waiter.type, lastTaskResult);
+        }
+        //否则尚未执行，在 start() 中处理
+    }
+
+    //在工作线程中检查被等待的步骤：已完成则直接通知，否则提升优先级
+    private void checkWaiter(BootStep.Type type){
+        final StepGraph graph = this.graph;
+        if (graph == null){
+            TaskResult lastTaskResult = this.lastTaskResult;
+            if (lastTaskResult != null) completeWaiterFromLast(type, lastTaskResult);
+            return;
+        }
+
+        int index = graph.indexOf(type);
+        if (index < 0){
+            //增量执行中沿用上一次结果的步骤
+            Result<?> result = taskResult.getStepResult(type);
+            waiters.complete(type, result != null ? result : Result.failure("步骤 [ " + type + " ] 没有被装载"), taskResult);
+        } else if (graph.isFinished(index)){
+            waiters.complete(type, taskResult.getStepResult(type), taskResult);
+        } else {
+            boost(graph, index);
+            if (graph.isDormant(index)) activate(graph, index);
+        }
+    }
+
+    private void completeWaiterFromLast(BootStep.Type type, TaskResult lastTaskResult){
+        Result<?> result = lastTaskResult.getStepResult(type);
+        if (result == null){
+            result = lastTaskResult.isDependenciesError()
+                    ? Result.failure(lastTaskResult.getDependenciesException().getMessage())
+                    : Result.failure("步骤 [ " + type + " ] 没有被装载");
+        }
+        waiters.complete(type, result, null);
+    }
+
+    //提升被等待的步骤及其祖先步骤的优先级，已经在线程池中排队的步骤重新排序
+    private void boost(StepGraph graph, int index){
+        int[] boosted = graph.boost(index);
+        BootLog.d(TAG, "boost: " + graph.step(index) + ", steps: " + boosted.length);
+        for (int i : boosted){
+            Runnable runnable = graph.pendingRunnable(i);
+            if (runnable != null){
+                runtime.getDispatcher().reprioritize(this, graph.step(i).getLane(), runnable, graph.priority(i));
+            }
+        }
+    }
+
+    //请求懒加载的步骤：该步骤及其未被请求的懒加载祖先步骤计入本次执行，依赖已经失败的步骤直接判定失败
+    private void activate(StepGraph graph, int index){
+        int[] activated = graph.activate(index);
+        BootLog.d(TAG, "activate: " + graph.step(index) + ", steps: " + activated.length);
+        for (int step : activated){
+            int failed = graph.failedDependency(step);
+            if (failed < 0){
+                //释放需求计数，依赖都已成功完成时就绪
+                if (graph.release(step)) markReady(graph, step, null);
+                continue;
+            }
+            if (!graph.doom(step) || !graph.claim(step)) continue;
+            Result result = Result.failure("依赖的步骤 [ " + graph.step(failed).getType() + " ] 失败");
+            if (recordResult(graph, step, result, 0) == 0 || failDependents(graph, step)){
+                taskFinished();
+                return;
+            }
+        }
+        executeStepsWithoutDependency();
+    }
+
+    //信号可能在任意线程回调，切换到工作线程开放阶段
+    private void onPhaseSignal(final BootStep.Phase phase){
+        CoordinatorExecutor executor = this.executor;
+        if (executor == null) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                //执行已经结束
+                if (graph == null) return;
+                BootLog.d(TAG, "onPhaseSignal: " + phase);
+                if (phase == BootStep.Phase.DEFERRED){
+                    graph.openDeferred();
+                } else if (!graph.releaseIdle()){
+                    return;
+                }
+                executeStepsWithoutDependency();
+            }
+        });
+    }
+
+    //检查依赖链是否完备，是否存在循环依赖，通过后得到编译好的依赖图
+    private Result<StepGraph> checkDependencyChains(){
+        BootLog.d(TAG, "checkDependencyChains: " + stepMap.keySet());
+        return StepGraph.compile(stepMap.values());
+    }
+
+    //增量执行的子图：失效的步骤及其所有后继，以及上一次没有结果的步骤；其他步骤的结果直接写入 TaskResult
+    private StepGraph invalidatedSubgraph(StepGraph compiled){
+        boolean[] included = new boolean[compiled.size()];
+        int count = 0;
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < compiled.size(); i++){
+            BootStep.Type type = compiled.step(i).getType();
+            if (invalidated.contains(type) || previousResult.getStepResult(type) == null){
+                included[i] = true;
+                count++;
+                queue.add(i);
+            }
+        }
+        Integer index;
+        while ((index = queue.poll()) != null){
+            for (int dependent : compiled.dependents(index)){
+                if (included[dependent]) continue;
+                included[dependent] = true;
+                count++;
+                queue.add(dependent);
+            }
+        }
+
+        for (int i = 0; i < compiled.size(); i++){
+            if (included[i]) continue;
+            BootStep.Type type = compiled.step(i).getType();
+            Result<?> result = previousResult.getStepResult(type);
+            taskResult.setStepResult(type, result);
+            if (!result.isSuccessful()) failedSteps.add(type);
+        }
+        BootLog.d(TAG, "invalidatedSubgraph: " + invalidated + ", steps: " + count);
+        return compiled.subgraph(included);
+    }
+
+    //增量执行中依赖的步骤（以及步骤本身）都没有失效或变化，沿用上一次成功的结果
+    private boolean isUnaffected(BootStep step){
+        if (changed == null || invalidated.contains(step.getType())) return false;
+        Result<?> previous = previousResult.getStepResult(step.getType());
+        if (previous == null || !previous.isSuccessful()) return false;
+        for (BootStep.Type dependency : step.stepDependencies){
+            if (changed.contains(dependency)) return false;
+        }
+        return true;
+    }
+
+    //与上一次的结果比较，在新的变量写入之前调用
+    private boolean isChanged(BootStep.Type type, Result result){
+        Result<?> previous = previousResult.getStepResult(type);
+        if (previous == null || !previous.isSuccessful() || !result.isSuccessful()) return true;
+        Object value = container.getVariable(type);
+        return value == null ? result.getValue() != null : !value.equals(result.getValue());
+    }
+
+    //为有流式依赖者的步骤创建输出流，发布第一个元素时提前释放流式依赖者
+    private void openChannels(final StepGraph graph){
+        for (int i = 0; i < graph.size(); i++){
+            int consumers = graph.streamingDependents(i).length;
+            if (consumers == 0) continue;
+            final int index = i;
+            BootStep step = graph.step(i);
+            StepChannel<?> channel = new StepChannel<>(step.getChannelCapacity(), consumers);
+            channel.setStartListener(new Runnable() {
+                @Override
+                public void run() {
+                    onStreamOpened(graph, index);
+                }
+            });
+            container.putChannel(step.getType(), channel);
+        }
+    }
+
+    //在生产者的线程中调用，与普通依赖的完成一样释放流式依赖者
+    private void onStreamOpened(final StepGraph graph, final int index){
+        if (!graph.openStream(index)) return;
+        final BootStep.Type type = graph.step(index).getType();
+        BootLog.d(TAG, "onStreamOpened: " + type);
+        if (lockFreeCompletion){
+            for (int dependent : graph.streamingDependents(index)) releaseConcurrently(graph, dependent, type);
+            return;
+        }
+        CoordinatorExecutor executor = this.executor;
+        if (executor == null) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (graph != BootTask.this.graph) return;
+                for (int dependent : graph.streamingDependents(index)){
+                    if (graph.release(dependent)) markReady(graph, dependent, type);
+                }
+                executeStepsWithoutDependency();
+            }
+        });
+    }
+
+    //以上次记录的耗时（微秒）计算优先级，没有记录的步骤使用声明的耗时
+    private void prioritizeByProfile(){
+        long[] costs = new long[graph.size()];
+        for (int i = 0; i < costs.length; i++){
+            BootStep step = graph.step(i);
+            long micros = profile.getCostMicros(step.getType());
+            costs[i] = micros >= 0 ? micros : step.getCost() * 1000;
+        }
+        graph.prioritize(costs);
+    }
+
+    //没有依赖的步骤在开始时就绪
+    private void markRootsReady(){
+        long now = System.nanoTime();
+        for (int i = 0; i < graph.size(); i++){
+            //未被请求的懒加载步骤，或者在 start() 之前被请求、已经就绪
+            if (graph.step(i).hasStepDependencies() || graph.isDormant(i) || graph.readyAt(i) != 0) continue;
+            graph.markReady(i, now);
+            if (tracer != null) tracer.ready(graph.step(i).getType(), null, now);
+        }
+    }
+
+    //依赖的步骤全部成功完成，blockedBy 为最后完成的依赖
+    private void markReady(StepGraph graph, int index, BootStep.Type blockedBy){
+        long now = System.nanoTime();
+        graph.markReady(index, now);
+        if (tracer != null) tracer.ready(graph.step(index).getType(), blockedBy, now);
+    }
+
+    //执行就绪队列中的步骤，每个步骤只会入队一次
+    private void executeStepsWithoutDependency(){
+        int index;
+        while ((index = graph.pollReady()) >= 0){
+            dispatch(graph, index);
+        }
+    }
+
+    private void dispatch(final StepGraph graph, final int index){
+        if (reuseLastResult(graph, index) || restoreFromSnapshot(graph, index)) return;
+        ResourceGroup[] groups = graph.resourceGroups(index);
+        //没有许可时暂不分发，许可释放时由 PermitWaiter 重新分发
+        if (groups != null && !new PermitWaiter(graph, index, groups).acquire()) return;
+        dispatchPermitted(graph, index);
+    }
+
+    //增量执行中不受影响的步骤沿用上一次的结果，与快照一样在分发之前完成
+    private boolean reuseLastResult(StepGraph graph, int index){
+        if (changed == null || graph.isClaimed(index)) return false;
+        BootStep step = graph.step(index);
+        if (!isUnaffected(step)) return false;
+        BootLog.i(TAG, "dispatch: " + step + " is unaffected, reuse last result");
+        onStepFinished(step.getType(), Result.success(container.getVariable(step.getType())));
+        return true;
+    }
+
+    //快照中的结果直接作为步骤的结果，在分发之前完成：不进入 Lane 排队，也不获取许可，依赖它的步骤立即就绪
+    private boolean restoreFromSnapshot(StepGraph graph, int index){
+        if (snapshot == null || graph.isClaimed(index)) return false;
+        BootStep step = graph.step(index);
+        Result<?> restored = snapshot.restore(step);
+        if (restored == null) return false;
+        BootLog.i(TAG, "dispatch: " + step + " restored from snapshot");
+        onStepFinished(step.getType(), restored);
+        return true;
+    }
+
+    private void dispatchPermitted(final StepGraph graph, final int index){
+        final BootStep step = graph.step(index);
+        if (graph.resourceGroups(index) != null){
+            graph.markPermitted(index);
+            //获取许可期间被取消或者判定失败
+            if (graph.isClaimed(index)){
+                releasePermits(graph, index);
+                return;
+            }
+        }
+        BootLog.d(TAG, "dispatch: " + step + ", lane: " + step.getLane()
+                + ", priority: " + graph.priority(index));
+        long now = System.nanoTime();
+        graph.markDispatched(index, now);
+        if (tracer != null) tracer.dispatched(step.getType(), now);
+        Runnable runnable = attempt(graph, index, 1, 0);
+        graph.setRunnable(index, runnable);
+
+        if (lockFreeCompletion && step.getLane() == BootStep.Lane.COORDINATOR){
+            //无锁模式下可能在其他线程分发，COORDINATOR Lane 的步骤需要切换到工作线程
+            executor.execute(runnable);
+        } else {
+            runtime.getDispatcher().dispatch(this, step.getLane(), runnable, graph.priority(index));
+        }
+    }
+
+    //结果记录或者一次执行真正结束时交还持有，都交还之后将资源组的许可交给等待的步骤
+    private void releasePermits(StepGraph graph, int index){
+        if (!graph.releasePermits(index)) return;
+        for (ResourceGroup group : graph.resourceGroups(index)) group.release();
+    }
+
+    /**
+     * 执行步骤的一次尝试
+     * @param number 第几次执行，从 1 开始
+     * @param backoffMillis 本次执行之前退避等待的时间
+     */
+    private Runnable attempt(final StepGraph graph, final int index, final int number, final long backoffMillis){
+        final BootStep step = graph.step(index);
+        return new Runnable() {
+            @Override
+            public void run() {
+                //超时、超出时限或被取消时结果先于执行结束记录，执行期间仍然持有许可
+                final boolean retained = graph.retainPermits(index);
+                //排队期间被取消，或者因超出时限已经判定失败
+                if (graph.isClaimed(index)){
+                    if (retained) releasePermits(graph, index);
+                    return;
+                }
+                long startedAt = System.nanoTime();
+                graph.markStarted(index, startedAt);
+                if (tracer != null) tracer.started(step.getType(), startedAt);
+                //设置了重试策略的步骤，每次执行的结果先经过 onAttemptFinished
+                BootStep.Callback callback = step.getRetryPolicy().getMaxAttempts() > 1
+                        ? new Attempt(graph, index, number, backoffMillis, startedAt)
+                        : BootTask.this;
+                //每次执行使用新的取消标记，超时的执行在重试开始之后仍然看到已取消
+                CancellationToken token = step.newAttempt();
+                scheduleTimeout(graph, index, callback, token);
+                //步骤自己回调或者抛出异常时这次执行才结束，交还许可
+                BootStep.Callback finish = retained ? new PermitHolder(graph, index, callback) : callback;
+                try {
+                    if (number == 1){
+                        step.execute(container, finish, token);
+                    } else {
+                        step.retry(container, finish, token);
+                    }
+                } catch (Throwable e){
+                    BootLog.e(TAG, "execute: " + step + " threw an exception", e);
+                    finish.onStepFinished(step.getType(), Result.failure(e));
+                }
+            }
+        };
+    }
+
+    //一次执行结束：失败且符合重试策略时由定时器在退避之后重新分发，否则作为步骤的结果
+    private void onAttemptFinished(Attempt attempt, Result result){
+        final StepGraph graph = attempt.graph;
+        final int index = attempt.index;
+        final BootStep step = graph.step(index);
+        //已经被取消或超出时限，交给 onStepFinished 忽略
+        if (graph.isClaimed(index)){
+            onStepFinished(step.getType(), result);
+            return;
+        }
+
+        graph.cancelTimeout(index);
+        long now = System.nanoTime();
+        TaskResult taskResult = this.taskResult;
+        if (taskResult != null){
+            taskResult.addAttempt(step.getType(), new StepAttempt(attempt.number, attempt.backoffMillis,
+                    now - attempt.startedAt, result));
+        }
+        RetryPolicy policy = step.getRetryPolicy();
+        if (!policy.shouldRetry(attempt.number, result)){
+            onStepFinished(step.getType(), result);
+            return;
+        }
+        //已经向输出流发布过元素，重试会再次发布，以这次的失败结束，输出流随之失败
+        if (graph.isStreamOpened(index)){
+            BootLog.w(TAG, "onAttemptFinished: " + step + " failed after publishing to its stream, not retried: " + result);
+            onStepFinished(step.getType(), result);
+            return;
+        }
+        if (tracer != null) tracer.finished(step.getType(), false, now);
+
+        final long backoff = policy.backoffMillis(attempt.number);
+        BootLog.w(TAG, "onAttemptFinished: attempt " + attempt.number + " of " + step + " failed: " + result
+                + ", retry in " + backoff + " ms");
+        final Runnable retry = attempt(graph, index, attempt.number + 1, backoff);
+        runtime.scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                CoordinatorExecutor executor = BootTask.this.executor;
+                if (executor == null || graph.isClaimed(index)) return;
+                long now = System.nanoTime();
+                graph.markDispatched(index, now);
+                if (tracer != null) tracer.dispatched(step.getType(), now);
+                if (step.getLane() == BootStep.Lane.COORDINATOR){
+                    executor.execute(retry);
+                } else {
+                    runtime.getDispatcher().dispatch(BootTask.this, step.getLane(), retry, graph.priority(index));
+                }
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    //从开始执行时计时，超时后取消本次执行的标记，并以失败的结果结束本次执行
+    private void scheduleTimeout(final StepGraph graph, final int index, final BootStep.Callback callback,
+                                 final CancellationToken token){
+        final BootStep step = graph.step(index);
+        final long timeout = step.getTimeout();
+        if (timeout <= 0) return;
+        graph.setTimeout(index, runtime.scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (graph.isClaimed(index)) return;
+                String message = "步骤 [ " + step.getType() + " ] 超时（" + timeout + " ms）";
+                BootLog.w(TAG, "timeout: " + message);
+                token.cancel(message);
+                callback.onStepFinished(step.getType(), Result.failure(message, new TimeoutException(message)));
+            }
+        }, timeout, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void onStepFinished(final BootStep.Type type, final Result result) {
+        final long finishedAt = System.nanoTime();
+        if (lockFreeCompletion){
+            handleStepResultConcurrently(type, result, finishedAt);
+            return;
+        }
+
+        CoordinatorExecutor executor = this.executor;
+        if (executor == null){
+            BootLog.w(TAG, "onStepFinished: task has already finished, ignore result of " + type);
+            return;
+        }
+        //避免同一个Step 有多个依赖同时完成，造成同步安全问题，所有回调在同一个线程处理
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handleStepResult(type, result, finishedAt);
+            }
+        });
+    }
+
+    private void handleStepResult(BootStep.Type type, Result result, long finishedAt){
+        BootLog.d(TAG, "handleStepResult: type: " + type + ", result: " + result);
+        final StepGraph graph = this.graph;
+        int index = graph == null ? -1 : graph.indexOf(type);
+        //步骤超时、被取消之后的回调，或者重复的回调
+        if (index < 0 || !graph.claim(index)){
+            BootLog.w(TAG, "handleStepResult: step " + type + " has already finished or been removed");
+            return;
+        }
+
+        int remaining = recordResult(graph, index, result, finishedAt);
+
+        //只访问直接依赖它的步骤；所有步骤都完成时，未被请求的懒加载步骤仍需要更新依赖计数
+        if (result.isSuccessful()){
+            boolean streamed = graph.isStreamOpened(index);
+            for (int dependent : graph.dependents(index)){
+                //流式依赖者已经在发布第一个元素时释放
+                if (streamed && graph.isStreamingDependent(index, dependent)) continue;
+                if (graph.release(dependent)) markReady(graph, dependent, type);
+            }
+        } else if (failDependents(graph, index)){
+            taskFinished();
+            return;
+        }
+
+        if (remaining == 0){
+            //所有步骤都完成
+            taskFinished();
+            return;
+        }
+        executeStepsWithoutDependency();
+    }
+
+    //无锁模式：在回调的线程中处理步骤结果
+    private void handleStepResultConcurrently(BootStep.Type type, Result result, long finishedAt){
+        final StepGraph graph = this.graph;
+        int index = graph == null ? -1 : graph.indexOf(type);
+        if (index < 0 || !graph.claim(index)){
+            BootLog.w(TAG, "handleStepResultConcurrently: step " + type + " has already finished or been removed");
+            return;
+        }
+
+        BootLog.d(TAG, "handleStepResultConcurrently: type: " + type + ", result: " + result);
+        int remaining = recordResult(graph, index, result, finishedAt);
+
+        if (result.isSuccessful()){
+            boolean streamed = graph.isStreamOpened(index);
+            for (int dependent : graph.dependents(index)){
+                if (streamed && graph.isStreamingDependent(index, dependent)) continue;
+                releaseConcurrently(graph, dependent, type);
+            }
+        } else if (failDependents(graph, index)){
+            taskFinishedConcurrently(graph);
+            return;
+        }
+        if (remaining == 0) taskFinishedConcurrently(graph);
+    }
+
+    //无锁模式：在当前线程中更新依赖计数，由使依赖计数归零的线程分发
+    private void releaseConcurrently(final StepGraph graph, final int dependent, BootStep.Type blockedBy){
+        //只有使依赖计数归零的线程会得到 true
+        if (!graph.releaseConcurrently(dependent)) return;
+        markReady(graph, dependent, blockedBy);
+        if (graph.phase(dependent) == BootStep.Phase.CRITICAL){
+            dispatch(graph, dependent);
+        } else {
+            //阶段的开放状态只在工作线程中维护
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    graph.offer(dependent);
+                    executeStepsWithoutDependency();
+                }
+            });
+        }
+    }
+
+    /**
+     * 记录已经认领的步骤的结果并标记完成。
+     * 结果与变量需要在更新计数之前写入，保证依赖它的步骤以及最后完成的线程可见
+     * @return 剩余未完成的步骤数
+     */
+    private int recordResult(StepGraph graph, int index, Result result, long finishedAt){
+        BootStep step = graph.step(index);
+        BootStep.Type type = step.getType();
+        graph.cancelTimeout(index);
+        long endedAt = finishedAt != 0 ? finishedAt : System.nanoTime();
+        graph.markFinished(index, endedAt);
+        if (tracer != null) tracer.finished(type, result.isSuccessful(), endedAt);
+        taskResult.setStepResult(type, step.getRetention() == BootStep.Retention.TRANSIENT ? withoutValue(result) : result);
+        callback.onStepFinished(type, result);
+        //依赖图中的步骤在依赖计数归零之后才检查是否变化，需要在更新计数之前记录
+        if (changed != null && isChanged(type, result)) changed.add(type);
+        if (result.isSuccessful()){
+            if (incremental){
+                //增量模式保留所有变量
+                container.putVariable(type, result.getValue());
+            } else if (graph.hasConsumers(index)){
+                //将产生的变量存入到container，只保存有步骤读取的变量
+                container.putVariable(type, result.getValue());
+                //最后一个读取者可能同时被判定失败，已经错过了释放
+                if (!graph.hasConsumers(index)) container.removeVariable(type);
+            }
+            graph.markSucceeded(index, endedAt);
+            if (snapshot != null) snapshot.record(step, result.getValue());
+        } else {
+            failedSteps.add(type);
+            //不再保留上一次执行产生的变量
+            if (incremental) container.removeVariable(type);
+        }
+        //该步骤不再读取依赖的变量，最后一个读取者结束时释放变量
+        for (int source : graph.variableSources(index)){
+            if (graph.consume(source) && !incremental) container.removeVariable(graph.step(source).getType());
+        }
+        releasePermits(graph, index);
+        //输出流在结果记录之后关闭，提前开始的流式依赖者取完剩余的元素之后结束
+        graph.closeStream(index);
+        StepChannel<?> channel = graph.streamingDependents(index).length > 0 ? container.getChannel(type) : null;
+        if (channel != null){
+            if (result.isSuccessful()){
+                channel.close();
+            } else {
+                channel.fail(result);
+            }
+        }
+        for (BootStep.Type source : step.streamingDependencies){
+            StepChannel<?> consumed = container.getChannel(source);
+            if (consumed != null) consumed.consumerFinished();
+        }
+
+        int remaining = graph.complete(index);
+        if (waiters.hasWaiters()) waiters.complete(type, result, taskResult);
+        return remaining;
+    }
+
+    private static Result withoutValue(Result result){
+        if (result.getValue() == null) return result;
+        return Result.of(result.isSuccessful(), null, result.getMessage(), result.throwable());
+    }
+
+    /**
+     * 依赖失败的步骤在当前线程中一次性逐个判定失败，不再重新回调
+     * @return 是否由此完成了最后一个步骤
+     */
+    private boolean failDependents(StepGraph graph, int failed){
+        Deque<int[]> stack = new ArrayDeque<>();
+        for (int dependent : graph.dependents(failed)){
+            if (graph.doom(dependent)) stack.push(new int[]{dependent, failed});
+        }
+
+        int[] cursor;
+        while ((cursor = stack.poll()) != null){
+            //可能同时被取消
+            if (!graph.claim(cursor[0])) continue;
+            BootLog.i(TAG, "failDependents: directly failed step: " + graph.step(cursor[0]).getType());
+            Result result = Result.failure("依赖的步骤 [ " + graph.step(cursor[1]).getType() + " ] 失败");
+            if (recordResult(graph, cursor[0], result, 0) == 0) return true;
+            for (int dependent : graph.dependents(cursor[0])){
+                if (graph.doom(dependent)) stack.push(new int[]{dependent, cursor[0]});
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 取消启动任务：尚未开始执行的步骤不再执行，正在执行的步骤通过 BootStep.getCancellationToken() 收到取消，
+     * 所有未完成的步骤立即以失败的结果结束（CancellationException），之后的回调会被忽略
+     */
+    public void cancel(){
+        final CoordinatorExecutor executor = this.executor;
+        if (executor == null) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                abort(graph, "启动任务被取消", new CancellationException("BootTask cancelled"), false);
+            }
+        });
+    }
+
+    /**
+     * 在工作线程中以失败的结果结束所有未完成的步骤
+     * @param keepDormant 保留未被请求的懒加载步骤，它们不属于启动的时限
+     */
+    private void abort(StepGraph graph, String message, Throwable cause, boolean keepDormant){
+        //执行已经结束，或者已经是新的一次执行
+        if (graph == null || graph != this.graph) return;
+        BootLog.w(TAG, "abort: " + message);
+        Result result = Result.failure(message, cause);
+        boolean isLast = false;
+        for (int index = 0; index < graph.size(); index++){
+            if (keepDormant && graph.isDormant(index)) continue;
+            if (!graph.claim(index)) continue;
+            graph.step(index).cancel(message);
+            if (recordResult(graph, index, result, 0) == 0) isLast = true;
+        }
+        //启动已经结束时，只剩下懒加载的步骤，它们不计入剩余步骤数
+        if (isLast || (isBootFinished && graph.isAllFinished())) taskFinished();
+    }
+
+    //超出时限后在工作线程中结束所有未完成的步骤
+    private void scheduleDeadline(){
+        final StepGraph graph = this.graph;
+        final CoordinatorExecutor executor = this.executor;
+        final long millis = deadlineMillis;
+        deadline = runtime.scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        String message = "启动任务超出时限（" + millis + " ms）";
+                        abort(graph, message, new TimeoutException(message), true);
+                    }
+                });
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+    }
+
+    //最后一个完成的线程负责结束任务，结束的工作仍在 BootTask 的工作线程中进行
+    private void taskFinishedConcurrently(final StepGraph graph){
+        CoordinatorExecutor executor = this.executor;
+        if (executor == null) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                //启动之后只剩下懒加载的步骤时，可能已经由 cancel() 结束
+                if (graph == BootTask.this.graph) taskFinished();
+            }
+        });
+    }
+
+    //启动结束时回调 onTaskFinished；之后被请求的懒加载步骤都结束时再次调用，释放依赖图
+    private void taskFinished(){
+        final StepGraph graph = this.graph;
+        final ComplexCallback callback = this.callback;
+        TaskResult finished = null;
+        if (!isBootFinished){
+            isBootFinished = true;
+            BootLog.d(TAG, "taskFinished: failedSteps: " + failedSteps);
+
+            taskResult.setResult(failedSteps.isEmpty());
+            taskResult.setReport(new BootReport(graph, taskStartedAt));
+            lastTaskResult = taskResult;
+            finished = taskResult;
+
+            if (milestoneSignal != null) milestoneSignal.remove(milestoneListener);
+            if (idleSignal != null) idleSignal.remove(idleListener);
+            if (deadline != null){
+                deadline.cancel(false);
+                deadline = null;
+            }
+
+            //耗时记录与快照一样异步写入，不占用工作线程与启动时间
+            if (profile != null) saveProfile(graph, profile);
+        }
+
+        //快照在回调之后异步写入；懒加载步骤之后产生的结果在释放依赖图时再写入一次
+        if (snapshot != null) saveSnapshot(snapshot);
+
+        //运行环境已经关闭，不再等待未被请求的懒加载步骤
+        if (runtime.isShutdown() && graph.hasDormant()) failDormant(graph);
+
+        //还有未被请求或者正在执行的懒加载步骤，保留依赖图与它们需要的变量，结果继续写入 TaskResult
+        if (graph.hasDormant() || !graph.isAllFinished()){
+            BootLog.d(TAG, "taskFinished: keep graph for lazy steps");
+        } else {
+            //清空状态
+            taskResult = null;
+            isBootFinished = false;
+            failedSteps.clear();
+            this.graph = null;
+            invalidated = null;
+            changed = null;
+            previousResult = null;
+            container.clearChannels();
+            if (!incremental) container.clear();
+
+            //工作线程属于共享的 BootRuntime，不在这里释放
+            detach();
+        }
+        if (finished == null) return;
+
+        //状态清理之后再回调，onTaskFinished 中（或者之后立即）可以再次 start() 或 invalidate()
+        callback.onTaskFinished(finished);
+    }
+
+    //执行结束，不再占用 BootRuntime
+    private void detach(){
+        executor = null;
+        runtime.detach(this);
+    }
+
+    //BootRuntime 关闭时调用：启动已经结束、只为懒加载步骤保留依赖图的任务随即结束，正在执行的步骤仍然正常完成
+    void onRuntimeShutdown(){
+        CoordinatorExecutor executor = this.executor;
+        if (executor == null) return;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StepGraph graph = BootTask.this.graph;
+                if (graph == null || !isBootFinished || !graph.hasDormant()) return;
+                failDormant(graph);
+                if (graph.isAllFinished()) taskFinished();
+            }
+        });
+    }
+
+    //以失败结束所有未被请求的懒加载步骤，它们不计入剩余步骤数
+    private void failDormant(StepGraph graph){
+        String message = "运行环境已经关闭";
+        Result result = Result.failure(message, new CancellationException(message));
+        for (int index = 0; index < graph.size(); index++){
+            if (!graph.isDormant(index) || !graph.claim(index)) continue;
+            recordResult(graph, index, result, 0);
+        }
+    }
+
+    //在 IO Lane 中以最低的优先级重写快照文件，没有新的结果时不写入
+    private void saveSnapshot(final StepSnapshot snapshot){
+        try {
+            runtime.getDispatcher().dispatch(this, BootStep.Lane.IO, new Runnable() {
+                @Override
+                public void run() {
+                    snapshot.save();
+                }
+            }, Long.MIN_VALUE);
+        } catch (IllegalStateException e){
+            BootLog.w(TAG, "saveSnapshot: runtime has been shut down, " + e);
+        }
+    }
+
+    //在工作线程中记录本次执行的耗时，在 IO Lane 中以最低的优先级重写耗时记录文件
+    private void saveProfile(StepGraph graph, final StepProfile profile){
+        for (int i = 0; i < graph.size(); i++){
+            long wallTime = graph.wallTime(i);
+            if (wallTime < 0) continue;
+            profile.record(graph.step(i).getType(), wallTime / 1000, graph.queueWait(i) / 1000);
+        }
+        try {
+            runtime.getDispatcher().dispatch(this, BootStep.Lane.IO, new Runnable() {
+                @Override
+                public void run() {
+                    profile.save();
+                }
+            }, Long.MIN_VALUE);
+        } catch (IllegalStateException e){
+            BootLog.w(TAG, "saveProfile: runtime has been shut down, " + e);
+        }
+    }
+
+    public interface Callback {
+        void onTaskFinished(TaskResult result);
+    }
+
+    //按顺序获取步骤所属的资源组的许可，没有许可时登记等待，获得之后继续获取下一个，全部获得之后分发
+    private final class PermitWaiter implements ResourceGroup.Waiter {
+        final StepGraph graph;
+        final int index;
+        final ResourceGroup[] groups;
+        final TaskResult taskResult = BootTask.this.taskResult;
+        //已经获得许可的资源组数
+        int acquired;
+        long waitingSince;
+
+        PermitWaiter(StepGraph graph, int index, ResourceGroup[] groups){
+            this.graph = graph;
+            this.index = index;
+            this.groups = groups;
+        }
+
+        //返回 true 表示已经获得全部许可
+        boolean acquire(){
+            while (acquired < groups.length){
+                ResourceGroup group = groups[acquired];
+                waitingSince = System.nanoTime();
+                if (!group.acquireOrWait(this)){
+                    BootLog.d(TAG, "acquire: " + graph.step(index) + " is waiting for " + group);
+                    return false;
+                }
+                acquired++;
+            }
+            return true;
+        }
+
+        @Override
+        public long priority() {
+            return graph.priority(index);
+        }
+
+        //在释放许可的线程中回调
+        @Override
+        public void onPermit(@NonNull ResourceGroup group) {
+            long waited = System.nanoTime() - waitingSince;
+            group.addWaitNanos(waited);
+            if (taskResult != null) taskResult.addContention(group.getName(), waited);
+            acquired++;
+            CoordinatorExecutor executor = BootTask.this.executor;
+            if (lockFreeCompletion || executor == null){
+                resume();
+                return;
+            }
+            //分发在工作线程中进行
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    resume();
+                }
+            });
+        }
+
+        private void resume(){
+            //等待期间被取消、判定失败，或者执行已经结束
+            if (graph.isClaimed(index) || graph != BootTask.this.graph){
+                for (int i = 0; i < acquired; i++) groups[i].release();
+                return;
+            }
+            if (acquire()) dispatchPermitted(graph, index);
+        }
+    }
+
+    //持有许可的一次执行，步骤第一次回调时交还许可，再交给 callback
+    private final class PermitHolder implements BootStep.Callback {
+        final StepGraph graph;
+        final int index;
+        final BootStep.Callback callback;
+        private final AtomicBoolean isReleased = new AtomicBoolean();
+
+        PermitHolder(StepGraph graph, int index, BootStep.Callback callback){
+            this.graph = graph;
+            this.index = index;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onStepFinished(BootStep.Type type, Result result) {
+            if (isReleased.compareAndSet(false, true)) releasePermits(graph, index);
+            callback.onStepFinished(type, result);
+        }
+    }
+
+    //设置了重试策略的步骤的一次执行，只接受第一次回调
+    private final class Attempt implements BootStep.Callback {
+        final StepGraph graph;
+        final int index;
+        final int number;
+        final long backoffMillis;
+        final long startedAt;
+        private final AtomicBoolean isFinished = new AtomicBoolean();
+
+        Attempt(StepGraph graph, int index, int number, long backoffMillis, long startedAt){
+            this.graph = graph;
+            this.index = index;
+            this.number = number;
+            this.backoffMillis = backoffMillis;
+            this.startedAt = startedAt;
+        }
+
+        @Override
+        public void onStepFinished(BootStep.Type type, Result result) {
+            if (isFinished.compareAndSet(false, true)) onAttemptFinished(this, result);
+        }
+    }
+
+    public interface ComplexCallback extends Callback, BootStep.Callback { }
+
+    private static class CallbackWrapper implements ComplexCallback {
+        private Callback callback;
+
+        CallbackWrapper(@NonNull Callback c){
+            this.callback = c;
+        }
+
+        @Override
+        public void onTaskFinished(TaskResult result) {
+            callback.onTaskFinished(result);
+        }
+
+        @Override
+        public void onStepFinished(BootStep.Type type, Result result) { }
+    }
+
+}
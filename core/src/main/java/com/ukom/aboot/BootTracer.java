@@ -0,0 +1,272 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动过程的追踪记录，导出为 Chrome trace-event JSON，可以直接用 Perfetto（ui.perfetto.dev）或 chrome://tracing 打开
+ *
+ * 每个步骤记录就绪、分发、开始与结束的时间，执行的线程，以及阻塞它的依赖（最后完成、使其就绪的依赖步骤）。
+ * 事件写入构造时分配的定长环形缓冲区，记录时不分配对象，写满后覆盖最早的事件。
+ *
+ * 可以在任意线程中记录；导出应在启动任务完成之后（onTaskFinished 中或之后），否则可能读到写入一半的事件。
+ * BootTask 没有设置 BootTracer 时，每个记录点只有一次空引用判断。
+ *
+ */
+public final class BootTracer {
+
+    private static final byte READY = 1;
+    private static final byte DISPATCHED = 2;
+    private static final byte STARTED = 3;
+    private static final byte SUCCEEDED = 4;
+    private static final byte FAILED = 5;
+
+    private final int mask;
+    private final long[] times;
+    private final byte[] kinds;
+    private final BootStep.Type[] types;
+    //READY 事件为阻塞它的依赖，没有依赖时为 null
+    private final BootStep.Type[] blockers;
+    //STARTED 事件为执行的线程
+    private final Thread[] threads;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public BootTracer(){
+        this(4096);
+    }
+
+    //capacity 为最多保留的事件数（向上取整到 2 的幂），每个步骤一般产生 4 个事件，重试的步骤每次重试再产生 3 个
+    public BootTracer(int capacity){
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        times = new long[size];
+        kinds = new byte[size];
+        types = new BootStep.Type[size];
+        blockers = new BootStep.Type[size];
+        threads = new Thread[size];
+    }
+
+    void ready(@NonNull BootStep.Type type, @Nullable BootStep.Type blockedBy, long time){
+        record(READY, type, blockedBy, null, time);
+    }
+
+    void dispatched(@NonNull BootStep.Type type, long time){
+        record(DISPATCHED, type, null, null, time);
+    }
+
+    void started(@NonNull BootStep.Type type, long time){
+        record(STARTED, type, null, Thread.currentThread(), time);
+    }
+
+    //一次执行结束，或者未执行就被判定失败
+    void finished(@NonNull BootStep.Type type, boolean successful, long time){
+        record(successful ? SUCCEEDED : FAILED, type, null, null, time);
+    }
+
+    private void record(byte kind, BootStep.Type type, BootStep.Type blocker, Thread thread, long time){
+        int slot = (int) (cursor.getAndIncrement() & mask);
+        times[slot] = time;
+        kinds[slot] = kind;
+        types[slot] = type;
+        blockers[slot] = blocker;
+        threads[slot] = thread;
+    }
+
+    //缓冲区中的事件数
+    public int size(){
+        return (int) Math.min(cursor.get(), mask + 1);
+    }
+
+    //丢弃已经记录的事件，可以在下一次执行之前调用
+    public void clear(){
+        cursor.set(0);
+        for (int i = 0; i <= mask; i++){
+            types[i] = null;
+            blockers[i] = null;
+            threads[i] = null;
+        }
+    }
+
+    public String toChromeTrace(){
+        StringWriter writer = new StringWriter();
+        try {
+            writeChromeTrace(writer);
+        } catch (IOException e){
+            //StringWriter 不会抛出 IOException
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 导出为 Chrome trace-event JSON：
+     * - 每次执行是执行线程上的一个完整事件（X），参数中包含排队等待、阻塞它的依赖与结果；
+     * - 就绪到开始执行之间的等待是异步事件（b/e），在 Perfetto 中显示为单独的轨道；
+     * - 没有执行就被判定失败的步骤是一个瞬时事件（i）。
+     * 时间以缓冲区中最早的事件为 0，单位微秒
+     */
+    public void writeChromeTrace(@NonNull Writer writer) throws IOException {
+        long end = cursor.get();
+        long begin = Math.max(0, end - (mask + 1));
+        long origin = Long.MAX_VALUE;
+        for (long i = begin; i < end; i++){
+            origin = Math.min(origin, times[(int) (i & mask)]);
+        }
+
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        writer.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"aBoot\"}}");
+        Map<BootStep.Type, Span> spans = new HashMap<>();
+        Map<Thread, Long> threadIds = new LinkedHashMap<>();
+        for (long i = begin; i < end; i++){
+            int slot = (int) (i & mask);
+            BootStep.Type type = types[slot];
+            long time = times[slot];
+            Span span = spans.get(type);
+            if (span == null){
+                span = new Span();
+                spans.put(type, span);
+            }
+            switch (kinds[slot]){
+                case READY:
+                    span.ready = time;
+                    span.blocker = blockers[slot];
+                    break;
+                case DISPATCHED:
+                    span.dispatched = time;
+                    break;
+                case STARTED:
+                    span.started = time;
+                    span.thread = threads[slot];
+                    span.attempt++;
+                    long waitFrom = span.ready != 0 ? span.ready : span.dispatched;
+                    if (waitFrom != 0 && span.attempt == 1){
+                        writeAsync(writer, type, "b", waitFrom - origin);
+                        writeAsync(writer, type, "e", time - origin);
+                    }
+                    break;
+                default:
+                    boolean successful = kinds[slot] == SUCCEEDED;
+                    if (span.started == 0){
+                        writeInstant(writer, type, time - origin, successful);
+                    } else {
+                        Long tid = threadIds.get(span.thread);
+                        if (tid == null){
+                            tid = span.thread.getId();
+                            threadIds.put(span.thread, tid);
+                        }
+                        writeSlice(writer, type, span, tid, origin, time, successful);
+                    }
+                    span.started = 0;
+                    span.dispatched = 0;
+                    break;
+            }
+        }
+        for (Map.Entry<Thread, Long> entry : threadIds.entrySet()){
+            writer.write(",{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(entry.getValue()));
+            writer.write(",\"args\":{\"name\":");
+            writeString(writer, entry.getKey().getName());
+            writer.write("}}");
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    private static void writeSlice(Writer writer, BootStep.Type type, Span span, long tid,
+                                   long origin, long time, boolean successful) throws IOException {
+        writer.write(",{\"name\":");
+        writeString(writer, type.getName());
+        writer.write(",\"cat\":\"step\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+        writer.write(Long.toString(tid));
+        writer.write(",\"ts\":");
+        writeMicros(writer, span.started - origin);
+        writer.write(",\"dur\":");
+        writeMicros(writer, time - span.started);
+        writer.write(",\"args\":{\"attempt\":");
+        writer.write(Integer.toString(span.attempt));
+        if (span.ready != 0){
+            writer.write(",\"ready\":");
+            writeMicros(writer, span.ready - origin);
+        }
+        if (span.dispatched != 0){
+            writer.write(",\"queue_wait\":");
+            writeMicros(writer, span.started - span.dispatched);
+        }
+        if (span.blocker != null){
+            writer.write(",\"blocked_by\":");
+            writeString(writer, span.blocker.getName());
+        }
+        writer.write(",\"successful\":");
+        writer.write(Boolean.toString(successful));
+        writer.write("}}");
+    }
+
+    private static void writeAsync(Writer writer, BootStep.Type type, String phase, long time) throws IOException {
+        writer.write(",{\"name\":");
+        writeString(writer, type.getName());
+        writer.write(",\"cat\":\"wait\",\"ph\":\"");
+        writer.write(phase);
+        writer.write("\",\"id\":");
+        writer.write(Integer.toString(type.getId()));
+        writer.write(",\"pid\":1,\"tid\":0,\"ts\":");
+        writeMicros(writer, time);
+        writer.write('}');
+    }
+
+    private static void writeInstant(Writer writer, BootStep.Type type, long time, boolean successful) throws IOException {
+        writer.write(",{\"name\":");
+        writeString(writer, type.getName());
+        writer.write(",\"cat\":\"step\",\"ph\":\"i\",\"s\":\"p\",\"pid\":1,\"tid\":0,\"ts\":");
+        writeMicros(writer, time);
+        writer.write(",\"args\":{\"successful\":");
+        writer.write(Boolean.toString(successful));
+        writer.write("}}");
+    }
+
+    //纳秒转为保留 3 位小数的微秒
+    private static void writeMicros(Writer writer, long nanos) throws IOException {
+        writer.write(Long.toString(nanos / 1000));
+        long fraction = nanos % 1000;
+        writer.write('.');
+        if (fraction < 100) writer.write('0');
+        if (fraction < 10) writer.write('0');
+        writer.write(Long.toString(fraction));
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\'){
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20){
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    //导出时按步骤合并的事件
+    private static final class Span {
+        long ready;
+        long dispatched;
+        long started;
+        BootStep.Type blocker;
+        Thread thread;
+        int attempt;
+    }
+}
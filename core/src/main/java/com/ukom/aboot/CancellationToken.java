@@ -0,0 +1,63 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 步骤的取消标记，步骤超时、启动任务超出时限或者被取消时标记为已取消
+ *
+ * 取消是协作式的：executeImpl 中耗时的工作应当检查 isCancelled()，或者通过 addListener 在取消时停止工作。
+ * 步骤被取消之后，BootTask 已经为它记录了失败的结果，之后的回调会被忽略。
+ *
+ */
+public final class CancellationToken {
+    private static final String TAG = "CancellationToken";
+
+    private volatile String reason;
+    private List<Runnable> listeners;
+
+    CancellationToken(){ }
+
+    public boolean isCancelled(){
+        return reason != null;
+    }
+
+    //取消的原因，未取消时为 null
+    public @Nullable String getReason(){
+        return reason;
+    }
+
+    //取消时在取消的线程中回调，已经取消时立即回调
+    public void addListener(@NonNull Runnable listener){
+        synchronized (this){
+            if (reason == null){
+                if (listeners == null) listeners = new ArrayList<>(1);
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    void cancel(@NonNull String reason){
+        List<Runnable> listeners;
+        synchronized (this){
+            if (this.reason != null) return;
+            this.reason = reason;
+            listeners = this.listeners;
+            this.listeners = null;
+        }
+        if (listeners == null) return;
+        for (Runnable listener : listeners){
+            try {
+                listener.run();
+            } catch (Throwable e){
+                BootLog.e(TAG, "cancel: listener threw an exception", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 组合步骤：把另一个 BootTask（或一组步骤）作为父图中的一个步骤装载，依赖它的步骤在所有子步骤完成之后执行
+ *
+ * 编译依赖图时组合步骤被展开到父图中（见 flatten），子步骤与父图的步骤在同一个调度器中交错执行，
+ * 不再需要按 onTaskFinished 串联多个 BootTask：
+ * - 子步骤中没有依赖其他子步骤的，继承组合步骤的依赖；
+ * - 组合步骤本身保留为一个汇合节点，依赖没有被其他子步骤依赖的子步骤，执行时直接成功；
+ * - 子步骤继承组合步骤的阶段（取更晚的）与懒加载；
+ * - 父图中 needVariable 依赖组合步骤的步骤，改为读取 export 声明的子步骤的变量（container.getVariable(子步骤的 Type)）。
+ *
+ * 子步骤可以直接依赖父图中的步骤；子图与父图的 Type 不能重复。
+ * 以 BootTask 构造时，每次编译都会调用它的 load() 创建子步骤，它的运行环境、信号等设置不起作用，也不要单独 start() 它
+ *
+ */
+public class CompositeStep extends BootStep {
+
+    private final Type type;
+    private final BootTask task;
+    private final List<BootStep> steps;
+    private final List<Type> exports = new ArrayList<>();
+
+    public CompositeStep(@NonNull String name, @NonNull BootTask task){
+        this.type = typeOfName(name);
+        this.task = task;
+        this.steps = null;
+    }
+
+    public CompositeStep(@NonNull String name, @NonNull Collection<BootStep> steps){
+        this.type = typeOfName(name);
+        this.task = null;
+        this.steps = new ArrayList<>(steps);
+    }
+
+    //组合步骤的依赖，所有子步骤在它们完成之后开始
+    public CompositeStep dependsOn(@NonNull Type... types){
+        for (Type type : types) addDependency(type, false);
+        return this;
+    }
+
+    //依赖组合步骤并读取变量（needVariable 为 true）的步骤可以读取的子步骤的变量
+    public CompositeStep export(@NonNull Type... types){
+        Collections.addAll(exports, types);
+        return this;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    //汇合节点不占用时间，关键路径上的耗时由子步骤决定
+    @Override
+    public long getCost() {
+        return 0;
+    }
+
+    @Override
+    public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+        callback.onStepFinished(type, Result.success());
+    }
+
+    private List<BootStep> children(){
+        return task != null ? task.collectSteps() : steps;
+    }
+
+    /**
+     * 展开组合步骤（包括嵌套的组合步骤），返回展开之后的所有步骤；没有组合步骤时直接返回 steps。
+     * 会修改子步骤与依赖组合步骤的步骤的依赖，重复展开同一组步骤不会重复添加
+     */
+    static Collection<BootStep> flatten(@NonNull Collection<BootStep> steps){
+        boolean hasComposite = false;
+        for (BootStep step : steps){
+            if (step instanceof CompositeStep){
+                hasComposite = true;
+                break;
+            }
+        }
+        if (!hasComposite) return steps;
+
+        List<BootStep> flattened = new ArrayList<>(steps);
+        List<CompositeStep> composites = new ArrayList<>();
+        Deque<CompositeStep> queue = new ArrayDeque<>();
+        for (BootStep step : steps){
+            if (step instanceof CompositeStep) queue.add((CompositeStep) step);
+        }
+        //外层先展开，嵌套的组合步骤展开时已经继承了外层的依赖
+        CompositeStep composite;
+        while ((composite = queue.poll()) != null){
+            composites.add(composite);
+            List<BootStep> children = composite.children();
+            Set<Type> childTypes = new HashSet<>();
+            for (BootStep child : children) childTypes.add(child.getType());
+
+            //组合步骤自身的依赖，不包括之前展开时添加的子步骤
+            List<Type> dependencies = new ArrayList<>();
+            for (Type dependency : composite.stepDependencies){
+                if (!childTypes.contains(dependency)) dependencies.add(dependency);
+            }
+            Set<Type> dependedOn = new HashSet<>();
+            for (BootStep child : children){
+                boolean isRoot = true;
+                for (Type dependency : child.stepDependencies){
+                    if (!childTypes.contains(dependency)) continue;
+                    isRoot = false;
+                    dependedOn.add(dependency);
+                }
+                if (isRoot) addAbsent(child.stepDependencies, dependencies);
+                child.owner = composite;
+                flattened.add(child);
+                if (child instanceof CompositeStep) queue.add((CompositeStep) child);
+            }
+            for (BootStep child : children){
+                if (!dependedOn.contains(child.getType())){
+                    addAbsent(composite.stepDependencies, Collections.singletonList(child.getType()));
+                }
+            }
+        }
+
+        //读取组合步骤变量的步骤改为读取导出的变量
+        for (CompositeStep exporter : composites){
+            for (BootStep step : flattened){
+                if (!step.variableDependencies.remove(exporter.getType())) continue;
+                addAbsent(step.variableDependencies, exporter.exports);
+            }
+        }
+        return flattened;
+    }
+
+    private static void addAbsent(List<Type> list, List<Type> types){
+        for (Type type : types){
+            if (!list.contains(type)) list.add(type);
+        }
+    }
+
+    //子步骤继承组合步骤的阶段，取更晚的
+    static Phase phaseOf(@NonNull BootStep step){
+        Phase phase = step.getPhase();
+        for (CompositeStep owner = step.owner; owner != null; owner = owner.owner){
+            if (owner.getPhase().ordinal() > phase.ordinal()) phase = owner.getPhase();
+        }
+        return phase;
+    }
+
+    //组合步骤是懒加载时，子步骤也是懒加载
+    static boolean isLazy(@NonNull BootStep step){
+        for (BootStep current = step; current != null; current = current.owner){
+            if (current.isLazy()) return true;
+        }
+        return false;
+    }
+}
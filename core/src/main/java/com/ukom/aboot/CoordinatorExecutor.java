@@ -0,0 +1,14 @@
+package com.ukom.aboot;
+
+import java.util.concurrent.Executor;
+
+/**
+ * BootTask 的工作线程，所有步骤的回调都切换到该线程中串行处理
+ *
+ * 由 BootPlatform 创建，任务结束时释放
+ */
+public interface CoordinatorExecutor extends Executor {
+
+    //释放线程，已经提交的任务会继续执行完
+    void release();
+}
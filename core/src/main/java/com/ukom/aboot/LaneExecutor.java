@@ -0,0 +1,204 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * StepDispatcher 中一个 Lane 的线程池
+ *
+ * 每个提交者（BootTask）拥有独立的优先级队列，空闲线程在有等待任务的提交者之间轮转取任务，
+ * 同一个提交者内部按优先级（关键路径长度）出队。这样多个 BootTask 共享线程时，
+ * 一个步骤很多或优先级很高的任务不会饿死其他任务。
+ * 例外是有调用者正在等待的步骤（优先级不低于 StepGraph.URGENT_PRIORITY），它们先于所有提交者的其他任务出队。
+ *
+ * 线程按需创建，空闲超过 keepAliveMillis 后退出，也可以通过 prestart() 预先创建。
+ *
+ */
+final class LaneExecutor {
+    private final String name;
+    private final int maxThreads;
+    private final long keepAliveMillis;
+
+    private final Object lock = new Object();
+    private final Map<Object, OwnerQueue> queues = new IdentityHashMap<>();
+    //有等待任务的提交者，按轮转顺序排列
+    private final ArrayDeque<OwnerQueue> rotation = new ArrayDeque<>();
+
+    private int threads;
+    //正在 wait 且没有被唤醒的线程
+    private int idleThreads;
+    //已经 notify、还没有重新拿到锁的线程
+    private int wakeups;
+    //所有提交者等待中的任务数
+    private int queued;
+    private int threadIds;
+    private long sequence;
+    private boolean isShutdown;
+
+    LaneExecutor(@NonNull String name, int maxThreads, long keepAliveMillis){
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    void execute(@NonNull Object owner, @NonNull Runnable runnable, long priority){
+        synchronized (lock){
+            if (isShutdown) throw new IllegalStateException("The lane " + name + " has been shut down");
+            OwnerQueue queue = queues.get(owner);
+            if (queue == null){
+                queue = new OwnerQueue(owner);
+                queues.put(owner, queue);
+            }
+            if (queue.jobs.isEmpty()) rotation.add(queue);
+            queue.jobs.add(new Job(runnable, priority, sequence++));
+            queued++;
+
+            //被唤醒的线程在拿到锁之前仍然计入 wakeups，不能再次唤醒；等待的任务多于将要醒来的线程时才创建新线程
+            if (idleThreads > 0){
+                idleThreads--;
+                wakeups++;
+                lock.notify();
+            } else if (queued > wakeups && threads < maxThreads){
+                startThread();
+            }
+        }
+    }
+
+    //修改已经提交、尚未执行的任务的优先级，任务不在队列中时返回 false
+    boolean reprioritize(@NonNull Object owner, @NonNull Runnable runnable, long priority){
+        synchronized (lock){
+            OwnerQueue queue = queues.get(owner);
+            if (queue == null) return false;
+            for (Job job : queue.jobs){
+                if (job.runnable != runnable) continue;
+                queue.jobs.remove(job);
+                job.priority = priority;
+                queue.jobs.add(job);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    //预先创建所有线程
+    void prestart(){
+        synchronized (lock){
+            if (isShutdown) return;
+            while (threads < maxThreads) startThread();
+        }
+    }
+
+    //已经提交的任务会继续执行完，空闲线程随即退出
+    void shutdown(){
+        synchronized (lock){
+            isShutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    int getThreadCount(){
+        synchronized (lock){
+            return threads;
+        }
+    }
+
+    private void startThread(){
+        threads++;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "aBoot-" + name + "-" + (++threadIds));
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void work(){
+        Runnable runnable;
+        while ((runnable = take()) != null){
+            try {
+                runnable.run();
+            } catch (Throwable e){
+                BootLog.e("LaneExecutor", "work: uncaught exception in lane " + name, e);
+            }
+        }
+    }
+
+    //取出下一个任务，超时或关闭时返回 null，线程随之退出
+    private Runnable take(){
+        synchronized (lock){
+            long deadline = System.currentTimeMillis() + keepAliveMillis;
+            while (rotation.isEmpty()){
+                long wait = deadline - System.currentTimeMillis();
+                if (isShutdown || wait <= 0){
+                    threads--;
+                    return null;
+                }
+                idleThreads++;
+                try {
+                    lock.wait(wait);
+                } catch (InterruptedException ignored){
+                } finally {
+                    //超时与被唤醒同时发生时无法区分，任意一个醒来的线程消耗一次唤醒，两个计数之和始终等于正在 wait 的线程数
+                    if (wakeups > 0) wakeups--;
+                    else idleThreads--;
+                }
+            }
+
+            OwnerQueue queue = urgentQueue();
+            if (queue == null) queue = rotation.poll();
+            else rotation.remove(queue);
+            Job job = queue.jobs.poll();
+            queued--;
+            if (queue.jobs.isEmpty()){
+                queues.remove(queue.owner);
+            } else {
+                //轮转到队尾，下一个任务从其他提交者中取
+                rotation.add(queue);
+            }
+            return job.runnable;
+        }
+    }
+
+    //队首是被等待的步骤的提交者，提交者很少，直接遍历
+    private OwnerQueue urgentQueue(){
+        for (OwnerQueue queue : rotation){
+            if (queue.jobs.peek().priority >= StepGraph.URGENT_PRIORITY) return queue;
+        }
+        return null;
+    }
+
+    private static class OwnerQueue {
+        final Object owner;
+        final PriorityQueue<Job> jobs = new PriorityQueue<>();
+
+        OwnerQueue(Object owner){
+            this.owner = owner;
+        }
+    }
+
+    private static class Job implements Comparable<Job> {
+        final Runnable runnable;
+        long priority;
+        final long sequence;
+
+        Job(Runnable runnable, long priority, long sequence){
+            this.runnable = runnable;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        //优先级高的在前，相同时先提交的在前
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority) return priority > o.priority ? -1 : 1;
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
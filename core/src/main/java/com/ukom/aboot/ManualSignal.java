@@ -0,0 +1,40 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 由应用主动触发的信号，例如在 Activity.onWindowFocusChanged 中调用 fire() 表示首帧绘制完成，
+ * 也用于在 JVM 上测试启动阶段
+ *
+ * 信号是粘性的：在 fire() 之后开始监听的 Listener 会立即回调一次
+ *
+ */
+public class ManualSignal implements PhaseSignal {
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean isFired;
+
+    @Override
+    public void observe(@NonNull Listener listener) {
+        listeners.add(listener);
+        if (isFired) listener.onSignal();
+    }
+
+    @Override
+    public void remove(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void fire(){
+        isFired = true;
+        for (Listener listener : listeners){
+            listener.onSignal();
+        }
+    }
+
+    public boolean isFired() {
+        return isFired;
+    }
+}
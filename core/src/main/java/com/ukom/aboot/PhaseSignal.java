@@ -0,0 +1,26 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+/**
+ * 开放启动阶段的信号，例如首帧绘制完成（里程碑）、主线程空闲
+ *
+ * 与平台无关，Android 上可以使用 library 中的实现，也可以由应用在合适的时机调用 ManualSignal.fire()。
+ *
+ */
+public interface PhaseSignal {
+
+    /**
+     * 开始监听，信号到来时（可以在任意线程）回调 listener；
+     * 里程碑信号只需要回调一次，空闲信号每次空闲都应回调
+     */
+    void observe(@NonNull Listener listener);
+
+    //停止监听，BootTask 执行完成后调用
+    void remove(@NonNull Listener listener);
+
+    interface Listener {
+        void onSignal();
+    }
+}
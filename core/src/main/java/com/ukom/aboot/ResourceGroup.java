@@ -0,0 +1,113 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 资源组：访问同一资源（同一个数据库、同一组 SharedPreferences 文件、磁盘等）的步骤共享有限的许可，
+ * 避免同时就绪的步骤一起执行，争抢磁盘与文件锁
+ *
+ * 步骤通过 BootStep.getResourceGroups 声明所属的资源组，同一个资源组的对象需要在所有 BootTask 之间共享（例如定义为常量）。
+ * 没有许可的就绪步骤暂不分发，不占用线程，调度器继续执行其他就绪的步骤；
+ * 步骤的执行真正结束时释放许可（超时、超出时限或被取消之后仍在执行的步骤，在它回调或抛出异常时才释放），
+ * 交给等待的步骤中优先级最高的一个。
+ * 属于多个资源组的步骤按资源组的创建顺序获取许可，不会互相死锁。
+ *
+ */
+public final class ResourceGroup {
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private final String name;
+    private final int permits;
+    //获取许可的顺序
+    final int id;
+
+    private int available;
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicInteger waitCount = new AtomicInteger();
+
+    /**
+     * @param name 资源组的名称，用于统计（TaskResult.getContentionNanos）与日志
+     * @param permits 同时执行的步骤数
+     */
+    public ResourceGroup(@NonNull String name, int permits){
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive, permits: " + permits);
+        this.name = name;
+        this.permits = permits;
+        this.available = permits;
+        this.id = ids.getAndIncrement();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public synchronized int getAvailablePermits(){
+        return available;
+    }
+
+    //所有 BootTask 的步骤等待该资源组许可的总时间（纳秒）
+    public long getTotalWaitNanos(){
+        return waitNanos.get();
+    }
+
+    //等待过该资源组许可的次数
+    public int getWaitCount(){
+        return waitCount.get();
+    }
+
+    //有空闲的许可时获取，否则登记等待，释放许可时回调 Waiter.onPermit
+    synchronized boolean acquireOrWait(@NonNull Waiter waiter){
+        if (available > 0){
+            available--;
+            return true;
+        }
+        waiters.add(waiter);
+        return false;
+    }
+
+    //释放一个许可：有等待者时直接交给优先级最高的一个，在当前线程中回调
+    void release(){
+        Waiter next;
+        synchronized (this){
+            if (waiters.isEmpty()){
+                available++;
+                return;
+            }
+            int best = 0;
+            for (int i = 1; i < waiters.size(); i++){
+                if (waiters.get(i).priority() > waiters.get(best).priority()) best = i;
+            }
+            next = waiters.remove(best);
+        }
+        next.onPermit(this);
+    }
+
+    void addWaitNanos(long nanos){
+        waitNanos.addAndGet(nanos);
+        waitCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + permits;
+    }
+
+    interface Waiter {
+        long priority();
+
+        //已经获得许可，不再需要时由等待者调用 release 交还
+        void onPermit(@NonNull ResourceGroup group);
+    }
+}
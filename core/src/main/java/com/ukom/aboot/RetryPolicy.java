@@ -0,0 +1,129 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 步骤失败时的重试策略：最大尝试次数、指数退避与随机抖动，以及可以重试的异常
+ *
+ * 第 n 次重试之前等待 min(maxBackoff, initialBackoff * multiplier^(n-1))，再乘以 [1 - jitter, 1 + jitter] 之间的随机数。
+ * 退避由 BootRuntime 的定时器驱动，不会占用执行步骤的线程。
+ *
+ * 默认只重试带有异常的失败（步骤被取消除外），没有异常的失败（例如缺少变量、依赖的步骤失败）不会重试。
+ *
+ */
+public final class RetryPolicy {
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 1, 0, 0, null);
+
+    private static final Random random = new Random();
+
+    private static final Filter DEFAULT_FILTER = new Filter() {
+        @Override
+        public boolean shouldRetry(@NonNull Throwable throwable) {
+            return !(throwable instanceof CancellationException);
+        }
+    };
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final double multiplier;
+    private final long maxBackoffMillis;
+    private final double jitter;
+    private final Filter filter;
+
+    private RetryPolicy(int maxAttempts, long initialBackoffMillis, double multiplier,
+                        long maxBackoffMillis, double jitter, Filter filter){
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.multiplier = multiplier;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.jitter = jitter;
+        this.filter = filter;
+    }
+
+    /**
+     * @param maxAttempts 最多执行的次数（包括第一次）
+     * @param initialBackoffMillis 第一次重试之前的等待时间，之后每次翻倍，最长 30 秒，抖动 ±20%
+     */
+    public static RetryPolicy of(int maxAttempts, long initialBackoffMillis){
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        if (initialBackoffMillis < 0) throw new IllegalArgumentException("negative backoff: " + initialBackoffMillis);
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, 2, 30_000, 0.2, DEFAULT_FILTER);
+    }
+
+    public RetryPolicy withMultiplier(double multiplier){
+        if (multiplier < 1) throw new IllegalArgumentException("multiplier must not be less than 1: " + multiplier);
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, multiplier, maxBackoffMillis, jitter, filter);
+    }
+
+    public RetryPolicy withMaxBackoff(long maxBackoffMillis){
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, multiplier, maxBackoffMillis, jitter, filter);
+    }
+
+    //0 ~ 1，0 表示不抖动
+    public RetryPolicy withJitter(double jitter){
+        if (jitter < 0 || jitter > 1) throw new IllegalArgumentException("jitter must be in [0, 1]: " + jitter);
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, multiplier, maxBackoffMillis, jitter, filter);
+    }
+
+    public RetryPolicy withFilter(@NonNull Filter filter){
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, multiplier, maxBackoffMillis, jitter, filter);
+    }
+
+    //只重试这些类型（及其子类）的异常
+    @SafeVarargs
+    public final RetryPolicy retryOn(@NonNull final Class<? extends Throwable>... types){
+        return withFilter(new Filter() {
+            @Override
+            public boolean shouldRetry(@NonNull Throwable throwable) {
+                for (Class<? extends Throwable> type : types){
+                    if (type.isInstance(throwable)) return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    //第 attempt 次执行失败之后是否重试
+    boolean shouldRetry(int attempt, @NonNull Result<?> result){
+        if (result.isSuccessful() || attempt >= maxAttempts) return false;
+        Throwable throwable = result.throwable();
+        return throwable != null && filter.shouldRetry(throwable);
+    }
+
+    //第 attempt 次执行失败之后，重试之前等待的时间
+    long backoffMillis(int attempt){
+        double backoff = initialBackoffMillis * Math.pow(multiplier, attempt - 1);
+        backoff = Math.min(backoff, maxBackoffMillis);
+        if (jitter > 0){
+            double factor;
+            synchronized (random){
+                factor = 1 + jitter * (2 * random.nextDouble() - 1);
+            }
+            backoff *= factor;
+        }
+        return Math.max(0, Math.round(backoff));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy { maxAttempts: " + maxAttempts
+                + ", initialBackoffMillis: " + initialBackoffMillis
+                + ", multiplier: " + multiplier
+                + ", maxBackoffMillis: " + maxBackoffMillis
+                + ", jitter: " + jitter
+                + " }";
+    }
+
+    public interface Filter {
+        boolean shouldRetry(@NonNull Throwable throwable);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BootSimulator 的一组假设：线程数、调度策略、步骤所在的 Lane 与耗时的改动、工作线程处理步骤完成的开销。
+ * 不可变，每个 with 方法返回新的对象，便于参数扫描
+ *
+ */
+public final class SimulationConfig {
+
+    //就绪步骤的出队顺序
+    public enum Policy {
+        //关键路径优先，与 BootTask 相同
+        CRITICAL_PATH,
+        //先就绪先执行
+        FIFO,
+        //按装载顺序
+        LOAD_ORDER
+    }
+
+    private final int cpuThreads;
+    private final int ioThreads;
+    private final Policy policy;
+    private final long completionOverheadMicros;
+    private final Map<BootStep.Type, BootStep.Lane> lanes;
+    private final Map<BootStep.Type, Long> durations;
+
+    private SimulationConfig(int cpuThreads, int ioThreads, Policy policy, long completionOverheadMicros,
+                             Map<BootStep.Type, BootStep.Lane> lanes, Map<BootStep.Type, Long> durations){
+        this.cpuThreads = cpuThreads;
+        this.ioThreads = ioThreads;
+        this.policy = policy;
+        this.completionOverheadMicros = completionOverheadMicros;
+        this.lanes = lanes;
+        this.durations = durations;
+    }
+
+    //CPU、IO Lane 的线程数，COORDINATOR Lane 总是 1 个线程
+    public static SimulationConfig of(int cpuThreads, int ioThreads){
+        if (cpuThreads < 1 || ioThreads < 1)
+            throw new IllegalArgumentException("thread count must be positive, cpu: " + cpuThreads + ", io: " + ioThreads);
+        return new SimulationConfig(cpuThreads, ioThreads, Policy.CRITICAL_PATH, 0,
+                Collections.<BootStep.Type, BootStep.Lane>emptyMap(), Collections.<BootStep.Type, Long>emptyMap());
+    }
+
+    public SimulationConfig withPolicy(@NonNull Policy policy){
+        return new SimulationConfig(cpuThreads, ioThreads, policy, completionOverheadMicros, lanes, durations);
+    }
+
+    //工作线程处理每个步骤完成的耗时（微秒），与 COORDINATOR Lane 的步骤共用一个线程；无锁完成模式下为 0
+    public SimulationConfig withCompletionOverhead(long micros){
+        if (micros < 0) throw new IllegalArgumentException("negative overhead: " + micros);
+        return new SimulationConfig(cpuThreads, ioThreads, policy, micros, lanes, durations);
+    }
+
+    //假设该步骤在另一个 Lane 中执行
+    public SimulationConfig withLane(@NonNull BootStep.Type type, @NonNull BootStep.Lane lane){
+        Map<BootStep.Type, BootStep.Lane> copy = new HashMap<>(lanes);
+        copy.put(type, lane);
+        return new SimulationConfig(cpuThreads, ioThreads, policy, completionOverheadMicros, copy, durations);
+    }
+
+    //假设该步骤的耗时（微秒），例如优化之后的预期耗时
+    public SimulationConfig withDuration(@NonNull BootStep.Type type, long micros){
+        if (micros < 0) throw new IllegalArgumentException("negative duration: " + micros);
+        Map<BootStep.Type, Long> copy = new HashMap<>(durations);
+        copy.put(type, micros);
+        return new SimulationConfig(cpuThreads, ioThreads, policy, completionOverheadMicros, lanes, copy);
+    }
+
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getCompletionOverheadMicros() {
+        return completionOverheadMicros;
+    }
+
+    Map<BootStep.Type, BootStep.Lane> lanes(){
+        return lanes;
+    }
+
+    Map<BootStep.Type, Long> durations(){
+        return durations;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationConfig { cpu: " + cpuThreads + ", io: " + ioThreads + ", policy: " + policy
+                + ", completionOverhead: " + completionOverheadMicros + " us"
+                + (lanes.isEmpty() ? "" : ", lanes: " + lanes)
+                + (durations.isEmpty() ? "" : ", durations: " + durations)
+                + " }";
+    }
+}
@@ -0,0 +1,82 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BootSimulator 的一次模拟结果，时间单位为微秒，以启动开始为 0
+ */
+public final class SimulationResult {
+
+    private final SimulationConfig config;
+    private final long makespanMicros;
+    private final List<BootStep.Type> criticalPath;
+    private final BootStep.Type[] types;
+    private final long[] finishMicros;
+    //COORDINATOR、CPU、IO Lane 的忙碌时间
+    private final long[] laneBusyMicros;
+
+    SimulationResult(SimulationConfig config, long makespanMicros, BootStep.Type[] types, int[] criticalPath,
+                     long[] finishMicros, long[] laneBusyMicros){
+        this.config = config;
+        this.makespanMicros = makespanMicros;
+        this.types = types;
+        this.finishMicros = finishMicros;
+        this.laneBusyMicros = laneBusyMicros;
+        List<BootStep.Type> path = new ArrayList<>(criticalPath.length);
+        for (int index : criticalPath) path.add(types[index]);
+        this.criticalPath = Collections.unmodifiableList(path);
+    }
+
+    public SimulationConfig getConfig() {
+        return config;
+    }
+
+    //最后一个步骤完成的时间
+    public long getMakespanMicros() {
+        return makespanMicros;
+    }
+
+    //从没有依赖的步骤到最后完成的步骤，沿最后完成的依赖回溯得到
+    public List<BootStep.Type> getCriticalPath() {
+        return criticalPath;
+    }
+
+    //步骤完成的时间，没有该步骤时返回 -1
+    public long getFinishMicros(@NonNull BootStep.Type type){
+        for (int i = 0; i < types.length; i++){
+            if (types[i] == type) return finishMicros[i];
+        }
+        return -1;
+    }
+
+    //Lane 中线程的平均利用率（0 ~ 1）
+    public double getUtilization(@NonNull BootStep.Lane lane){
+        int threads;
+        switch (lane){
+            case CPU:
+                threads = config.getCpuThreads();
+                break;
+            case IO:
+                threads = config.getIoThreads();
+                break;
+            default:
+                threads = 1;
+                break;
+        }
+        return makespanMicros == 0 ? 0 : (double) laneBusyMicros[lane.ordinal()] / (threads * makespanMicros);
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationResult { makespan: " + makespanMicros + " us, criticalPath: " + criticalPath
+                + ", utilization: { COORDINATOR: " + String.format("%.2f", getUtilization(BootStep.Lane.COORDINATOR))
+                + ", CPU: " + String.format("%.2f", getUtilization(BootStep.Lane.CPU))
+                + ", IO: " + String.format("%.2f", getUtilization(BootStep.Lane.IO))
+                + " }, config: " + config + " }";
+    }
+}
@@ -0,0 +1,27 @@
+package com.ukom.aboot;
+
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 在编译期声明 BootStep 的依赖，由 processor 模块的注解处理器检查依赖缺失与循环依赖，
+ * 并生成已经排好拓扑序的 BootRegistry，见 BootTask.loadRegistry
+ *
+ * 被注解的类需要是 public、非抽象、有 public 无参构造方法的 BootStep，依赖由注解声明，不需要在构造方法中调用 addDependency
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Step {
+
+    //依赖的步骤，相当于 addDependency(type, false)
+    Class<? extends BootStep>[] dependsOn() default {};
+
+    //依赖并读取其变量的步骤，相当于 addDependency(type, true)
+    Class<? extends BootStep>[] needVariable() default {};
+}
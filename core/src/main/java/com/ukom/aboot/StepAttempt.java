@@ -0,0 +1,49 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+/**
+ * 设置了重试策略的步骤的一次执行，记录在 TaskResult.getAttempts 中
+ */
+public final class StepAttempt {
+    private final int number;
+    private final long backoffMillis;
+    private final long durationNanos;
+    private final Result<?> result;
+
+    StepAttempt(int number, long backoffMillis, long durationNanos, @NonNull Result<?> result){
+        this.number = number;
+        this.backoffMillis = backoffMillis;
+        this.durationNanos = durationNanos;
+        this.result = result;
+    }
+
+    //第几次执行，从 1 开始
+    public int getNumber() {
+        return number;
+    }
+
+    //本次执行之前退避等待的时间（毫秒），第一次执行为 0
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    //从开始执行到回调结果的耗时（纳秒）
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public Result<?> getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "StepAttempt { number: " + number
+                + ", backoffMillis: " + backoffMillis
+                + ", durationNanos: " + durationNanos
+                + ", result: " + result
+                + " }";
+    }
+}
@@ -0,0 +1,104 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 步骤的输出流：有界的通道，生产者步骤在执行期间逐个发布，流式依赖它（BootStep.addStreamingDependency）的步骤
+ * 在第一个元素发布时开始执行，与生产者同时处理
+ *
+ * 由 BootTask 在执行之前为有流式依赖者的步骤创建，生产者与消费者都通过 VariableContainer.getChannel 获取。
+ * 每个元素只会被一个消费者取出；通道满时 put 阻塞生产者，直到消费者取出元素（背压）。
+ * 生产者的结果记录之后通道关闭：成功时消费者取完剩余的元素后 take 返回 null，失败时 take 抛出 ExecutionException。
+ *
+ * 注：put 与 take 都会阻塞，生产者与消费者不应该在 COORDINATOR Lane 中执行
+ *
+ */
+public final class StepChannel<T> {
+    private static final int OPEN = 0;
+    private static final int CLOSED = 1;
+    private static final int FAILED = 2;
+
+    private final ArrayDeque<T> items;
+    private final int capacity;
+    //尚未结束的消费者，都结束之后不再接收元素
+    private int consumers;
+    private int state = OPEN;
+    private Result<?> failure;
+    private boolean isStarted;
+    private Runnable startListener;
+
+    StepChannel(int capacity, int consumers){
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive, capacity: " + capacity);
+        this.items = new ArrayDeque<>(capacity);
+        this.capacity = capacity;
+        this.consumers = consumers;
+    }
+
+    //第一个元素发布时在生产者的线程中调用，只调用一次
+    void setStartListener(@Nullable Runnable listener){
+        this.startListener = listener;
+    }
+
+    /**
+     * 发布一个元素，通道满时阻塞
+     * @return false 表示通道已经关闭（生产者已经结束、超时或被取消）或者所有消费者都已经结束，生产者应该停止
+     */
+    public boolean put(@NonNull T item) throws InterruptedException {
+        Runnable listener = null;
+        synchronized (this){
+            while (state == OPEN && consumers > 0 && items.size() >= capacity) wait();
+            if (state != OPEN || consumers <= 0) return false;
+            items.add(item);
+            notifyAll();
+            if (!isStarted){
+                isStarted = true;
+                listener = startListener;
+            }
+        }
+        if (listener != null) listener.run();
+        return true;
+    }
+
+    /**
+     * 取出一个元素，没有元素时阻塞
+     * @return 生产者成功结束并且所有元素都已经取出时返回 null
+     * @throws ExecutionException 生产者失败
+     */
+    public @Nullable T take() throws InterruptedException, ExecutionException {
+        synchronized (this){
+            while (items.isEmpty() && state == OPEN) wait();
+            if (state == FAILED) throw new ExecutionException(failure.getMessage(), failure.throwable());
+            T item = items.poll();
+            if (item != null) notifyAll();
+            return item;
+        }
+    }
+
+    //生产者成功结束，剩余的元素仍可以取出
+    synchronized void close(){
+        if (state != OPEN) return;
+        state = CLOSED;
+        notifyAll();
+    }
+
+    //生产者失败，丢弃剩余的元素
+    synchronized void fail(@NonNull Result<?> result){
+        if (state != OPEN) return;
+        state = FAILED;
+        failure = result;
+        items.clear();
+        notifyAll();
+    }
+
+    //一个消费者结束，所有消费者都结束之后丢弃剩余的元素，阻塞的生产者返回
+    synchronized void consumerFinished(){
+        if (--consumers > 0) return;
+        items.clear();
+        notifyAll();
+    }
+}
@@ -0,0 +1,19 @@
+package com.ukom.aboot;
+
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.annotation.ElementType;
+
+/**
+ * 注解处理器为每个模块生成的步骤清单（com.ukom.aboot.generated 包中），
+ * 生成 BootRegistry 的模块从编译路径中收集所有模块的清单并合并依赖图，不要直接使用
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface StepContribution {
+
+    //该模块中被 @Step 注解的步骤
+    Class<? extends BootStep>[] value();
+}
@@ -0,0 +1,95 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+/**
+ * 启动步骤的调度器，按照 BootStep 声明的 Lane 分发执行：
+ * - COORDINATOR：在 BootTask 的工作线程中直接执行；
+ * - CPU：在线程数等于 CPU 核数的线程池中执行；
+ * - IO：在独立的、有界的线程池中执行。
+ *
+ * 调度器属于 BootRuntime，由共享该 BootRuntime 的所有 BootTask 共同使用，避免启动时出现多个相互竞争的线程池。
+ * 线程池中每个 BootTask 有独立的等待队列，按步骤的优先级（关键路径长度）排序，空闲线程在各个 BootTask 之间轮转取任务。
+ *
+ */
+public class StepDispatcher {
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final long KEEP_ALIVE_MILLIS = 30_000;
+
+    private final int cpuThreads;
+    private final int ioThreads;
+
+    private final LaneExecutor cpuExecutor;
+    private final LaneExecutor ioExecutor;
+
+    public StepDispatcher(){
+        this(CPU_COUNT, Math.max(4, CPU_COUNT * 2));
+    }
+
+    public StepDispatcher(int cpuThreads, int ioThreads){
+        if (cpuThreads <= 0 || ioThreads <= 0)
+            throw new IllegalArgumentException("thread count must be positive, cpu: " + cpuThreads + ", io: " + ioThreads);
+        this.cpuThreads = cpuThreads;
+        this.ioThreads = ioThreads;
+        this.cpuExecutor = new LaneExecutor("cpu", cpuThreads, KEEP_ALIVE_MILLIS);
+        this.ioExecutor = new LaneExecutor("io", ioThreads, KEEP_ALIVE_MILLIS);
+    }
+
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * 分发一个步骤
+     * @param owner 提交步骤的 BootTask，不同 BootTask 之间公平调度
+     * @param lane 步骤声明的 Lane
+     * @param runnable 执行步骤的 Runnable，COORDINATOR Lane 的步骤在调用线程（BootTask 的工作线程）中直接执行
+     * @param priority 步骤的优先级，同一个 BootTask 中优先级高的先执行
+     */
+    void dispatch(@NonNull Object owner, @NonNull BootStep.Lane lane, @NonNull Runnable runnable, long priority){
+        switch (lane){
+            case CPU:
+                cpuExecutor.execute(owner, runnable, priority);
+                break;
+            case IO:
+                ioExecutor.execute(owner, runnable, priority);
+                break;
+            case COORDINATOR:
+            default:
+                runnable.run();
+                break;
+        }
+    }
+
+    //修改已经分发、尚未执行的步骤的优先级
+    void reprioritize(@NonNull Object owner, @NonNull BootStep.Lane lane, @NonNull Runnable runnable, long priority){
+        switch (lane){
+            case CPU:
+                cpuExecutor.reprioritize(owner, runnable, priority);
+                break;
+            case IO:
+                ioExecutor.reprioritize(owner, runnable, priority);
+                break;
+            default:
+                break;
+        }
+    }
+
+    //预先创建所有线程
+    void prestart(){
+        cpuExecutor.prestart();
+        ioExecutor.prestart();
+    }
+
+    //关闭线程池，已经提交的步骤会继续执行完
+    void shutdown(){
+        cpuExecutor.shutdown();
+        ioExecutor.shutdown();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * BootTask.request 返回的 Future：步骤成功时为步骤产生的变量，失败时 get 抛出 ExecutionException。
+ * 步骤不能从外部取消，cancel 总是返回 false
+ */
+final class StepFuture implements Future<Object>, BootStep.Callback {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile Result<?> result;
+
+    static StepFuture completed(@NonNull BootStep.Type type, @NonNull Result<?> result){
+        StepFuture future = new StepFuture();
+        future.onStepFinished(type, result);
+        return future;
+    }
+
+    //只接受第一次回调
+    @Override
+    public void onStepFinished(BootStep.Type type, Result result) {
+        synchronized (latch){
+            if (this.result != null) return;
+            this.result = result;
+        }
+        latch.countDown();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return valueOf(result);
+    }
+
+    @Override
+    public Object get(long timeout, @NonNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) throw new TimeoutException("request timed out");
+        return valueOf(result);
+    }
+
+    private static Object valueOf(Result<?> result) throws ExecutionException {
+        if (result.isSuccessful()) return result.getValue();
+        throw new ExecutionException(result.getMessage(), result.throwable());
+    }
+}
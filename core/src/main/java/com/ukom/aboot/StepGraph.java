@@ -0,0 +1,899 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 由 BootTask 装载的 BootStep 编译而成的依赖图
+ *
+ * 每个步骤分配一个下标，以 Type 的 id 查找下标，保存反向邻接表（依赖它的步骤）以及尚未完成的依赖计数，
+ * 一个步骤完成时只需要访问它的直接后继，计数归零的步骤进入就绪队列。
+ *
+ * 编译时以 O(V+E) 的 Kahn 算法检查依赖缺失与循环依赖，并保存得到的拓扑序。
+ *
+ * 就绪队列按优先级出队：优先级为步骤到终点的最长路径（按步骤耗时加权），
+ * 关键路径上的步骤会先于其他就绪步骤执行。
+ *
+ * 步骤按阶段（BootStep.Phase）进入就绪队列：CRITICAL 立即入队；DEFERRED 在里程碑之后入队；
+ * IDLE 在里程碑之后，每次空闲时入队一个，上一个结束之前的空闲信号被忽略。在此之前就绪的步骤暂存在各自阶段的队列中。
+ * 步骤的阶段不晚于依赖它的步骤，被更早阶段的步骤依赖时随之提前（编译时按拓扑逆序计算）。
+ *
+ * 有调用者等待某个步骤时（见 BootTask.await），该步骤及其未完成的祖先步骤的优先级提升到 URGENT_PRIORITY 之上，
+ * 先于其他就绪步骤执行。
+ *
+ * 每个步骤的变量还记录尚未结束的读取者（needVariable 为 true 的依赖）数量，归零之后即可从 VariableContainer 中释放。
+ *
+ * 懒加载的步骤（BootStep.isLazy）只有在依赖它的步骤都是懒加载时才推迟，未被请求之前不计入剩余步骤数，
+ * 依赖计数中额外包含一个需求计数，被请求（activate）时释放，与依赖的完成以相同的方式竞争使计数归零；
+ * 依赖它的步骤的阶段与优先级也不受未被请求的懒加载步骤影响。
+ *
+ * 依赖计数、完成状态与剩余步骤数都是原子变量，可以在执行步骤的线程中直接更新（见 releaseConcurrently），
+ * 就绪队列与优先级非线程安全，只能在 BootTask 的工作线程中访问
+ *
+ */
+final class StepGraph {
+    //已经失败（或被判定失败）的步骤，不会再进入就绪队列
+    private static final int DOOMED = -1;
+
+    //步骤的完成状态：结果已经认领（正在记录）、已经完成
+    private static final int CLAIMED = 1;
+    private static final int COMPLETED = 2;
+
+    //被等待的步骤及其祖先步骤的优先级增量，高于任何按耗时计算的优先级
+    static final long URGENT_PRIORITY = 1L << 60;
+
+    private static final int STREAM_OPENED = 1;
+    private static final int STREAM_CLOSED = 2;
+
+    private final BootStep[] steps;
+    //以 Type 的 id 为下标，值为步骤的下标，不在依赖图中为 -1
+    private final int[] indexes;
+    private final int[][] dependents;
+    private final AtomicIntegerArray pending;
+    //0、CLAIMED 或 COMPLETED
+    private final AtomicIntegerArray finished;
+    private final int[] topologicalOrder;
+    private final long[] priorities;
+    private final boolean[] urgent;
+
+    //就绪步骤的二叉堆，每个步骤最多入队一次，用定长数组即可
+    private final int[] readyHeap;
+    private int readySize;
+
+    //提前之后的阶段，以及已经就绪、等待阶段开放的步骤
+    private final BootStep.Phase[] phases;
+    private final int[] parkedDeferred;
+    private int parkedDeferredSize;
+    private final int[] parkedIdle;
+    private int parkedIdleSize;
+    //里程碑已经到达
+    private boolean deferredOpen;
+    //没有空闲信号，IDLE 步骤在里程碑之后全部执行
+    private boolean idleOpen;
+    //空闲时投放、尚未结束的 IDLE 步骤，没有时为 -1；无锁模式下在完成步骤的线程中清除
+    private volatile int idleInFlight = -1;
+
+    private final AtomicInteger remaining;
+
+    //未被请求的懒加载步骤为 1，被请求或结束之后为 0
+    private final AtomicIntegerArray dormant;
+    //未被请求、尚未结束的懒加载步骤数，只在 BootTask 的工作线程中访问
+    private int dormantCount;
+
+    //每个步骤读取的变量所属的步骤，以及每个步骤的变量尚未结束的读取者数量
+    private final int[][] variableSources;
+    private final AtomicIntegerArray consumers;
+
+    //步骤的就绪、分发、开始执行、成功完成、结束（成功或失败）的时间（System.nanoTime()），0 表示未发生
+    //由不同的线程写入，经 BootTask 工作线程的回调或原子计数器的更新保证可见性
+    private final long[] readyAt;
+    private final long[] dispatchedAt;
+    private final long[] startedAt;
+    private final long[] succeededAt;
+    private final long[] finishedAt;
+
+    //流式依赖它的步骤，以及输出流的状态：0 未开始，STREAM_OPENED 已经提前释放流式依赖者，STREAM_CLOSED 结束时仍未开始
+    private final int[][] streamingDependents;
+    private final AtomicIntegerArray streams;
+
+    //步骤所属的资源组（按获取顺序排列，没有时为 null），以及许可的持有数：
+    //获得全部许可时为 1，直到结果记录；每次执行开始时再持有一次，直到这次执行真正结束
+    private final ResourceGroup[][] resourceGroups;
+    private final AtomicIntegerArray permitted;
+
+    //分发给 StepDispatcher 的 Runnable，用于提升已经在线程池中排队的步骤的优先级
+    private final Runnable[] runnables;
+    //步骤的超时任务，步骤完成时取消
+    private final Future<?>[] timeouts;
+
+    private StepGraph(BootStep[] steps, int[] indexes,
+                      int[][] dependents, int[] pending, int[] topologicalOrder){
+        this.steps = steps;
+        this.indexes = indexes;
+        this.dependents = dependents;
+        this.pending = new AtomicIntegerArray(pending);
+        this.topologicalOrder = topologicalOrder;
+        this.finished = new AtomicIntegerArray(steps.length);
+        this.readyAt = new long[steps.length];
+        this.dispatchedAt = new long[steps.length];
+        this.startedAt = new long[steps.length];
+        this.succeededAt = new long[steps.length];
+        this.finishedAt = new long[steps.length];
+        this.priorities = new long[steps.length];
+        this.urgent = new boolean[steps.length];
+        this.runnables = new Runnable[steps.length];
+        this.timeouts = new Future<?>[steps.length];
+        this.readyHeap = new int[steps.length];
+
+        //按拓扑逆序，依赖它的步骤是否推迟已经确定
+        this.dormant = new AtomicIntegerArray(steps.length);
+        for (int i = topologicalOrder.length - 1; i >= 0; i--){
+            int index = topologicalOrder[i];
+            if (!CompositeStep.isLazy(steps[index])) continue;
+            boolean isDormant = true;
+            for (int dependent : dependents[index]){
+                if (dormant.get(dependent) == 0){
+                    isDormant = false;
+                    break;
+                }
+            }
+            if (!isDormant) continue;
+            dormant.set(index, 1);
+            this.pending.incrementAndGet(index);
+            dormantCount++;
+        }
+        this.remaining = new AtomicInteger(steps.length - dormantCount);
+
+        this.variableSources = new int[steps.length][];
+        int[] consumerCounts = new int[steps.length];
+        for (int i = 0; i < steps.length; i++){
+            List<BootStep.Type> variables = steps[i].variableDependencies;
+            int count = variables == null ? 0 : variables.size();
+            int[] sources = new int[count];
+            int found = 0;
+            for (int j = 0; j < count; j++){
+                //needVariable 的依赖同时也是步骤依赖，编译时已经检查过存在；增量执行的子图之外的变量一直保留
+                int source = indexOf(indexes, variables.get(j));
+                if (source < 0) continue;
+                sources[found++] = source;
+                consumerCounts[source]++;
+            }
+            variableSources[i] = found == count ? sources : Arrays.copyOf(sources, found);
+        }
+        this.consumers = new AtomicIntegerArray(consumerCounts);
+
+        this.streamingDependents = new int[steps.length][];
+        int[] streamingCounts = new int[steps.length];
+        for (BootStep step : steps){
+            for (BootStep.Type type : step.streamingDependencies){
+                int source = indexOf(indexes, type);
+                if (source >= 0) streamingCounts[source]++;
+            }
+        }
+        for (int i = 0; i < steps.length; i++){
+            streamingDependents[i] = new int[streamingCounts[i]];
+            streamingCounts[i] = 0;
+        }
+        for (int i = 0; i < steps.length; i++){
+            for (BootStep.Type type : steps[i].streamingDependencies){
+                int source = indexOf(indexes, type);
+                if (source >= 0) streamingDependents[source][streamingCounts[source]++] = i;
+            }
+        }
+        this.streams = new AtomicIntegerArray(steps.length);
+
+        this.resourceGroups = new ResourceGroup[steps.length][];
+        for (int i = 0; i < steps.length; i++){
+            ResourceGroup[] groups = steps[i].getResourceGroups();
+            if (groups == null || groups.length == 0) continue;
+            groups = groups.clone();
+            Arrays.sort(groups, new Comparator<ResourceGroup>() {
+                @Override
+                public int compare(ResourceGroup a, ResourceGroup b) {
+                    return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+                }
+            });
+            resourceGroups[i] = groups;
+        }
+        this.permitted = new AtomicIntegerArray(steps.length);
+
+        //按拓扑逆序，依赖它的步骤的阶段已经确定
+        this.phases = new BootStep.Phase[steps.length];
+        int deferredCount = 0, idleCount = 0;
+        for (int i = topologicalOrder.length - 1; i >= 0; i--){
+            int index = topologicalOrder[i];
+            BootStep.Phase phase = CompositeStep.phaseOf(steps[index]);
+            for (int dependent : dependents[index]){
+                if (dormant.get(dependent) != 0) continue;
+                if (phases[dependent].ordinal() < phase.ordinal()) phase = phases[dependent];
+            }
+            phases[index] = phase;
+            if (phase == BootStep.Phase.DEFERRED) deferredCount++;
+            else if (phase == BootStep.Phase.IDLE) idleCount++;
+        }
+        this.parkedDeferred = new int[deferredCount];
+        this.parkedIdle = new int[idleCount];
+
+        long[] costs = new long[steps.length];
+        for (int i = 0; i < steps.length; i++){
+            costs[i] = steps[i].getCost();
+        }
+        prioritize(costs);
+
+        for (int i = 0; i < pending.length; i++){
+            if (this.pending.get(i) == 0) offer(i);
+        }
+    }
+
+    //展开组合步骤之后编译依赖图，依赖缺失或存在循环依赖时返回失败的 Result
+    static Result<StepGraph> compile(@NonNull Collection<BootStep> loadedSteps){
+        return build(CompositeStep.flatten(loadedSteps));
+    }
+
+    private static Result<StepGraph> build(Collection<BootStep> stepCollection){
+        int size = stepCollection.size();
+        BootStep[] steps = stepCollection.toArray(new BootStep[size]);
+        int capacity = 0;
+        for (BootStep step : steps){
+            capacity = Math.max(capacity, step.getType().getId() + 1);
+        }
+        int[] indexes = new int[capacity];
+        Arrays.fill(indexes, -1);
+        for (int i = 0; i < size; i++){
+            int id = steps[i].getType().getId();
+            if (indexes[id] >= 0)
+                return Result.failure(String.format("duplicate step of type[%s]", steps[i].getType()));
+            indexes[id] = i;
+        }
+
+        //先统计出度，再一次性分配反向邻接数组
+        int[] pending = new int[size];
+        int[] outDegree = new int[size];
+        for (int i = 0; i < size; i++){
+            List<BootStep.Type> dependencies = steps[i].stepDependencies;
+            pending[i] = dependencies.size();
+            for (BootStep.Type type : dependencies){
+                int from = indexOf(indexes, type);
+                //缺少依赖
+                if (from < 0)
+                    return Result.failure(String.format("lack of dependency[%s] by type[%s]", type, steps[i].getType()));
+                outDegree[from]++;
+            }
+        }
+
+        int[][] dependents = new int[size][];
+        for (int i = 0; i < size; i++){
+            dependents[i] = new int[outDegree[i]];
+            outDegree[i] = 0;
+        }
+        for (int i = 0; i < size; i++){
+            for (BootStep.Type type : steps[i].stepDependencies){
+                int from = indexes[type.getId()];
+                dependents[from][outDegree[from]++] = i;
+            }
+        }
+
+        int[] order = topologicalSort(dependents, pending);
+        if (order.length < size){
+            //存在循环依赖
+            return Result.failure(describeCycle(steps, indexes, order));
+        }
+
+        return Result.success(new StepGraph(steps, indexes, dependents, pending, order));
+    }
+
+    /**
+     * 由注解处理器生成的注册表创建依赖图，注册表在编译期已经检查过依赖并排好拓扑序，这里不再检查；
+     * 包含组合步骤时展开之后按常规方式编译
+     */
+    static Result<StepGraph> fromRegistry(@NonNull BootRegistry registry){
+        BootStep[] steps = createSteps(registry);
+        for (BootStep step : steps){
+            if (step instanceof CompositeStep) return compile(Arrays.asList(steps));
+        }
+        int size = steps.length;
+        int capacity = 0;
+        for (BootStep step : steps){
+            capacity = Math.max(capacity, step.getType().getId() + 1);
+        }
+        int[] indexes = new int[capacity];
+        Arrays.fill(indexes, -1);
+        int[][] dependents = new int[size][];
+        int[] pending = new int[size];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++){
+            int id = steps[i].getType().getId();
+            //不同的步骤类声明了同名的 Type，编译期无法检查
+            if (indexes[id] >= 0)
+                return Result.failure(String.format("duplicate step of type[%s]", steps[i].getType()));
+            indexes[id] = i;
+            dependents[i] = registry.dependents(i);
+            pending[i] = registry.dependencies(i).length;
+            order[i] = i;
+        }
+        return Result.success(new StepGraph(steps, indexes, dependents, pending, order));
+    }
+
+    /**
+     * 增量执行的子图：只包含 included 的步骤，对子图之外（沿用上次执行结果）的步骤的依赖视为已经完成，
+     * 不再计入依赖计数；读取的变量不变。会修改步骤的依赖，只用于新装载、尚未执行的依赖图
+     */
+    StepGraph subgraph(@NonNull boolean[] included){
+        Set<BootStep.Type> types = new HashSet<>();
+        List<BootStep> list = new ArrayList<>();
+        for (int i = 0; i < steps.length; i++){
+            if (!included[i]) continue;
+            types.add(steps[i].getType());
+            list.add(steps[i]);
+        }
+        for (BootStep step : list){
+            List<BootStep.Type> dependencies = new ArrayList<>();
+            for (BootStep.Type type : step.stepDependencies){
+                if (types.contains(type)) dependencies.add(type);
+            }
+            step.stepDependencies = dependencies;
+        }
+        //原图已经检查过，子图不会缺少依赖或存在循环依赖
+        return build(list).getValue();
+    }
+
+    //创建注册表中的步骤，并按注册表设置步骤的依赖
+    static BootStep[] createSteps(@NonNull BootRegistry registry){
+        int size = registry.size();
+        BootStep[] steps = new BootStep[size];
+        BootStep.Type[] types = new BootStep.Type[size];
+        for (int i = 0; i < size; i++){
+            steps[i] = registry.create(i);
+            types[i] = steps[i].getType();
+        }
+        for (int i = 0; i < size; i++){
+            steps[i].stepDependencies = typesOf(types, registry.dependencies(i));
+            steps[i].variableDependencies = typesOf(types, registry.variables(i));
+        }
+        return steps;
+    }
+
+    private static List<BootStep.Type> typesOf(BootStep.Type[] types, int[] indexes){
+        BootStep.Type[] list = new BootStep.Type[indexes.length];
+        for (int i = 0; i < indexes.length; i++) list[i] = types[indexes[i]];
+        return new ArrayList<>(Arrays.asList(list));
+    }
+
+    //Kahn 算法，存在环时返回的序列长度小于步骤数
+    private static int[] topologicalSort(int[][] dependents, int[] pending){
+        int size = pending.length;
+        int[] inDegree = pending.clone();
+        int[] order = new int[size];
+        int head = 0, tail = 0;
+        for (int i = 0; i < size; i++){
+            if (inDegree[i] == 0) order[tail++] = i;
+        }
+        while (head < tail){
+            for (int dependent : dependents[order[head++]]){
+                if (--inDegree[dependent] == 0) order[tail++] = dependent;
+            }
+        }
+        return tail == size ? order : Arrays.copyOf(order, tail);
+    }
+
+    /**
+     * 未进入拓扑序的步骤都至少有一个依赖同样未进入拓扑序，
+     * 从任意一个这样的步骤出发沿依赖前进，第一个重复出现的步骤即闭合了一个环
+     */
+    private static String describeCycle(BootStep[] steps, int[] indexes,
+                                        int[] order){
+        boolean[] sorted = new boolean[steps.length];
+        for (int index : order) sorted[index] = true;
+
+        int start = 0;
+        while (sorted[start]) start++;
+
+        //position[i] 为步骤 i 在路径中的位置 + 1
+        int[] position = new int[steps.length];
+        List<BootStep.Type> path = new ArrayList<>();
+        int cursor = start;
+        while (position[cursor] == 0){
+            path.add(steps[cursor].getType());
+            position[cursor] = path.size();
+            for (BootStep.Type type : steps[cursor].stepDependencies){
+                int next = indexes[type.getId()];
+                if (!sorted[next]){
+                    cursor = next;
+                    break;
+                }
+            }
+        }
+
+        List<BootStep.Type> chain = path.subList(position[cursor] - 1, path.size());
+        return "circular dependencies, chain: " + chain + ", tail: " + steps[cursor].getType();
+    }
+
+    int size(){
+        return steps.length;
+    }
+
+    int indexOf(BootStep.Type type){
+        return indexOf(indexes, type);
+    }
+
+    private static int indexOf(int[] indexes, BootStep.Type type){
+        int id = type.getId();
+        return id < indexes.length ? indexes[id] : -1;
+    }
+
+    //Type id 的上限，变量与结果按此分配数组
+    int typeCapacity(){
+        return indexes.length;
+    }
+
+    //拓扑序，被依赖的步骤总排在依赖它的步骤之前
+    int[] topologicalOrder(){
+        return topologicalOrder;
+    }
+
+    /**
+     * 按拓扑逆序计算每个步骤到终点的最长路径：priority = cost + max(后继的 priority)，
+     * 并重新整理就绪队列
+     * @param costs 以步骤下标索引的耗时
+     */
+    void prioritize(@NonNull long[] costs){
+        for (int i = topologicalOrder.length - 1; i >= 0; i--){
+            int index = topologicalOrder[i];
+            long longest = 0;
+            for (int dependent : dependents[index]){
+                if (dormant.get(dependent) != 0) continue;
+                if (priorities[dependent] > longest) longest = priorities[dependent];
+            }
+            priorities[index] = Math.max(0, costs[index]) + longest;
+        }
+        for (int index = 0; index < urgent.length; index++){
+            if (urgent[index]) priorities[index] += URGENT_PRIORITY;
+        }
+        heapify();
+    }
+
+    /**
+     * 提升步骤及其所有未完成的祖先步骤的优先级并提前到 CRITICAL 阶段，重新整理就绪队列
+     * @return 本次被提升优先级的步骤
+     */
+    int[] boost(int index){
+        int[] boosted = new int[steps.length];
+        int count = 0;
+        if (finished.get(index) == 0 && !urgent[index]){
+            urgent[index] = true;
+            boosted[count++] = index;
+        }
+        //boosted 同时作为广度优先遍历的队列
+        for (int head = 0; head < count; head++){
+            for (BootStep.Type type : steps[boosted[head]].stepDependencies){
+                int ancestor = indexOf(type);
+                if (finished.get(ancestor) != 0 || urgent[ancestor]) continue;
+                urgent[ancestor] = true;
+                boosted[count++] = ancestor;
+            }
+        }
+        for (int i = 0; i < count; i++){
+            priorities[boosted[i]] += URGENT_PRIORITY;
+        }
+        if (count > 0) heapify();
+        //被等待的步骤不再等待所属的阶段
+        for (int i = 0; i < count; i++){
+            promote(boosted[i]);
+        }
+        return Arrays.copyOf(boosted, count);
+    }
+
+    private void heapify(){
+        for (int i = readySize / 2 - 1; i >= 0; i--){
+            siftDown(i);
+        }
+    }
+
+    long priority(int index){
+        return priorities[index];
+    }
+
+    BootStep step(int index){
+        return steps[index];
+    }
+
+    int[] dependents(int index){
+        return dependents[index];
+    }
+
+    //取出优先级最高的就绪步骤，没有则返回 -1
+    int pollReady(){
+        if (readySize == 0) return -1;
+        int head = readyHeap[0];
+        readyHeap[0] = readyHeap[--readySize];
+        siftDown(0);
+        return head;
+    }
+
+    //依赖的某个步骤成功完成，返回 true 表示该步骤已经就绪并进入就绪队列
+    boolean release(int index){
+        if (releaseConcurrently(index)){
+            offer(index);
+            return true;
+        }
+        return false;
+    }
+
+    //依赖的某个步骤成功完成，返回 true 表示该步骤已经就绪，由调用者负责执行，只会有一个调用者得到 true
+    boolean releaseConcurrently(int index){
+        int count;
+        do {
+            count = pending.get(index);
+            if (count <= 0) return false;
+        } while (!pending.compareAndSet(index, count, count - 1));
+        return count == 1;
+    }
+
+    //已就绪的步骤按阶段进入就绪队列，阶段尚未开放时暂存
+    void offer(int index){
+        switch (phases[index]){
+            case DEFERRED:
+                if (!deferredOpen){
+                    parkedDeferred[parkedDeferredSize++] = index;
+                    return;
+                }
+                break;
+            case IDLE:
+                if (!deferredOpen || !idleOpen){
+                    parkedIdle[parkedIdleSize++] = index;
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        offerReady(index);
+    }
+
+    BootStep.Phase phase(int index){
+        return phases[index];
+    }
+
+    //里程碑到达，暂存的 DEFERRED 步骤进入就绪队列
+    void openDeferred(){
+        if (deferredOpen) return;
+        deferredOpen = true;
+        for (int i = 0; i < parkedDeferredSize; i++) offerReady(parkedDeferred[i]);
+        parkedDeferredSize = 0;
+        if (idleOpen) releaseAllIdle();
+    }
+
+    //不再逐个投放 IDLE 步骤，里程碑之后全部进入就绪队列
+    void openIdle(){
+        if (idleOpen) return;
+        idleOpen = true;
+        if (deferredOpen) releaseAllIdle();
+    }
+
+    private void releaseAllIdle(){
+        for (int i = 0; i < parkedIdleSize; i++) offerReady(parkedIdle[i]);
+        parkedIdleSize = 0;
+    }
+
+    //空闲时投放一个优先级最高的 IDLE 步骤，里程碑之前或者上一个投放的步骤尚未结束时不投放，返回是否有步骤进入就绪队列
+    boolean releaseIdle(){
+        if (!deferredOpen || parkedIdleSize == 0 || idleInFlight >= 0) return false;
+        int best = 0;
+        for (int i = 1; i < parkedIdleSize; i++){
+            if (before(parkedIdle[i], parkedIdle[best])) best = i;
+        }
+        int index = parkedIdle[best];
+        parkedIdle[best] = parkedIdle[--parkedIdleSize];
+        idleInFlight = index;
+        offerReady(index);
+        return true;
+    }
+
+    //提前到 CRITICAL，已经暂存的步骤立即进入就绪队列
+    private void promote(int index){
+        BootStep.Phase phase = phases[index];
+        if (phase == BootStep.Phase.CRITICAL) return;
+        phases[index] = BootStep.Phase.CRITICAL;
+        if (phase == BootStep.Phase.DEFERRED && unpark(parkedDeferred, parkedDeferredSize, index)){
+            parkedDeferredSize--;
+            offerReady(index);
+        } else if (phase == BootStep.Phase.IDLE && unpark(parkedIdle, parkedIdleSize, index)){
+            parkedIdleSize--;
+            offerReady(index);
+        }
+    }
+
+    private static boolean unpark(int[] parked, int size, int index){
+        for (int i = 0; i < size; i++){
+            if (parked[i] != index) continue;
+            parked[i] = parked[size - 1];
+            return true;
+        }
+        return false;
+    }
+
+    private void offerReady(int index){
+        int cursor = readySize++;
+        while (cursor > 0){
+            int parent = (cursor - 1) >>> 1;
+            if (!before(index, readyHeap[parent])) break;
+            readyHeap[cursor] = readyHeap[parent];
+            cursor = parent;
+        }
+        readyHeap[cursor] = index;
+    }
+
+    private void siftDown(int cursor){
+        if (readySize == 0) return;
+        int index = readyHeap[cursor];
+        int half = readySize >>> 1;
+        while (cursor < half){
+            int child = 2 * cursor + 1;
+            int right = child + 1;
+            if (right < readySize && before(readyHeap[right], readyHeap[child])) child = right;
+            if (!before(readyHeap[child], index)) break;
+            readyHeap[cursor] = readyHeap[child];
+            cursor = child;
+        }
+        readyHeap[cursor] = index;
+    }
+
+    //优先级高的在前，相同时按装载顺序
+    private boolean before(int a, int b){
+        return priorities[a] != priorities[b] ? priorities[a] > priorities[b] : a < b;
+    }
+
+    /**
+     * 依赖的某个步骤失败，返回 true 表示是第一次判定该步骤失败（已就绪或已执行的步骤不受影响）。
+     * 未被请求的懒加载步骤也不受影响，被请求时再检查依赖（见 failedDependency）
+     */
+    boolean doom(int index){
+        int count;
+        do {
+            count = pending.get(index);
+            if (count <= 0 || finished.get(index) != 0 || dormant.get(index) != 0) return false;
+        } while (!pending.compareAndSet(index, count, DOOMED));
+        return true;
+    }
+
+    //流式依赖该步骤的步骤
+    int[] streamingDependents(int index){
+        return streamingDependents[index];
+    }
+
+    boolean isStreamingDependent(int index, int dependent){
+        for (int i : streamingDependents[index]){
+            if (i == dependent) return true;
+        }
+        return false;
+    }
+
+    //步骤发布了第一个元素，返回 true 时由调用者提前释放流式依赖者；步骤已经结束时返回 false
+    boolean openStream(int index){
+        return streams.compareAndSet(index, 0, STREAM_OPENED);
+    }
+
+    /**
+     * 步骤结束，在记录结果时调用
+     * @return 是否已经提前释放了流式依赖者，此时结束时不再释放它们
+     */
+    boolean closeStream(int index){
+        return !streams.compareAndSet(index, 0, STREAM_CLOSED) && streams.get(index) == STREAM_OPENED;
+    }
+
+    boolean isStreamOpened(int index){
+        return streams.get(index) == STREAM_OPENED;
+    }
+
+    /**
+     * 认领步骤的结果，步骤的结果可能同时来自步骤自身、超时、取消或者依赖的步骤失败，只有一个能认领成功，
+     * 认领成功后记录结果，再调用 complete
+     */
+    boolean claim(int index){
+        return finished.compareAndSet(index, 0, CLAIMED);
+    }
+
+    boolean isClaimed(int index){
+        return finished.get(index) != 0;
+    }
+
+    /**
+     * 标记步骤完成
+     * @return 剩余未完成的步骤数，-1 表示该步骤已经完成过或者是未被请求的懒加载步骤；只会有一个调用者得到 0
+     */
+    int complete(int index){
+        int state;
+        do {
+            state = finished.get(index);
+            if (state == COMPLETED) return -1;
+        } while (!finished.compareAndSet(index, state, COMPLETED));
+        //空闲时投放的步骤结束，之后的空闲信号可以投放下一个
+        if (idleInFlight == index) idleInFlight = -1;
+        //未被请求的懒加载步骤只会在工作线程中被取消，不计入剩余步骤数
+        if (dormant.get(index) != 0){
+            dormant.set(index, 0);
+            dormantCount--;
+            return -1;
+        }
+        return remaining.decrementAndGet();
+    }
+
+    //未被请求的懒加载步骤
+    boolean isDormant(int index){
+        return dormant.get(index) != 0;
+    }
+
+    //还有未被请求、尚未结束的懒加载步骤，只在 BootTask 的工作线程中调用
+    boolean hasDormant(){
+        return dormantCount > 0;
+    }
+
+    /**
+     * 请求懒加载的步骤：该步骤及其未被请求的懒加载祖先步骤计入剩余步骤数，只在 BootTask 的工作线程中调用。
+     * 由调用者检查返回的步骤的依赖是否已经失败，并释放它们的需求计数
+     * @return 本次被请求的步骤，该步骤在前，祖先步骤在后
+     */
+    int[] activate(int index){
+        int[] activated = new int[steps.length];
+        int count = 0;
+        if (dormant.get(index) != 0) activated[count++] = wake(index);
+        //activated 同时作为广度优先遍历的队列
+        for (int head = 0; head < count; head++){
+            for (BootStep.Type type : steps[activated[head]].stepDependencies){
+                int ancestor = indexOf(type);
+                if (dormant.get(ancestor) != 0) activated[count++] = wake(ancestor);
+            }
+        }
+        return Arrays.copyOf(activated, count);
+    }
+
+    //先计入剩余步骤数再清除标记，其他线程看到标记被清除时（doom）剩余步骤数已经包含该步骤
+    private int wake(int index){
+        remaining.incrementAndGet();
+        dormant.set(index, 0);
+        dormantCount--;
+        return index;
+    }
+
+    /**
+     * 已经失败的依赖，没有则返回 -1。
+     * 与 doom 相对：被请求的步骤先清除标记再检查依赖，失败的依赖先标记完成再 doom 依赖它的步骤，至少有一边会发现对方
+     */
+    int failedDependency(int index){
+        for (BootStep.Type type : steps[index].stepDependencies){
+            int dependency = indexOf(type);
+            if (finished.get(dependency) == COMPLETED && succeededAt[dependency] == 0) return dependency;
+        }
+        return -1;
+    }
+
+    //该步骤读取的变量所属的步骤
+    int[] variableSources(int index){
+        return variableSources[index];
+    }
+
+    //步骤所属的资源组，按获取许可的顺序排列；没有时为 null
+    ResourceGroup[] resourceGroups(int index){
+        return resourceGroups[index];
+    }
+
+    //已经获得全部许可
+    void markPermitted(int index){
+        permitted.set(index, 1);
+    }
+
+    //一次执行开始时持有许可；许可已经交还（或者没有资源组）时返回 false
+    boolean retainPermits(int index){
+        for (;;){
+            int holders = permitted.get(index);
+            if (holders == 0) return false;
+            if (permitted.compareAndSet(index, holders, holders + 1)) return true;
+        }
+    }
+
+    //结果记录或者一次执行结束时交还持有，最后一个持有者得到 true，由它交还资源组的许可
+    boolean releasePermits(int index){
+        for (;;){
+            int holders = permitted.get(index);
+            if (holders == 0) return false;
+            if (permitted.compareAndSet(index, holders, holders - 1)) return holders == 1;
+        }
+    }
+
+    //是否还有尚未结束、需要读取该步骤变量的步骤
+    boolean hasConsumers(int index){
+        return consumers.get(index) > 0;
+    }
+
+    //读取该步骤变量的某个步骤已经结束，返回 true 表示是最后一个读取者，变量可以释放
+    boolean consume(int index){
+        return consumers.decrementAndGet(index) == 0;
+    }
+
+    void setTimeout(int index, Future<?> timeout){
+        timeouts[index] = timeout;
+    }
+
+    void cancelTimeout(int index){
+        Future<?> timeout = timeouts[index];
+        if (timeout == null) return;
+        timeouts[index] = null;
+        timeout.cancel(false);
+    }
+
+    void markReady(int index, long time){
+        readyAt[index] = time;
+    }
+
+    void markDispatched(int index, long time){
+        dispatchedAt[index] = time;
+    }
+
+    void setRunnable(int index, Runnable runnable){
+        runnables[index] = runnable;
+    }
+
+    //已经分发、尚未开始执行的步骤的 Runnable，否则返回 null
+    Runnable pendingRunnable(int index){
+        return startedAt[index] == 0 ? runnables[index] : null;
+    }
+
+    //已经完成，结果已经记录
+    boolean isFinished(int index){
+        return finished.get(index) == COMPLETED;
+    }
+
+    void markStarted(int index, long time){
+        startedAt[index] = time;
+    }
+
+    void markSucceeded(int index, long time){
+        succeededAt[index] = time;
+    }
+
+    void markFinished(int index, long time){
+        finishedAt[index] = time;
+    }
+
+    long readyAt(int index){
+        return readyAt[index];
+    }
+
+    long dispatchedAt(int index){
+        return dispatchedAt[index];
+    }
+
+    //最后一次开始执行的时间
+    long startedAt(int index){
+        return startedAt[index];
+    }
+
+    long finishedAt(int index){
+        return finishedAt[index];
+    }
+
+    //成功执行的步骤耗时（纳秒），未执行或失败时返回 -1
+    long wallTime(int index){
+        return startedAt[index] == 0 || succeededAt[index] == 0 ? -1 : succeededAt[index] - startedAt[index];
+    }
+
+    //分发到开始执行之间的排队等待（纳秒），未执行时返回 -1
+    long queueWait(int index){
+        return startedAt[index] == 0 || dispatchedAt[index] == 0 ? -1 : startedAt[index] - dispatchedAt[index];
+    }
+
+    boolean isAllFinished(){
+        return remaining.get() == 0;
+    }
+}
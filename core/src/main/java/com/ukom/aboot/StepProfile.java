@@ -0,0 +1,220 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动步骤耗时的持久化记录，用于跨启动估计每个步骤的真实耗时
+ *
+ * 文件格式：8 字节文件头（magic、version），之后是定长 20 字节的记录（追加写入）：
+ * long 步骤名的哈希、int 执行耗时（微秒）、int 排队等待（微秒）、int 校验值。
+ * 读取时以内存映射的方式顺序折叠所有记录，得到指数加权移动平均（EWMA）；
+ * 记录数过多时重写为每个步骤一条记录。
+ *
+ * 文件缺失、文件头错误、校验失败或末尾不完整的记录都会被静默忽略。
+ *
+ */
+public class StepProfile {
+    private static final String TAG = "StepProfile";
+
+    private static final int MAGIC = 0x61426f74;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 20;
+
+    //平均每个步骤积累的记录数超过该值时压缩文件
+    private static final int COMPACT_FACTOR = 8;
+    private static final int MIN_COMPACT_RECORDS = 256;
+
+    private final File file;
+    private final float alpha;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final List<long[]> unsaved = new ArrayList<>();
+    private int recordsInFile;
+    private boolean isLoaded;
+
+    public StepProfile(@NonNull File file){
+        this(file, 0.3f);
+    }
+
+    /**
+     * @param file 记录文件
+     * @param alpha EWMA 的平滑系数，越大越偏向最近一次启动的耗时
+     */
+    public StepProfile(@NonNull File file, float alpha){
+        if (alpha <= 0 || alpha > 1) throw new IllegalArgumentException("alpha must be in (0, 1], alpha: " + alpha);
+        this.file = file;
+        this.alpha = alpha;
+    }
+
+    //从文件加载记录，只会加载一次
+    public synchronized void load(){
+        if (isLoaded) return;
+        isLoaded = true;
+        if (!file.isFile() || file.length() < HEADER_SIZE) return;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()){
+            long length = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+                BootLog.w(TAG, "load: unknown profile format, ignore " + file);
+                return;
+            }
+            int count = (int) ((length - HEADER_SIZE) / RECORD_SIZE);
+            for (int i = 0; i < count; i++){
+                long key = buffer.getLong();
+                int wall = buffer.getInt();
+                int wait = buffer.getInt();
+                int check = buffer.getInt();
+                if (check != checksum(key, wall, wait) || wall < 0 || wait < 0) continue;
+                fold(key, wall, wait);
+            }
+            recordsInFile = count;
+        } catch (IOException | RuntimeException e){
+            BootLog.w(TAG, "load: failed to read profile, ignore " + file + ", " + e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return 步骤的平均执行耗时（微秒），没有记录时返回 -1
+     */
+    public synchronized long getCostMicros(@NonNull BootStep.Type type){
+        load();
+        Entry entry = entries.get(keyOf(type));
+        return entry == null ? -1 : Math.round(entry.wall);
+    }
+
+    /**
+     * @return 步骤的平均排队等待（微秒），没有记录时返回 -1
+     */
+    public synchronized long getWaitMicros(@NonNull BootStep.Type type){
+        load();
+        Entry entry = entries.get(keyOf(type));
+        return entry == null ? -1 : Math.round(entry.wait);
+    }
+
+    //记录一次执行，调用 save() 之后写入文件
+    synchronized void record(@NonNull BootStep.Type type, long wallMicros, long waitMicros){
+        load();
+        long key = keyOf(type);
+        int wall = (int) Math.min(Integer.MAX_VALUE, Math.max(0, wallMicros));
+        int wait = (int) Math.min(Integer.MAX_VALUE, Math.max(0, waitMicros));
+        fold(key, wall, wait);
+        unsaved.add(new long[]{key, wall, wait});
+    }
+
+    //将新的记录追加到文件，记录过多时重写整个文件
+    synchronized void save(){
+        if (unsaved.isEmpty()) return;
+        try {
+            if (recordsInFile + unsaved.size() > Math.max(MIN_COMPACT_RECORDS, entries.size() * COMPACT_FACTOR)){
+                compact();
+            } else {
+                append();
+            }
+        } catch (IOException e){
+            BootLog.w(TAG, "save: failed to write profile " + file + ", " + e);
+        } finally {
+            unsaved.clear();
+        }
+    }
+
+    private void append() throws IOException {
+        boolean hasHeader = recordsInFile > 0 && file.length() >= HEADER_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate((hasHeader ? 0 : HEADER_SIZE) + unsaved.size() * RECORD_SIZE);
+        if (!hasHeader) buffer.putInt(MAGIC).putInt(VERSION);
+        for (long[] record : unsaved){
+            putRecord(buffer, record[0], (int) record[1], (int) record[2]);
+        }
+        buffer.flip();
+
+        try (FileOutputStream out = new FileOutputStream(file, hasHeader)){
+            FileChannel channel = out.getChannel();
+            //丢弃末尾不完整的记录，保证记录对齐
+            if (hasHeader){
+                long aligned = HEADER_SIZE + (channel.size() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+                if (aligned != channel.size()) channel.truncate(aligned);
+            }
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        recordsInFile += unsaved.size();
+    }
+
+    //每个步骤只保留一条记录（当前的平均值），先写入临时文件再替换
+    private void compact() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries.size() * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        for (Map.Entry<Long, Entry> e : entries.entrySet()){
+            Entry entry = e.getValue();
+            putRecord(buffer, e.getKey(), (int) Math.round(entry.wall), (int) Math.round(entry.wait));
+        }
+        buffer.flip();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)){
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        if (!temp.renameTo(file)){
+            if (!file.delete() || !temp.renameTo(file)) throw new IOException("failed to replace " + file);
+        }
+        recordsInFile = entries.size();
+    }
+
+    private void fold(long key, int wall, int wait){
+        Entry entry = entries.get(key);
+        if (entry == null){
+            entries.put(key, new Entry(wall, wait));
+        } else {
+            entry.wall += alpha * (wall - entry.wall);
+            entry.wait += alpha * (wait - entry.wait);
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, long key, int wall, int wait){
+        buffer.putLong(key).putInt(wall).putInt(wait).putInt(checksum(key, wall, wait));
+    }
+
+    private static int checksum(long key, int wall, int wait){
+        int h = (int) (key ^ (key >>> 32));
+        h = h * 31 + wall;
+        h = h * 31 + wait;
+        return h ^ MAGIC;
+    }
+
+    //步骤名的 64 位 FNV-1a 哈希
+    private static long keyOf(BootStep.Type type){
+        String name = type.getName();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++){
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static class Entry {
+        double wall;
+        double wait;
+
+        Entry(double wall, double wait){
+            this.wall = wall;
+            this.wait = wait;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 确定性步骤结果的跨启动快照：声明了快照（BootStep.getSnapshotKey 与 getSnapshotSerializer）的步骤，
+ * 失效标识与上次保存的一致时直接以快照中的值作为成功的结果，不再调用 executeImpl
+ *
+ * 文件格式：8 字节文件头（magic、version），之后是变长的记录：
+ * long 步骤名的哈希、int 失效标识的长度、失效标识（UTF-8）、int 值的长度（-1 表示 null）、值、int 校验值。
+ * 读取时以内存映射的方式建立索引，值在步骤被恢复时才反序列化；保存时重写整个文件（先写入临时文件再替换）。
+ *
+ * 文件缺失、文件头错误或校验失败时，从出错的记录开始被静默忽略；反序列化失败的步骤正常执行。
+ *
+ */
+public class StepSnapshot {
+    private static final String TAG = "StepSnapshot";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x61426f73;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    //记录中除失效标识与值以外的长度
+    private static final int RECORD_OVERHEAD = 20;
+
+    private final File file;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private boolean isLoaded;
+    private boolean isDirty;
+
+    public StepSnapshot(@NonNull File file){
+        this.file = file;
+    }
+
+    //从文件加载索引，只会加载一次
+    public synchronized void load(){
+        if (isLoaded) return;
+        isLoaded = true;
+        if (!file.isFile() || file.length() < HEADER_SIZE) return;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+                BootLog.w(TAG, "load: unknown snapshot format, ignore " + file);
+                return;
+            }
+            while (buffer.remaining() >= RECORD_OVERHEAD){
+                int start = buffer.position();
+                long name = buffer.getLong();
+                int keyLength = buffer.getInt();
+                if (keyLength < 0 || keyLength > buffer.remaining() - 8) break;
+                int keyAt = buffer.position();
+                buffer.position(keyAt + keyLength);
+                int dataLength = buffer.getInt();
+                if (dataLength < -1 || Math.max(0, dataLength) > buffer.remaining() - 4) break;
+                int dataAt = buffer.position();
+                buffer.position(dataAt + Math.max(0, dataLength));
+                //变长记录，出错之后无法找到下一条记录的开始
+                if (buffer.getInt() != checksum(buffer, start, buffer.position() - 4 - start)) break;
+
+                byte[] key = new byte[keyLength];
+                for (int i = 0; i < keyLength; i++) key[i] = buffer.get(keyAt + i);
+                entries.put(name, new Entry(new String(key, UTF_8), dataLength < 0 ? null : slice(buffer, dataAt, dataLength)));
+            }
+        } catch (IOException | RuntimeException e){
+            BootLog.w(TAG, "load: failed to read snapshot, ignore " + file + ", " + e);
+            entries.clear();
+        }
+    }
+
+    //快照中是否有该步骤、与 key 一致的记录
+    public synchronized boolean contains(@NonNull BootStep.Type type, @NonNull String key){
+        load();
+        Entry entry = entries.get(keyOf(type));
+        return entry != null && entry.key.equals(key);
+    }
+
+    /**
+     * 以快照恢复步骤的结果，在步骤就绪、分发之前调用
+     * @return 成功的结果；步骤没有声明快照、没有一致的记录或者反序列化失败时返回 null，步骤需要正常执行
+     */
+    @Nullable
+    Result<?> restore(@NonNull BootStep step){
+        String key = step.getSnapshotKey();
+        Serializer<?> serializer = step.getSnapshotSerializer();
+        if (key == null || serializer == null) return null;
+
+        long name = keyOf(step.getType());
+        Entry entry;
+        synchronized (this){
+            load();
+            entry = entries.get(name);
+            //本次启动中新记录的值尚未保存
+            if (entry == null || !entry.key.equals(key) || entry.serializer != null) return null;
+        }
+        try {
+            //每次恢复使用独立的读取位置，反序列化不持有锁
+            Object value = entry.data == null ? null : serializer.read(entry.data.duplicate());
+            return Result.success(value);
+        } catch (IOException | RuntimeException e){
+            BootLog.w(TAG, "restore: failed to read snapshot of " + step.getType() + ", " + e);
+            synchronized (this){
+                if (entries.get(name) == entry) entries.remove(name);
+                isDirty = true;
+            }
+            return null;
+        }
+    }
+
+    //记录步骤成功的结果，调用 save() 时才序列化并写入文件；已经有一致的记录（以快照恢复）时忽略
+    synchronized void record(@NonNull BootStep step, @Nullable Object value){
+        String key = step.getSnapshotKey();
+        Serializer<?> serializer = step.getSnapshotSerializer();
+        if (key == null || serializer == null) return;
+        load();
+        long name = keyOf(step.getType());
+        Entry entry = entries.get(name);
+        if (entry != null && entry.key.equals(key) && entry.serializer == null) return;
+        entry = new Entry(key, null);
+        entry.value = value;
+        entry.serializer = serializer;
+        entries.put(name, entry);
+        isDirty = true;
+    }
+
+    //重写快照文件，没有新的记录时不写入
+    public synchronized void save(){
+        if (!isDirty) return;
+        isDirty = false;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            for (Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ){
+                Map.Entry<Long, Entry> e = iterator.next();
+                Entry entry = e.getValue();
+                //序列化失败的记录不保存，下次启动时正常执行
+                if (entry.serializer != null && !serialize(entry)){
+                    iterator.remove();
+                    continue;
+                }
+                byte[] key = entry.key.getBytes(UTF_8);
+                recordBytes.reset();
+                record.writeLong(e.getKey());
+                record.writeInt(key.length);
+                record.write(key);
+                if (entry.data == null){
+                    record.writeInt(-1);
+                } else {
+                    ByteBuffer data = entry.data.duplicate();
+                    record.writeInt(data.remaining());
+                    while (data.hasRemaining()) record.write(data.get());
+                }
+                record.flush();
+                byte[] content = recordBytes.toByteArray();
+                out.write(content);
+                out.writeInt(checksum(ByteBuffer.wrap(content), 0, content.length));
+            }
+            out.flush();
+            write(bytes.toByteArray());
+        } catch (IOException | RuntimeException e){
+            BootLog.w(TAG, "save: failed to write snapshot " + file + ", " + e);
+        }
+    }
+
+    //序列化新记录的值，之后与读取的记录一样保存字节
+    @SuppressWarnings("unchecked")
+    private static boolean serialize(Entry entry){
+        Serializer<Object> serializer = (Serializer<Object>) entry.serializer;
+        Object value = entry.value;
+        entry.serializer = null;
+        entry.value = null;
+        if (value == null) return true;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            serializer.write(value, out);
+            out.flush();
+            entry.data = ByteBuffer.wrap(bytes.toByteArray());
+            return true;
+        } catch (IOException | RuntimeException e){
+            BootLog.w(TAG, "save: failed to serialize " + value + ", " + e);
+            return false;
+        }
+    }
+
+    private void write(byte[] content) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)){
+            out.write(content);
+        }
+        if (!temp.renameTo(file)){
+            if (!file.delete() || !temp.renameTo(file)) throw new IOException("failed to replace " + file);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length){
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+        return duplicate.slice();
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length){
+        int h = MAGIC;
+        for (int i = offset; i < offset + length; i++){
+            h = h * 31 + buffer.get(i);
+        }
+        return h;
+    }
+
+    //步骤名的 64 位 FNV-1a 哈希
+    private static long keyOf(BootStep.Type type){
+        String name = type.getName();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++){
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 步骤结果的值的序列化，值为 null 时不会调用；
+     * 修改序列化格式时需要同时修改 BootStep.getSnapshotKey 返回的失效标识
+     */
+    public interface Serializer<T> {
+        void write(@NonNull T value, @NonNull DataOutput out) throws IOException;
+
+        //buffer 只读，包含 write 写入的全部字节
+        @NonNull
+        T read(@NonNull ByteBuffer buffer) throws IOException;
+    }
+
+    private static class Entry {
+        final String key;
+        //只读，新记录在保存之前为 null
+        ByteBuffer data;
+        //新记录保存之前的值与序列化
+        Object value;
+        Serializer<?> serializer;
+
+        Entry(String key, ByteBuffer data){
+            this.key = key;
+            this.data = data;
+        }
+    }
+}
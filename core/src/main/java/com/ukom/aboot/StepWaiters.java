@@ -0,0 +1,127 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 等待某个步骤结果的调用者（BootTask.await 与 BootTask.whenReady）
+ *
+ * 步骤完成时先更新依赖图的完成状态，再检查 hasWaiters；登记等待时先设置 hasWaiters，
+ * 再在 BootTask 的工作线程中检查完成状态。两边都是 volatile 读写，至少有一边会发现对方，
+ * 同一个调用者只会被通知一次。
+ *
+ */
+final class StepWaiters {
+    private static final String TAG = "StepWaiters";
+
+    private final Map<BootStep.Type, List<Waiter>> waiters = new HashMap<>();
+    private volatile boolean hasWaiters;
+
+    boolean hasWaiters(){
+        return hasWaiters;
+    }
+
+    void add(@NonNull Waiter waiter){
+        synchronized (waiters){
+            List<Waiter> list = waiters.get(waiter.type);
+            if (list == null){
+                list = new ArrayList<>(1);
+                waiters.put(waiter.type, list);
+            }
+            list.add(waiter);
+            hasWaiters = true;
+        }
+    }
+
+    //正在被等待的步骤
+    List<BootStep.Type> types(){
+        synchronized (waiters){
+            return new ArrayList<>(waiters.keySet());
+        }
+    }
+
+    /**
+     * 通知等待该步骤的调用者
+     * @param taskResult 记录调用者被阻塞的时间，为 null 时不记录
+     */
+    void complete(@NonNull BootStep.Type type, @NonNull Result<?> result, @Nullable TaskResult taskResult){
+        List<Waiter> list;
+        synchronized (waiters){
+            list = waiters.remove(type);
+            if (waiters.isEmpty()) hasWaiters = false;
+        }
+        if (list == null) return;
+        for (Waiter waiter : list){
+            waiter.complete(result, taskResult);
+        }
+    }
+
+    //通知所有的调用者，用于没有步骤可以执行的情况（未装载步骤、依赖检查失败）
+    void completeAll(@NonNull Result<?> result){
+        for (BootStep.Type type : types()){
+            complete(type, result, null);
+        }
+    }
+
+    static final class Waiter {
+        final BootStep.Type type;
+        //whenReady 的回调，await 时为 null
+        private final BootStep.Callback callback;
+        private final CountDownLatch latch;
+        private final long waitingSince = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile long timedOutAt;
+        private volatile Result<?> result;
+
+        private Waiter(BootStep.Type type, BootStep.Callback callback){
+            this.type = type;
+            this.callback = callback;
+            this.latch = callback == null ? new CountDownLatch(1) : null;
+        }
+
+        static Waiter blocking(@NonNull BootStep.Type type){
+            return new Waiter(type, null);
+        }
+
+        static Waiter async(@NonNull BootStep.Type type, @NonNull BootStep.Callback callback){
+            return new Waiter(type, callback);
+        }
+
+        //阻塞等待结果，超时返回 null
+        @Nullable Result<?> await(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+            if (!latch.await(timeout, unit)){
+                timedOutAt = System.nanoTime();
+                //超时的同时可能恰好完成
+                if (latch.getCount() > 0) return null;
+            }
+            return result;
+        }
+
+        private void complete(Result<?> result, TaskResult taskResult){
+            if (!done.compareAndSet(false, true)) return;
+            this.result = result;
+            if (callback != null){
+                try {
+                    callback.onStepFinished(type, result);
+                } catch (Throwable e){
+                    BootLog.e(TAG, "complete: callback of " + type + " threw an exception", e);
+                }
+                return;
+            }
+
+            //已经超时的调用者只阻塞到超时为止
+            long until = timedOutAt != 0 ? timedOutAt : System.nanoTime();
+            if (taskResult != null) taskResult.addBlockedTime(type, until - waitingSince);
+            latch.countDown();
+        }
+    }
+}
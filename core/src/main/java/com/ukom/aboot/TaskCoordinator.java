@@ -0,0 +1,81 @@
+package com.ukom.aboot;
+
+
+import java.util.ArrayDeque;
+
+/**
+ * 一个 BootTask 在共享的工作线程（BootRuntime 的 CoordinatorExecutor）上的队列
+ *
+ * 每个 BootTask 在共享的工作线程中最多只有一个排队的轮次，每轮执行一个任务后重新排到队尾，
+ * 同时执行的多个 BootTask 按轮转的顺序交替处理回调与 COORDINATOR Lane 的步骤，
+ * 一个 BootTask 大量完成的步骤不会让其他 BootTask 的回调一直排在后面；同一个 BootTask 的任务仍然按提交的顺序串行执行。
+ *
+ */
+final class TaskCoordinator implements CoordinatorExecutor, Runnable {
+    private static final String TAG = "TaskCoordinator";
+
+    final CoordinatorExecutor shared;
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    //是否已经在共享的工作线程中排队
+    private boolean isScheduled;
+
+    TaskCoordinator(CoordinatorExecutor shared){
+        this.shared = shared;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        synchronized (this){
+            queue.add(runnable);
+            if (isScheduled) return;
+            isScheduled = true;
+        }
+        try {
+            shared.execute(this);
+        } catch (RuntimeException e){
+            //共享的工作线程已经释放
+            synchronized (this){
+                queue.clear();
+                isScheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    //在共享的工作线程中执行一个任务，还有任务时重新排到队尾
+    @Override
+    public void run() {
+        Runnable runnable;
+        synchronized (this){
+            runnable = queue.poll();
+        }
+        try {
+            if (runnable != null) runnable.run();
+        } finally {
+            boolean hasNext;
+            synchronized (this){
+                hasNext = !queue.isEmpty();
+                isScheduled = hasNext;
+            }
+            if (hasNext) reschedule();
+        }
+    }
+
+    private void reschedule(){
+        try {
+            shared.execute(this);
+        } catch (RuntimeException e){
+            BootLog.w(TAG, "reschedule: coordinator has been released, " + e);
+            synchronized (this){
+                queue.clear();
+                isScheduled = false;
+            }
+        }
+    }
+
+    //共享的工作线程属于 BootRuntime，不在这里释放
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,175 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TaskResult {
+
+    private boolean result;
+    private TaskDependenciesException dependenciesException;
+
+    //以 Type 的 id 为下标，无锁完成模式下不同的下标会被多个线程同时写入，
+    //onTaskFinished 回调之前由依赖图的计数保证可见；保存 Type 使它的 id 在结果存在期间不会分配给其他 Type
+    private BootStep.Type[] types;
+    private Result[] results;
+    //调用者通过 BootTask.await 等待每个步骤被阻塞的总时间（纳秒）
+    private long[] blockedNanos;
+    //设置了重试策略的步骤的每次执行，同一个步骤的多次执行先后进行
+    private List<StepAttempt>[] attempts;
+    //执行了步骤时才有
+    private BootReport report;
+    //步骤等待资源组许可的时间（纳秒），以资源组的名称为键
+    private final Map<String, Long> contentionNanos = new HashMap<>();
+
+    TaskResult(){
+        this(0);
+    }
+
+    TaskResult(int capacity){
+        types = new BootStep.Type[capacity];
+        results = new Result[capacity];
+        blockedNanos = new long[capacity];
+        attempts = newAttempts(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<StepAttempt>[] newAttempts(int capacity){
+        return (List<StepAttempt>[]) new List[capacity];
+    }
+
+    TaskResult(@NonNull TaskDependenciesException exception){
+        this(0);
+        this.result = false;
+        this.dependenciesException = exception;
+    }
+
+    public Result<?> getStepResult(@NonNull BootStep.Type type){
+        int id = type.getId();
+        return id < results.length ? results[id] : null;
+    }
+
+    //调用者通过 BootTask.await 等待该步骤被阻塞的总时间（纳秒），没有调用者等待时为 0
+    public long getBlockedNanos(@NonNull BootStep.Type type){
+        int id = type.getId();
+        return id < blockedNanos.length ? blockedNanos[id] : 0;
+    }
+
+    //调用者通过 BootTask.await 被阻塞的总时间（纳秒）
+    public long getTotalBlockedNanos(){
+        long total = 0;
+        for (long nanos : blockedNanos) total += nanos;
+        return total;
+    }
+
+    //本次执行中步骤等待资源组（ResourceGroup）许可的总时间（纳秒），以资源组的名称为键，只包含发生过等待的资源组
+    public synchronized Map<String, Long> getContentionNanos(){
+        return Collections.unmodifiableMap(new HashMap<>(contentionNanos));
+    }
+
+    //设置了重试策略的步骤的每次执行，按执行的先后排列；没有设置重试策略时为空
+    public List<StepAttempt> getAttempts(@NonNull BootStep.Type type){
+        int id = type.getId();
+        List<StepAttempt> list = id < attempts.length ? attempts[id] : null;
+        return list == null ? Collections.<StepAttempt>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    //关键路径、松弛时间与并行度的分析，没有执行任何步骤（未装载步骤、依赖检查失败）时为 null
+    public @Nullable BootReport getReport(){
+        return report;
+    }
+
+    public boolean isSuccessful(){
+        return result;
+    }
+
+    public boolean isDependenciesError() {
+        return dependenciesException != null;
+    }
+
+    public List<BootStep.Type> getFailedSteps(){
+        return getSteps(false);
+    }
+
+    public List<BootStep.Type> getSuccessfulSteps(){
+        return getSteps(true);
+    }
+
+    private List<BootStep.Type> getSteps(boolean result){
+        List<BootStep.Type> list = new ArrayList<>();
+        for (int id = 0; id < results.length; id++){
+            Result stepResult = results[id];
+            if (stepResult != null && stepResult.isSuccessful() == result){
+                list.add(types[id]);
+            }
+        }
+        return list;
+    }
+
+    void setResult(boolean result){
+        this.result = result;
+    }
+
+    void setReport(@NonNull BootReport report){
+        this.report = report;
+    }
+
+    void setStepResult(@NonNull BootStep.Type type, @NonNull Result<?> result){
+        int id = type.getId();
+        //依赖图之外的 Type，非常规用法，只在当前线程扩容
+        if (id >= results.length){
+            int capacity = id + 1;
+            types = Arrays.copyOf(types, capacity);
+            results = Arrays.copyOf(results, capacity);
+            blockedNanos = Arrays.copyOf(blockedNanos, capacity);
+            attempts = Arrays.copyOf(attempts, capacity);
+        }
+        types[id] = type;
+        results[id] = result;
+    }
+
+    void addAttempt(@NonNull BootStep.Type type, @NonNull StepAttempt attempt){
+        int id = type.getId();
+        if (id >= attempts.length) return;
+        if (attempts[id] == null) attempts[id] = new ArrayList<>(attempt.getNumber() + 1);
+        attempts[id].add(attempt);
+    }
+
+    synchronized void addContention(@NonNull String group, long nanos){
+        Long total = contentionNanos.get(group);
+        contentionNanos.put(group, total == null ? nanos : total + nanos);
+    }
+
+    synchronized void addBlockedTime(@NonNull BootStep.Type type, long nanos){
+        int id = type.getId();
+        if (id < blockedNanos.length) blockedNanos[id] += nanos;
+    }
+
+    public TaskDependenciesException getDependenciesException() {
+        return dependenciesException;
+    }
+
+    private String stepResultsToString(){
+        StringBuilder builder = new StringBuilder("{");
+        for (int id = 0; id < results.length; id++){
+            if (results[id] == null) continue;
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(types[id]).append('=').append(results[id]);
+        }
+        return builder.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "TaskResult { result: " + result
+                + (dependenciesException == null ? "" : ", dependenciesException: " + dependenciesException)
+                +  ", stepResults: " + stepResultsToString()
+                + '}';
+    }
+}
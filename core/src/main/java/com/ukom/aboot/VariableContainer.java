@@ -0,0 +1,148 @@
+package com.ukom.aboot;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by Administrator on 2018/6/20 0020.
+ *
+ * 以 Type 的 id 为下标保存变量，变量是否存在记录在位图中，查找不需要计算哈希，也不会分配对象。
+ *
+ * 每个下标只由产生该变量的步骤写入一次，依赖它的步骤在依赖计数归零之后才会读取，
+ * 由 BootTask 的依赖图保证可见性；位图需要原子更新，因为同一个字中的不同位可能被多个线程同时写入。
+ *
+ * BootTask 只保存有步骤读取（needVariable 为 true）的变量，并在最后一个读取者结束之后释放，
+ * 没有声明依赖的步骤不应读取其他步骤的变量，可以用 requestVariable 请求（例如懒加载的步骤）。
+ *
+ */
+public class VariableContainer {
+    private static final String TAG = "VariableContainer";
+
+    private Object[] variables = new Object[0];
+    //变量所属的 Type，保存期间 Type 不会被回收，它的 id 也不会分配给其他 Type
+    private BootStep.Type[] keys = new BootStep.Type[0];
+    private AtomicLongArray present = new AtomicLongArray(0);
+    //步骤的输出流，执行之前由 BootTask 创建
+    private StepChannel<?>[] channels = new StepChannel<?>[0];
+    private int channelCount;
+
+    //由 BootTask 设置，请求尚未产生的变量
+    private volatile Loader loader;
+
+    public boolean isVariableExist(BootStep.Type key){
+        int id = key.getId();
+        return id < variables.length && (present.get(id >>> 6) & (1L << id)) != 0;
+    }
+
+    public void putVariable(@NonNull BootStep.Type key, Object object){
+        if (object == null) return;
+        int id = key.getId();
+        //依赖图之外的 Type，非常规用法，只在当前线程扩容
+        if (id >= variables.length) ensureCapacity(id + 1);
+        keys[id] = key;
+        variables[id] = object;
+        int word = id >>> 6;
+        long bit = 1L << id;
+        long bits;
+        do {
+            bits = present.get(word);
+        } while ((bits & bit) == 0 && !present.compareAndSet(word, bits, bits | bit));
+    }
+
+    public @Nullable Object getVariable(@NonNull BootStep.Type key){
+        int id = key.getId();
+        return id < variables.length ? variables[id] : null;
+    }
+
+    /**
+     * 请求变量：变量已经存在时返回已完成的 Future，否则请求产生该变量的步骤（见 BootTask.request），
+     * 未执行的懒加载步骤此时开始执行。
+     *
+     * 注：不要在 COORDINATOR Lane 的步骤中阻塞等待返回的 Future
+     */
+    public @NonNull Future<Object> requestVariable(@NonNull BootStep.Type key){
+        Object value = getVariable(key);
+        if (value != null) return StepFuture.completed(key, Result.success(value));
+        Loader loader = this.loader;
+        if (loader == null){
+            return StepFuture.completed(key, Result.failure("变量 [ " + key + " ] 不存在，且没有可以产生它的 BootTask"));
+        }
+        return loader.request(key);
+    }
+
+    /**
+     * 获取步骤的输出流，生产者用于发布、流式依赖它的步骤用于读取（见 StepChannel）
+     * @return 该步骤没有流式依赖者时为 null
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable <T> StepChannel<T> getChannel(@NonNull BootStep.Type key){
+        int id = key.getId();
+        return id < channels.length ? (StepChannel<T>) channels[id] : null;
+    }
+
+    //在执行之前设置，由依赖图保证步骤执行时可见
+    void putChannel(@NonNull BootStep.Type key, @NonNull StepChannel<?> channel){
+        int id = key.getId();
+        if (id >= channels.length) ensureCapacity(id + 1);
+        channels[id] = channel;
+        channelCount++;
+    }
+
+    void clearChannels(){
+        if (channelCount == 0) return;
+        Arrays.fill(channels, null);
+        channelCount = 0;
+    }
+
+    void setLoader(@Nullable Loader loader){
+        this.loader = loader;
+    }
+
+    interface Loader {
+        @NonNull Future<Object> request(@NonNull BootStep.Type type);
+    }
+
+    //最后一个读取该变量的步骤结束之后释放
+    void removeVariable(@NonNull BootStep.Type key){
+        int id = key.getId();
+        if (id >= variables.length) return;
+        int word = id >>> 6;
+        long bit = 1L << id;
+        long bits;
+        do {
+            bits = present.get(word);
+        } while ((bits & bit) != 0 && !present.compareAndSet(word, bits, bits & ~bit));
+        variables[id] = null;
+        keys[id] = null;
+    }
+
+    //只清除存在的变量，开销与变量数量成正比
+    public void clear(){
+        clearChannels();
+        for (int word = 0; word < present.length(); word++){
+            long bits = present.getAndSet(word, 0);
+            while (bits != 0){
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                variables[id] = null;
+                keys[id] = null;
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    //在执行之前按依赖图中最大的 Type id 分配空间，执行期间不再扩容
+    void ensureCapacity(int capacity){
+        if (capacity <= variables.length) return;
+        variables = Arrays.copyOf(variables, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        channels = Arrays.copyOf(channels, capacity);
+        AtomicLongArray bits = new AtomicLongArray((capacity + 63) >>> 6);
+        for (int word = 0; word < present.length(); word++) bits.set(word, present.get(word));
+        present = bits;
+    }
+}
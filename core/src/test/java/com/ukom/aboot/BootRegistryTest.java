@@ -0,0 +1,101 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+import com.ukom.aboot.VariableContainerTest.ProbeStep;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static org.junit.Assert.*;
+
+/**
+ * 以注解处理器生成的 BootRegistry 装载步骤：needVariable 的变量、与 loadBootStep 混合装载，以及重复的 Type
+ */
+public class BootRegistryTest {
+
+    @Test
+    public void runsStepsFromRegistry() throws InterruptedException {
+        RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+        RecordingStep b = new RecordingStep(1, BootStep.Lane.IO);
+        ProbeStep c = new ProbeStep(2, BootStep.Lane.COORDINATOR);
+        c.probe = Arrays.asList(a.getType(), b.getType());
+        final BootRegistry registry = registry(new BootStep[]{a, b, c}, new int[][]{{}, {0}, {0, 1}},
+                new int[][]{{}, {}, {1}}, new int[][]{{1, 2}, {2}, {}});
+        TaskResult result = start(new BootTask() {
+            @Override
+            protected void load() {
+                loadRegistry(registry);
+            }
+        });
+
+        assertTrue(result.isSuccessful());
+        assertEquals(3, result.getSuccessfulSteps().size());
+        //只有被 needVariable 依赖的变量在执行时存在
+        assertEquals(Arrays.asList(false, true), c.probed);
+
+        //与 loadBootStep 装载的步骤混合时一起检查依赖
+        final RecordingStep extra = new RecordingStep(3, BootStep.Lane.CPU);
+        extra.addDependency(BootStep.Type.intern("step4"), false);
+        result = start(new BootTask() {
+            @Override
+            protected void load() {
+                loadRegistry(registry);
+                loadBootStep(extra);
+            }
+        });
+        assertTrue(result.isDependenciesError());
+        assertEquals(0, extra.executions.get());
+
+        //不同的步骤类声明了同名的 Type
+        final BootRegistry duplicated = registry(new BootStep[]{
+                new RecordingStep(0, BootStep.Lane.CPU), new RecordingStep(0, BootStep.Lane.IO)},
+                new int[][]{{}, {}}, new int[][]{{}, {}}, new int[][]{{}, {}});
+        result = start(new BootTask() {
+            @Override
+            protected void load() {
+                loadRegistry(duplicated);
+            }
+        });
+        assertTrue(result.isDependenciesError());
+        assertEquals("duplicate step of type[step0]", result.getDependenciesException().getMessage());
+    }
+
+    //与注解处理器生成的注册表相同的结构：按拓扑序排列，依赖以下标表示
+    private static BootRegistry registry(final BootStep[] steps, final int[][] dependencies,
+                                         final int[][] variables, final int[][] dependents){
+        return new BootRegistry() {
+            @Override
+            public int size() {
+                return steps.length;
+            }
+
+            @NonNull
+            @Override
+            public BootStep create(int index) {
+                return steps[index];
+            }
+
+            @NonNull
+            @Override
+            public int[] dependencies(int index) {
+                return dependencies[index];
+            }
+
+            @NonNull
+            @Override
+            public int[] variables(int index) {
+                return variables[index];
+            }
+
+            @NonNull
+            @Override
+            public int[] dependents(int index) {
+                return dependents[index];
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.ukom.aboot.BootTaskTest.run;
+import static org.junit.Assert.*;
+
+/**
+ * BootReport：关键路径、每个步骤的松弛时间与并行度
+ */
+public class BootReportTest {
+
+    @Test
+    public void reportFindsCriticalPathAndSlack() throws InterruptedException {
+        SleepStep slow = new SleepStep(0, BootStep.Lane.CPU, 60);
+        SleepStep fast = new SleepStep(1, BootStep.Lane.IO, 5);
+        SleepStep join = new SleepStep(2, BootStep.Lane.COORDINATOR, 5, slow, fast);
+        TaskResult result = run(false, slow, fast, join);
+
+        BootReport report = result.getReport();
+        assertNotNull(report);
+        assertEquals(Arrays.asList(slow.getType(), join.getType()), report.getCriticalPath());
+        assertEquals(0, report.getSlackNanos(slow.getType()));
+        assertEquals(0, report.getSlackNanos(join.getType()));
+        assertTrue(report.getSlackNanos(fast.getType()) >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(Collections.singletonList(fast.getType()),
+                report.getStepsWithSlack(TimeUnit.MILLISECONDS.toNanos(30)));
+        assertTrue(report.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(65));
+
+        //slow 与 fast 并行执行
+        double[] parallelism = report.getParallelism(10);
+        double busy = 0;
+        for (double value : parallelism) busy += value;
+        assertEquals(report.getAverageParallelism() * 10, busy, 0.01);
+        assertTrue(report.getAverageParallelism() > 0.9);
+        assertTrue(report.getCriticalPathCoordinatorDelayNanos() <= report.getTotalCoordinatorDelayNanos());
+        assertEquals(-1, report.getSlackNanos(BootStep.typeOfName("not loaded")));
+    }
+
+    //执行 millis 毫秒之后结束
+    static class SleepStep extends RecordingStep {
+        private final long millis;
+
+        SleepStep(int id, Lane lane, long millis, BootStep... dependencies){
+            super(id, lane, dependencies);
+            this.millis = millis;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            super.executeImpl(container, callback);
+        }
+    }
+}
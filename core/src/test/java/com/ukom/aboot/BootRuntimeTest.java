@@ -0,0 +1,174 @@
+package com.ukom.aboot;
+
+import com.ukom.aboot.BootTaskTest.LaneStep;
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * 多个 BootTask 共享 BootRuntime：并发执行、工作线程上的轮转，以及关闭时等待正在执行的任务
+ */
+public class BootRuntimeTest {
+
+    @Test
+    public void tasksShareOneRuntime() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(2, 2)).prestart();
+        try {
+            final int taskCount = 8;
+            final CountDownLatch latch = new CountDownLatch(taskCount);
+            final AtomicInteger successes = new AtomicInteger();
+            for (int i = 0; i < taskCount; i++){
+                final RecordingStep[] steps = BootTaskTest.randomDag(new Random(i), 200, 0);
+                BootTask task = new BootTask() {
+                    @Override
+                    protected void load() {
+                        for (RecordingStep step : steps) loadBootStep(step);
+                    }
+                };
+                task.setRuntime(runtime);
+                task.start(new BootTask.Callback() {
+                    @Override
+                    public void onTaskFinished(TaskResult result) {
+                        if (result.isSuccessful()) successes.incrementAndGet();
+                        latch.countDown();
+                    }
+                });
+            }
+            assertTrue("tasks did not finish", latch.await(30, TimeUnit.SECONDS));
+            assertEquals(taskCount, successes.get());
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    @Test
+    public void tasksTakeTurnsOnTheSharedCoordinator() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime();
+        try {
+            CoordinatorExecutor shared = runtime.coordinator();
+            TaskCoordinator first = new TaskCoordinator(shared);
+            TaskCoordinator second = new TaskCoordinator(shared);
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(6);
+            final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            //先占住共享的工作线程，两个任务的回调都在排队
+            shared.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            for (int i = 0; i < 6; i++){
+                final String name = i < 3 ? "a" : "b";
+                (i < 3 ? first : second).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add(name);
+                        done.countDown();
+                    }
+                });
+            }
+            gate.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            //第一个任务先提交的回调不会让第二个任务一直等待
+            assertEquals(Arrays.asList("a", "b", "a", "b", "a", "b"), order);
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownLetsRunningTasksFinish() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(2, 2));
+        LaneStep slow = new LaneStep("drainSlow", BootStep.Lane.CPU);
+        slow.rendezvous = new CountDownLatch(2);
+        slow.sleepMillis = 300;
+        LaneStep next = new LaneStep("drainNext", BootStep.Lane.IO, slow);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<TaskResult> result = new AtomicReference<>();
+        task(runtime, slow, next).start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult r) {
+                result.set(r);
+                finished.countDown();
+            }
+        });
+        //等待第一个步骤开始执行
+        slow.rendezvous.countDown();
+        assertTrue(slow.rendezvous.await(5, TimeUnit.SECONDS));
+        runtime.shutdown();
+
+        try {
+            task(runtime, new LaneStep("drainLate", BootStep.Lane.CPU)).start(new BootTask.Callback() {
+                @Override
+                public void onTaskFinished(TaskResult result) {
+                }
+            });
+            fail("started on a runtime that has been shut down");
+        } catch (IllegalStateException expected){
+        }
+
+        //正在执行的任务继续分发后继步骤，结束之后才释放线程
+        assertTrue("task did not finish", finished.await(5, TimeUnit.SECONDS));
+        assertTrue(result.get().isSuccessful());
+        assertEquals(2, result.get().getSuccessfulSteps().size());
+        assertLanesReleased(runtime);
+    }
+
+    @Test
+    public void shutdownStopsWaitingForUnrequestedLazySteps() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(2, 2));
+        LaneStep eager = new LaneStep("drainEager", BootStep.Lane.CPU);
+        LaneStep lazy = new LaneStep("drainLazy", BootStep.Lane.CPU, eager) {
+            @Override
+            public boolean isLazy() {
+                return true;
+            }
+        };
+        BootTask task = task(runtime, eager, lazy);
+        assertTrue(start(task).isSuccessful());
+
+        //启动已经结束，任务仍然为懒加载步骤保留依赖图
+        runtime.shutdown();
+        assertLanesReleased(runtime);
+        assertNull(lazy.thread);
+    }
+
+    //运行环境释放之后调度器不再接受步骤，释放在最后一个任务的工作线程中异步进行
+    private static void assertLanesReleased(BootRuntime runtime) throws InterruptedException {
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline){
+            try {
+                runtime.getDispatcher().dispatch(runtime, BootStep.Lane.CPU, noop, 0);
+            } catch (IllegalStateException released){
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("runtime was not released");
+    }
+}
@@ -0,0 +1,111 @@
+package com.ukom.aboot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BootSimulatorTest {
+
+    private static StepGraphTest.TestStep step(String name, long cost, BootStep.Lane lane, StepGraphTest.TestStep... dependencies) {
+        StepGraphTest.TestStep step = new StepGraphTest.TestStep(name, dependencies);
+        step.cost = cost;
+        step.lane = lane;
+        return step;
+    }
+
+    @Test
+    public void predictsMakespanAndCriticalPath() {
+        StepGraphTest.TestStep a = step("sim.a", 10, BootStep.Lane.CPU);
+        StepGraphTest.TestStep b = step("sim.b", 20, BootStep.Lane.CPU, a);
+        StepGraphTest.TestStep c = step("sim.c", 5, BootStep.Lane.IO, a);
+        StepGraphTest.TestStep d = step("sim.d", 1, BootStep.Lane.COORDINATOR, b, c);
+        BootSimulator simulator = new BootSimulator(Arrays.<BootStep>asList(d, c, b, a));
+
+        SimulationResult result = simulator.simulate(SimulationConfig.of(2, 1));
+        assertEquals(31_000, result.getMakespanMicros());
+        assertEquals(Arrays.asList(a.getType(), b.getType(), d.getType()), result.getCriticalPath());
+        assertEquals(15_000, result.getFinishMicros(c.getType()));
+
+        //假设 b 优化到 2 ms 之后，关键路径改为经过 c
+        result = simulator.simulate(SimulationConfig.of(2, 1).withDuration(b.getType(), 2_000));
+        assertEquals(16_000, result.getMakespanMicros());
+        assertEquals(Arrays.asList(a.getType(), c.getType(), d.getType()), result.getCriticalPath());
+    }
+
+    @Test
+    public void threadCountsAndLanes() {
+        List<BootStep> steps = new ArrayList<>();
+        for (int i = 0; i < 4; i++) steps.add(step("sim.parallel" + i, 10, BootStep.Lane.CPU));
+        BootSimulator simulator = new BootSimulator(steps);
+
+        assertEquals(40_000, simulator.simulate(SimulationConfig.of(1, 1)).getMakespanMicros());
+        assertEquals(20_000, simulator.simulate(SimulationConfig.of(2, 1)).getMakespanMicros());
+        SimulationResult result = simulator.simulate(SimulationConfig.of(4, 1));
+        assertEquals(10_000, result.getMakespanMicros());
+        assertEquals(1.0, result.getUtilization(BootStep.Lane.CPU), 1e-9);
+        //移到 IO Lane 的步骤与 CPU Lane 的步骤并行
+        assertEquals(30_000, simulator.simulate(SimulationConfig.of(1, 1)
+                .withLane(steps.get(0).getType(), BootStep.Lane.IO)).getMakespanMicros());
+    }
+
+    @Test
+    public void criticalPathPolicyBeatsLoadOrder() {
+        StepGraphTest.TestStep leaf = step("sim.leaf", 10, BootStep.Lane.CPU);
+        StepGraphTest.TestStep head = step("sim.head", 10, BootStep.Lane.CPU);
+        StepGraphTest.TestStep tail = step("sim.tail", 10, BootStep.Lane.IO, head);
+        BootSimulator simulator = new BootSimulator(Arrays.<BootStep>asList(leaf, head, tail));
+
+        SimulationConfig config = SimulationConfig.of(1, 1);
+        assertEquals(20_000, simulator.simulate(config).getMakespanMicros());
+        assertEquals(30_000, simulator.simulate(config.withPolicy(SimulationConfig.Policy.LOAD_ORDER)).getMakespanMicros());
+    }
+
+    @Test
+    public void completionOverheadSharesTheCoordinator() {
+        StepGraphTest.TestStep a = step("sim.overhead.a", 10, BootStep.Lane.CPU);
+        StepGraphTest.TestStep b = step("sim.overhead.b", 10, BootStep.Lane.CPU, a);
+        StepGraphTest.TestStep c = step("sim.overhead.c", 10, BootStep.Lane.COORDINATOR);
+        BootSimulator simulator = new BootSimulator(Arrays.<BootStep>asList(a, b, c));
+
+        assertEquals(20_000, simulator.simulate(SimulationConfig.of(1, 1)).getMakespanMicros());
+        //a 的完成要等 c 让出工作线程之后才能处理
+        assertEquals(20_500, simulator.simulate(SimulationConfig.of(1, 1).withCompletionOverhead(500)).getMakespanMicros());
+    }
+
+    @Test(expected = TaskDependenciesException.class)
+    public void rejectsCycles() {
+        StepGraphTest.TestStep a = new StepGraphTest.TestStep("sim.cycle.a");
+        StepGraphTest.TestStep b = new StepGraphTest.TestStep("sim.cycle.b", a);
+        a.addDependency(b.getType(), false);
+        new BootSimulator(Arrays.<BootStep>asList(a, b));
+    }
+
+    //参数扫描：1000 个步骤的随机依赖图，在所有线程数与调度策略的组合下模拟
+    @Test
+    public void sweepsAllConfigurations() {
+        Random random = new Random(7);
+        List<StepGraphTest.TestStep> steps = new ArrayList<>();
+        BootStep.Lane[] lanes = BootStep.Lane.values();
+        for (int i = 0; i < 1000; i++){
+            int count = i == 0 ? 0 : random.nextInt(Math.min(i, 3) + 1);
+            StepGraphTest.TestStep[] dependencies = new StepGraphTest.TestStep[count];
+            for (int j = 0; j < count; j++) dependencies[j] = steps.get(random.nextInt(i));
+            steps.add(step("sim.sweep" + i, 1 + random.nextInt(20), lanes[random.nextInt(lanes.length)], dependencies));
+        }
+        BootSimulator simulator = new BootSimulator(new ArrayList<BootStep>(steps));
+
+        for (int cpu = 1; cpu <= 8; cpu++){
+            for (int io = 1; io <= 8; io++){
+                for (SimulationConfig.Policy policy : SimulationConfig.Policy.values()){
+                    SimulationResult result = simulator.simulate(SimulationConfig.of(cpu, io).withPolicy(policy));
+                    assertTrue(result.getMakespanMicros() > 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在普通 JVM 上端到端运行 BootTask：依赖顺序、失败传递、依赖检查、各个 Lane 的线程，
+ * 以及无锁完成模式的压力测试与随机 DAG 的模糊测试。
+ * 其他功能的测试在各自的测试类中（如 PhaseSignalTest、RetryPolicyTest），共用这里的 RecordingStep 与运行任务的方法
+ */
+public class BootTaskTest {
+
+    @Test
+    public void passesVariablesAlongDependencies() throws InterruptedException {
+        final RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+        final RecordingStep b = new RecordingStep(1, BootStep.Lane.IO, a);
+        final RecordingStep c = new RecordingStep(2, BootStep.Lane.COORDINATOR, a, b);
+        TaskResult result = run(false, a, b, c);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(3, result.getSuccessfulSteps().size());
+        assertEquals(Integer.valueOf(0), c.seen.get(0));
+        assertEquals(Integer.valueOf(1), c.seen.get(1));
+    }
+
+    @Test
+    public void failureFailsDependentsOnly() throws InterruptedException {
+        RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+        RecordingStep b = new RecordingStep(1, BootStep.Lane.CPU, a);
+        RecordingStep c = new RecordingStep(2, BootStep.Lane.IO, b);
+        RecordingStep d = new RecordingStep(3, BootStep.Lane.IO);
+        a.fail = true;
+        TaskResult result = run(false, a, b, c, d);
+
+        assertFalse(result.isSuccessful());
+        assertFalse(result.isDependenciesError());
+        assertEquals(3, result.getFailedSteps().size());
+        assertEquals(0, b.executions.get());
+        assertEquals(0, c.executions.get());
+        assertTrue(result.getStepResult(d.getType()).isSuccessful());
+    }
+
+    @Test
+    public void reportsCircularDependencies() throws InterruptedException {
+        RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+        RecordingStep b = new RecordingStep(1, BootStep.Lane.CPU, a);
+        a.addDependency(b.getType(), false);
+        TaskResult result = run(false, a, b);
+
+        assertTrue(result.isDependenciesError());
+        assertTrue(result.getDependenciesException().getMessage().startsWith("circular dependencies"));
+    }
+
+    @Test
+    public void lockFreeCompletionExecutesEachStepOnce() throws InterruptedException {
+        for (int round = 0; round < 10; round++){
+            Random random = new Random(round);
+            RecordingStep[] steps = randomDag(random, 3_000, 0);
+            TaskResult result = run(true, steps);
+
+            assertTrue(result.isSuccessful());
+            for (RecordingStep step : steps) assertEquals(1, step.executions.get());
+        }
+    }
+
+    @Test
+    public void bothCompletionModesAgreeOnRandomGraphs() throws InterruptedException {
+        for (int round = 0; round < 30; round++){
+            Set<BootStep.Type> failed = null;
+            for (boolean lockFree : new boolean[]{false, true}){
+                RecordingStep[] steps = randomDag(new Random(round), 300, 20);
+                TaskResult result = run(lockFree, steps);
+                for (RecordingStep step : steps) assertTrue(step.executions.get() <= 1);
+
+                //同名的 Type 是同一个对象，两次运行失败的步骤可以直接比较
+                Set<BootStep.Type> types = new HashSet<>(result.getFailedSteps());
+                assertEquals(steps.length, types.size() + result.getSuccessfulSteps().size());
+                if (failed == null) failed = types;
+                else assertEquals(failed, types);
+            }
+        }
+    }
+
+    @Test
+    public void stepsRunOnTheirLanes() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(2, 2));
+        try {
+            LaneStep coordinator = new LaneStep("laneCoordinator", BootStep.Lane.COORDINATOR);
+            LaneStep cpu = new LaneStep("laneCpu", BootStep.Lane.CPU, coordinator);
+            LaneStep io = new LaneStep("laneIo", BootStep.Lane.IO, coordinator);
+            //CPU 与 IO 的步骤互相等待，不同时执行会超时失败
+            cpu.rendezvous = io.rendezvous = new CountDownLatch(2);
+            TaskResult result = start(task(runtime, coordinator, cpu, io));
+
+            assertTrue(result.isSuccessful());
+            assertEquals("aBoot-coordinator", coordinator.thread);
+            assertTrue(cpu.thread, cpu.thread.startsWith("aBoot-cpu-"));
+            assertTrue(io.thread, io.thread.startsWith("aBoot-io-"));
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    @Test
+    public void lanesStayWithinTheirPoolBounds() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(2, 3));
+        try {
+            Peak cpuPeak = new Peak();
+            Peak ioPeak = new Peak();
+            List<LaneStep> cpuSteps = new ArrayList<>();
+            List<LaneStep> ioSteps = new ArrayList<>();
+            for (int i = 0; i < 8; i++){
+                LaneStep cpu = new LaneStep("boundCpu" + i, BootStep.Lane.CPU);
+                cpu.peak = cpuPeak;
+                cpu.sleepMillis = 20;
+                cpuSteps.add(cpu);
+                LaneStep io = new LaneStep("boundIo" + i, BootStep.Lane.IO);
+                io.peak = ioPeak;
+                io.sleepMillis = 20;
+                ioSteps.add(io);
+            }
+            List<LaneStep> steps = new ArrayList<>(cpuSteps);
+            steps.addAll(ioSteps);
+            assertTrue(start(task(runtime, steps.toArray(new LaneStep[0]))).isSuccessful());
+
+            assertTrue(cpuPeak.max.get() <= 2);
+            assertTrue(ioPeak.max.get() <= 3);
+            assertTrue(threads(cpuSteps).size() <= 2);
+            assertTrue(threads(ioSteps).size() <= 3);
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    @Test
+    public void readyCpuStepsRunOnSeparateThreads() throws InterruptedException {
+        //不预先创建线程，一批步骤同时就绪时线程池按需扩容
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(8, 8));
+        try {
+            LaneStep root = new LaneStep("burstRoot", BootStep.Lane.CPU);
+            LaneStep mid = new LaneStep("burstMid", BootStep.Lane.CPU, root);
+            mid.sleepMillis = 100;
+            CountDownLatch rendezvous = new CountDownLatch(4);
+            List<LaneStep> steps = new ArrayList<>(Arrays.asList(root, mid));
+            for (int i = 0; i < 4; i++){
+                LaneStep child = new LaneStep("burstChild" + i, BootStep.Lane.CPU, mid);
+                child.rendezvous = rendezvous;
+                steps.add(child);
+            }
+            TaskResult result = start(task(runtime, steps.toArray(new LaneStep[0])));
+
+            //四个子步骤互相等待，串行执行时会等待超时而失败
+            assertTrue(result.isSuccessful());
+            assertEquals(4, threads(steps.subList(2, steps.size())).size());
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    //每个步骤随机依赖之前的 0 ~ 4 个步骤，failOneIn > 0 时约 1/failOneIn 的步骤失败
+    static RecordingStep[] randomDag(Random random, int size, int failOneIn) {
+        RecordingStep[] steps = new RecordingStep[size];
+        BootStep.Lane[] lanes = BootStep.Lane.values();
+        for (int i = 0; i < size; i++){
+            int count = i == 0 ? 0 : random.nextInt(Math.min(i, 4) + 1);
+            RecordingStep[] dependencies = new RecordingStep[count];
+            for (int j = 0; j < count; j++) dependencies[j] = steps[random.nextInt(i)];
+            steps[i] = new RecordingStep(i, lanes[random.nextInt(lanes.length)], dependencies);
+            steps[i].fail = failOneIn > 0 && random.nextInt(failOneIn) == 0;
+        }
+        return steps;
+    }
+
+    private static Set<String> threads(List<LaneStep> steps){
+        Set<String> threads = new HashSet<>();
+        for (LaneStep step : steps) threads.add(step.thread);
+        return threads;
+    }
+
+    static BootTask task(boolean lockFree, final BootStep... steps){
+        BootTask task = new BootTask() {
+            @Override
+            protected void load() {
+                for (BootStep step : steps) loadBootStep(step);
+            }
+        };
+        task.setLockFreeCompletion(lockFree);
+        return task;
+    }
+
+    static BootTask task(BootRuntime runtime, BootStep... steps){
+        BootTask task = task(false, steps);
+        task.setRuntime(runtime);
+        return task;
+    }
+
+    static TaskResult run(boolean lockFree, BootStep... steps) throws InterruptedException {
+        return start(task(lockFree, steps));
+    }
+
+    static TaskResult start(BootTask task) throws InterruptedException {
+        final AtomicReference<TaskResult> result = new AtomicReference<>();
+        final AtomicInteger finishes = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult r) {
+                finishes.incrementAndGet();
+                result.set(r);
+                latch.countDown();
+            }
+        });
+        assertTrue("task did not finish", latch.await(30, TimeUnit.SECONDS));
+        //确认 onTaskFinished 只回调一次
+        Thread.sleep(10);
+        assertEquals(1, finishes.get());
+        return result.get();
+    }
+
+    //读取所有依赖的变量，结果为 id
+    static class RecordingStep extends BootStep {
+        private final Type type;
+        private final Lane lane;
+        private final int id;
+        final AtomicInteger executions = new AtomicInteger();
+        final List<Integer> seen = new ArrayList<>();
+        private final List<Type> variables = new ArrayList<>();
+        volatile boolean fail;
+
+        RecordingStep(int id, Lane lane, BootStep... dependencies) {
+            this.id = id;
+            this.type = typeOfName("step" + id);
+            this.lane = lane;
+            for (BootStep dependency : dependencies){
+                if (variables.contains(dependency.getType())) continue;
+                addDependency(dependency.getType(), true);
+                variables.add(dependency.getType());
+            }
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        //成功时的结果
+        Object value() {
+            return id;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            executions.incrementAndGet();
+            for (Type variable : variables) seen.add((Integer) container.getVariable(variable));
+            callback.onStepFinished(type, fail ? Result.failure("fail " + id) : Result.success(value()));
+        }
+    }
+
+    //记录执行线程的步骤，rendezvous 不为 null 时等待所有持有它的步骤同时执行
+    static class LaneStep extends BootStep {
+        private final Type type;
+        private final Lane lane;
+        volatile String thread;
+        CountDownLatch rendezvous;
+        long sleepMillis;
+        Peak peak;
+
+        LaneStep(String name, Lane lane, LaneStep... dependencies){
+            this.type = typeOfName(name);
+            this.lane = lane;
+            for (LaneStep dependency : dependencies) addDependency(dependency.getType(), false);
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            thread = Thread.currentThread().getName();
+            if (peak != null) peak.enter();
+            try {
+                if (rendezvous != null){
+                    rendezvous.countDown();
+                    if (!rendezvous.await(5, TimeUnit.SECONDS)) throw new TimeoutException("steps did not run concurrently");
+                }
+                if (sleepMillis > 0) Thread.sleep(sleepMillis);
+            } catch (InterruptedException | TimeoutException e){
+                callback.onStepFinished(type, Result.failure(e));
+                return;
+            } finally {
+                if (peak != null) peak.exit();
+            }
+            callback.onStepFinished(type, Result.success(thread));
+        }
+    }
+
+    //同时执行的步骤的最大数量
+    static class Peak {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+
+        void enter(){
+            int now = running.incrementAndGet();
+            int last;
+            while ((last = max.get()) < now && !max.compareAndSet(last, now)) {
+                //重试
+            }
+        }
+
+        void exit(){
+            running.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ukom.aboot;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BootTracerTest {
+
+    @Test
+    public void exportsStepsWithThreadsAndBlockers() throws InterruptedException {
+        final BootTaskTest.RecordingStep a = new BootTaskTest.RecordingStep(0, BootStep.Lane.CPU);
+        final BootTaskTest.RecordingStep b = new BootTaskTest.RecordingStep(1, BootStep.Lane.IO);
+        final BootTaskTest.RecordingStep c = new BootTaskTest.RecordingStep(2, BootStep.Lane.COORDINATOR, a, b);
+        final BootTaskTest.RecordingStep d = new BootTaskTest.RecordingStep(3, BootStep.Lane.CPU, c);
+        d.fail = true;
+        final BootTaskTest.RecordingStep e = new BootTaskTest.RecordingStep(4, BootStep.Lane.CPU, d);
+        BootTask task = new BootTask() {
+            @Override
+            protected void load() {
+                loadBootStep(a);
+                loadBootStep(b);
+                loadBootStep(c);
+                loadBootStep(d);
+                loadBootStep(e);
+            }
+        };
+        BootTracer tracer = new BootTracer(64);
+        task.setTracer(tracer);
+        final CountDownLatch latch = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult result) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        //4 个执行过的步骤各有就绪、分发、开始、结束，未执行的步骤只有结束
+        assertEquals(4 * 4 + 1, tracer.size());
+        String json = tracer.toChromeTrace();
+        assertTrue(json.startsWith("{") && json.endsWith("]}"));
+        assertEquals(4, count(json, "\"ph\":\"X\""));
+        assertEquals(4, count(json, "\"ph\":\"b\""));
+        assertEquals(1, count(json, "\"ph\":\"i\""));
+        //c 被最后完成的 a 或 b 阻塞
+        assertTrue(json.matches(".*\"name\":\"step2\"[^}]*\"blocked_by\":\"step[01]\".*"));
+        assertTrue(json.contains("\"blocked_by\":\"step2\""));
+        assertTrue(json.contains("\"name\":\"aBoot-coordinator\""));
+        assertTrue(json.contains("\"successful\":false"));
+    }
+
+    @Test
+    public void ringBufferKeepsTheLatestEvents() {
+        BootTracer tracer = new BootTracer(5);
+        BootStep.Type type = BootStep.typeOfName("tracer.ring");
+        for (int i = 0; i < 10; i++) tracer.dispatched(type, i);
+        //向上取整到 8
+        assertEquals(8, tracer.size());
+        tracer.clear();
+        assertEquals(0, tracer.size());
+        assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["
+                + "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"aBoot\"}}]}",
+                tracer.toChromeTrace());
+    }
+
+    private static int count(String text, String pattern) {
+        int count = 0;
+        for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) count++;
+        return count;
+    }
+}
@@ -0,0 +1,88 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.VariableContainerTest.ProbeStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static org.junit.Assert.*;
+
+/**
+ * CompositeStep：子任务的步骤展开到父任务的图中，只有导出的变量可以被父任务的步骤读取
+ */
+public class CompositeStepTest {
+
+    @Test
+    public void compositeStepsAreFlattenedIntoTheParentGraph() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            final ChildStep before = new ChildStep(0, BootStep.Lane.CPU, order);
+            ChildStep root = new ChildStep(10, BootStep.Lane.IO, order);
+            ChildStep exported = new ChildStep(11, BootStep.Lane.CPU, order, root);
+            //嵌套的组合步骤
+            ChildStep nested = new ChildStep(12, BootStep.Lane.IO, order);
+            final CompositeStep inner = new CompositeStep("composite.inner", Collections.<BootStep>singletonList(nested));
+            final ChildStep[] children = {root, exported};
+            BootTask child = new BootTask() {
+                @Override
+                protected void load() {
+                    for (ChildStep step : children) loadBootStep(step);
+                    loadBootStep(inner);
+                }
+            };
+            final CompositeStep feature = new CompositeStep("composite.feature", child)
+                    .dependsOn(before.getType())
+                    .export(exported.getType());
+            final ChildStep after = new ChildStep(2, BootStep.Lane.COORDINATOR, order);
+            after.addDependency(feature.getType(), true);
+            after.probe = Arrays.asList(exported.getType(), root.getType());
+            final ChildStep unrelated = new ChildStep(3, BootStep.Lane.IO, order);
+
+            BootTask task = new BootTask() {
+                @Override
+                protected void load() {
+                    for (ChildStep step : new ChildStep[]{before, after, unrelated}) loadBootStep(step);
+                    loadBootStep(feature);
+                }
+            };
+            task.setLockFreeCompletion(lockFree);
+            TaskResult result = start(task);
+
+            assertTrue(result.isSuccessful());
+            assertTrue(result.getStepResult(feature.getType()).isSuccessful());
+            assertTrue(result.getStepResult(inner.getType()).isSuccessful());
+            //子步骤在组合步骤的依赖之后开始，依赖组合步骤的步骤在所有子步骤之后开始
+            for (int id : new int[]{10, 11, 12}){
+                assertTrue(order.indexOf(id) > order.indexOf(0));
+                assertTrue(order.indexOf(id) < order.indexOf(2));
+            }
+            //只能读取导出的变量
+            assertEquals(Arrays.asList(true, false), after.probed);
+        }
+    }
+
+    //按开始执行的顺序记录 id
+    static class ChildStep extends ProbeStep {
+        private final int id;
+        private final List<Integer> order;
+
+        ChildStep(int id, Lane lane, List<Integer> order, BootStep... dependencies){
+            super(id, lane, dependencies);
+            this.id = id;
+            this.order = order;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            order.add(id);
+            super.executeImpl(container, callback);
+        }
+    }
+}
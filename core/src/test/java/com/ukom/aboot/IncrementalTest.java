@@ -0,0 +1,147 @@
+package com.ukom.aboot;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static org.junit.Assert.*;
+
+/**
+ * 增量执行：invalidate 只重新执行失效的步骤，以及结果发生变化的步骤的下游
+ */
+public class IncrementalTest {
+
+    @Test
+    public void invalidateRerunsOnlyChangedDownstreamSteps() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            final int[] output = {0};
+            //每次装载新的步骤：a <- b <- c，d 独立
+            final List<RecordingStep> loaded = new ArrayList<>();
+            BootTask task = new BootTask() {
+                @Override
+                protected void load() {
+                    loaded.clear();
+                    RecordingStep a = new OutputStep(0, BootStep.Lane.CPU, output[0]);
+                    RecordingStep b = new RecordingStep(1, BootStep.Lane.IO, a);
+                    RecordingStep c = new RecordingStep(2, BootStep.Lane.COORDINATOR, b);
+                    RecordingStep d = new RecordingStep(3, BootStep.Lane.CPU);
+                    Collections.addAll(loaded, a, b, c, d);
+                    for (RecordingStep step : loaded) loadBootStep(step);
+                }
+            };
+            task.setLockFreeCompletion(lockFree);
+            task.setIncremental(true);
+            assertTrue(start(task).isSuccessful());
+
+            //a 的结果没有变化，b、c 沿用上一次的结果
+            TaskResult result = invalidate(task, loaded.get(0).getType());
+            assertTrue(result.isSuccessful());
+            assertEquals(4, result.getSuccessfulSteps().size());
+            assertEquals(2, result.getStepResult(loaded.get(2).getType()).getValue());
+            assertEquals(Arrays.asList(1, 0, 0, 0), executions(loaded));
+
+            //a 的结果变化，b 重新执行并读取新的值；b 的结果没有变化，c 不再执行
+            output[0] = 100;
+            result = invalidate(task, loaded.get(0).getType());
+            assertTrue(result.isSuccessful());
+            assertEquals(Arrays.asList(1, 1, 0, 0), executions(loaded));
+            assertEquals(Collections.singletonList(100), loaded.get(1).seen);
+            assertEquals(100, result.getStepResult(loaded.get(0).getType()).getValue());
+
+            //直接失效的步骤总是重新执行，读取保留的变量
+            result = invalidate(task, loaded.get(2).getType());
+            assertEquals(Arrays.asList(0, 0, 1, 0), executions(loaded));
+            assertEquals(Collections.singletonList(1), loaded.get(2).seen);
+            assertTrue(result.isSuccessful());
+        }
+    }
+
+    @Test
+    public void taskCanBeInvalidatedFromOnTaskFinished() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            final List<RecordingStep> loaded = new ArrayList<>();
+            final BootTask task = new BootTask() {
+                @Override
+                protected void load() {
+                    loaded.clear();
+                    RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+                    Collections.addAll(loaded, a, new RecordingStep(1, BootStep.Lane.COORDINATOR, a));
+                    for (RecordingStep step : loaded) loadBootStep(step);
+                }
+            };
+            task.setLockFreeCompletion(lockFree);
+            task.setIncremental(true);
+            final AtomicReference<Throwable> error = new AtomicReference<>();
+            final AtomicReference<TaskResult> rerun = new AtomicReference<>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            task.start(new BootTask.Callback() {
+                @Override
+                public void onTaskFinished(TaskResult result) {
+                    try {
+                        //回调之前已经清理状态，可以直接再次执行
+                        task.invalidate(new BootTask.Callback() {
+                            @Override
+                            public void onTaskFinished(TaskResult result) {
+                                rerun.set(result);
+                                latch.countDown();
+                            }
+                        }, loaded.get(1).getType());
+                    } catch (Throwable e){
+                        error.set(e);
+                        latch.countDown();
+                    }
+                }
+            });
+            assertTrue("task did not finish", latch.await(30, TimeUnit.SECONDS));
+
+            assertNull(error.get());
+            assertTrue(rerun.get().isSuccessful());
+            assertEquals(2, rerun.get().getSuccessfulSteps().size());
+            assertEquals(Arrays.asList(0, 1), executions(loaded));
+        }
+    }
+
+    private static List<Integer> executions(List<RecordingStep> steps){
+        List<Integer> list = new ArrayList<>();
+        for (RecordingStep step : steps) list.add(step.executions.get());
+        return list;
+    }
+
+    private static TaskResult invalidate(BootTask task, BootStep.Type... types) throws InterruptedException {
+        final AtomicReference<TaskResult> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        task.invalidate(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult r) {
+                result.set(r);
+                latch.countDown();
+            }
+        }, types);
+        assertTrue("task did not finish", latch.await(30, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    //结果为 output 的步骤
+    static class OutputStep extends RecordingStep {
+        private final int output;
+
+        OutputStep(int id, Lane lane, int output){
+            super(id, lane);
+            this.output = output;
+        }
+
+        @Override
+        Object value() {
+            return output;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ukom.aboot;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * 懒加载的步骤：启动时不执行，BootTask.request 时连同懒加载的祖先步骤一起执行
+ */
+public class LazyStepTest {
+
+    @Test
+    public void lazyStepsRunOnlyWhenRequested() throws Exception {
+        for (boolean lockFree : new boolean[]{false, true}){
+            RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+            LazyStep b = new LazyStep(1, BootStep.Lane.IO, a);
+            LazyStep c = new LazyStep(2, BootStep.Lane.CPU, b);
+            RecordingStep d = new RecordingStep(3, BootStep.Lane.COORDINATOR);
+            //有非懒加载的步骤依赖它，仍在启动时执行
+            LazyStep e = new LazyStep(4, BootStep.Lane.IO);
+            RecordingStep f = new RecordingStep(5, BootStep.Lane.CPU, e);
+            BootTask task = task(lockFree, a, b, c, d, e, f);
+            TaskResult result = start(task);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(0, b.executions.get());
+            assertEquals(0, c.executions.get());
+            assertEquals(1, e.executions.get());
+            assertNull(result.getStepResult(c.getType()));
+            assertEquals(-1, result.getReport().getSlackNanos(c.getType()));
+
+            //同一个步骤的请求共享一个 Future，懒加载的祖先步骤一起执行
+            Future<Object> first = task.request(c.getType());
+            Future<Object> second = task.request(c.getType());
+            assertSame(first, second);
+            assertEquals(2, first.get(5, TimeUnit.SECONDS));
+            assertEquals(1, b.executions.get());
+            assertEquals(1, c.executions.get());
+            //读取的变量在启动之后仍然保留
+            assertEquals(Collections.singletonList(0), b.seen);
+            assertEquals(Collections.singletonList(1), c.seen);
+            assertTrue(result.getStepResult(c.getType()).isSuccessful());
+        }
+    }
+
+    @Test
+    public void lazyStepsFailWithTheirDependencies() throws Exception {
+        for (boolean lockFree : new boolean[]{false, true}){
+            RecordingStep a = new RecordingStep(0, BootStep.Lane.CPU);
+            a.fail = true;
+            LazyStep b = new LazyStep(1, BootStep.Lane.IO, a);
+            LazyStep c = new LazyStep(2, BootStep.Lane.IO);
+            BootTask task = task(lockFree, a, b, c);
+            TaskResult result = start(task);
+
+            assertFalse(result.isSuccessful());
+            try {
+                task.request(b.getType()).get(5, TimeUnit.SECONDS);
+                fail("dependency failed");
+            } catch (ExecutionException expected){
+                assertEquals(0, b.executions.get());
+            }
+
+            //取消之后未被请求的懒加载步骤不再执行
+            task.cancel();
+            try {
+                task.request(c.getType()).get(5, TimeUnit.SECONDS);
+                fail("task cancelled");
+            } catch (ExecutionException expected){
+                assertTrue(expected.getCause() instanceof CancellationException);
+                assertEquals(0, c.executions.get());
+            }
+        }
+    }
+
+    static class LazyStep extends RecordingStep {
+
+        LazyStep(int id, Lane lane, BootStep... dependencies){
+            super(id, lane, dependencies);
+        }
+
+        @Override
+        public boolean isLazy() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * DEFERRED 与 IDLE 阶段的步骤：等待里程碑信号，之后每个空闲信号执行一个 IDLE 步骤
+ */
+public class PhaseSignalTest {
+
+    @Test
+    public void phasesWaitForSignals() throws Exception {
+        RecordingStep critical = new RecordingStep(0, BootStep.Lane.CPU);
+        PhaseStep deferred = new PhaseStep(1, BootStep.Lane.IO, BootStep.Phase.DEFERRED, critical);
+        PhaseStep idle1 = new PhaseStep(2, BootStep.Lane.CPU, BootStep.Phase.IDLE);
+        PhaseStep idle2 = new PhaseStep(3, BootStep.Lane.COORDINATOR, BootStep.Phase.IDLE);
+        BootTask task = task(false, critical, deferred, idle1, idle2);
+        ManualSignal milestone = new ManualSignal();
+        ManualSignal idle = new ManualSignal();
+        task.setMilestoneSignal(milestone);
+        task.setIdleSignal(idle);
+        final CountDownLatch finished = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult result) {
+                finished.countDown();
+            }
+        });
+
+        assertTrue(task.await(critical.getType(), 5, TimeUnit.SECONDS).isSuccessful());
+        //空闲信号在里程碑之前不起作用
+        idle.fire();
+        Thread.sleep(50);
+        assertEquals(0, deferred.executions.get());
+        assertEquals(0, idle1.executions.get() + idle2.executions.get());
+
+        milestone.fire();
+        assertTrue(task.await(deferred.getType(), 5, TimeUnit.SECONDS).isSuccessful());
+        Thread.sleep(50);
+        assertEquals(0, idle1.executions.get() + idle2.executions.get());
+
+        //每次空闲执行一个
+        idle.fire();
+        Thread.sleep(50);
+        assertEquals(1, idle1.executions.get() + idle2.executions.get());
+        assertEquals(1, finished.getCount());
+        idle.fire();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, idle1.executions.get() + idle2.executions.get());
+    }
+
+    @Test
+    public void idleSignalsAreIgnoredWhileAnIdleStepRuns() throws Exception {
+        PhaseStep first = new PhaseStep(0, BootStep.Lane.CPU, BootStep.Phase.IDLE);
+        first.cost = 10;
+        first.gate = new CountDownLatch(1);
+        PhaseStep second = new PhaseStep(1, BootStep.Lane.CPU, BootStep.Phase.IDLE);
+        BootTask task = task(false, first, second);
+        ManualSignal idle = new ManualSignal();
+        task.setIdleSignal(idle);
+        final CountDownLatch finished = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult result) {
+                finished.countDown();
+            }
+        });
+
+        idle.fire();
+        assertTrue(first.started.await(5, TimeUnit.SECONDS));
+        //第一个 IDLE 步骤仍在执行，之后的信号都被忽略
+        idle.fire();
+        idle.fire();
+        Thread.sleep(50);
+        assertEquals(0, second.executions.get());
+
+        first.gate.countDown();
+        assertTrue(task.await(first.getType(), 5, TimeUnit.SECONDS).isSuccessful());
+        Thread.sleep(50);
+        assertEquals(0, second.executions.get());
+        idle.fire();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, second.executions.get());
+    }
+
+    //属于指定阶段的步骤，gate 不为 null 时开始执行之后等待 gate
+    static class PhaseStep extends RecordingStep {
+        private final Phase phase;
+        long cost = 1;
+        final CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate;
+
+        PhaseStep(int id, Lane lane, Phase phase, BootStep... dependencies){
+            super(id, lane, dependencies);
+            this.phase = phase;
+        }
+
+        @Override
+        public Phase getPhase() {
+            return phase;
+        }
+
+        @Override
+        public long getCost() {
+            return cost;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            started.countDown();
+            if (gate != null){
+                try {
+                    gate.await();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.executeImpl(container, callback);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.Peak;
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ukom.aboot.BootTaskTest.run;
+import static com.ukom.aboot.BootTaskTest.start;
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * 资源组：限制同时执行的步骤数量，超时的步骤直到真正结束才归还许可
+ */
+public class ResourceGroupTest {
+
+    @Test
+    public void resourceGroupsLimitConcurrentSteps() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            ResourceGroup db = new ResourceGroup("db-main", 1);
+            ResourceGroup disk = new ResourceGroup("disk", 2);
+            Map<ResourceGroup, Peak> peaks = new HashMap<>();
+            peaks.put(db, new Peak());
+            peaks.put(disk, new Peak());
+            List<BootStep> steps = new ArrayList<>();
+            for (int i = 0; i < 8; i++){
+                //同时属于两个资源组的步骤按相反的顺序声明，不会死锁
+                ResourceGroup[] groups = i % 4 == 0 ? new ResourceGroup[]{db}
+                        : i % 4 == 1 ? new ResourceGroup[]{disk}
+                        : i % 4 == 2 ? new ResourceGroup[]{db, disk} : new ResourceGroup[]{disk, db};
+                GroupStep step = new GroupStep(i, i % 2 == 0 ? BootStep.Lane.IO : BootStep.Lane.CPU, peaks, groups);
+                step.sleepMillis = 10;
+                steps.add(step);
+            }
+            //不属于资源组的步骤不受影响
+            steps.add(new RecordingStep(8, BootStep.Lane.IO));
+            TaskResult result = run(lockFree, steps.toArray(new BootStep[0]));
+
+            assertTrue(result.isSuccessful());
+            assertEquals(9, result.getSuccessfulSteps().size());
+            assertEquals(1, peaks.get(db).max.get());
+            assertTrue(peaks.get(disk).max.get() <= 2);
+            assertTrue(result.getContentionNanos().get("db-main") > 0);
+            assertTrue(db.getTotalWaitNanos() > 0);
+            assertEquals(1, db.getAvailablePermits());
+            assertEquals(2, disk.getAvailablePermits());
+        }
+    }
+
+    @Test
+    public void timedOutStepKeepsItsPermitUntilItReallyEnds() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            ResourceGroup db = new ResourceGroup("db", 1);
+            Map<ResourceGroup, Peak> peaks = Collections.singletonMap(db, new Peak());
+            GroupStep first = new GroupStep(0, BootStep.Lane.IO, peaks, db);
+            GroupStep second = new GroupStep(1, BootStep.Lane.IO, peaks, db);
+            //超时之后仍然执行 200 ms
+            first.timeout = 30;
+            first.sleepMillis = 200;
+            final AtomicReference<TaskResult> firstResult = new AtomicReference<>();
+            final CountDownLatch firstFinished = new CountDownLatch(1);
+            task(lockFree, first).start(new BootTask.Callback() {
+                @Override
+                public void onTaskFinished(TaskResult result) {
+                    firstResult.set(result);
+                    firstFinished.countDown();
+                }
+            });
+            assertTrue(first.started.await(5, TimeUnit.SECONDS));
+            assertTrue(firstFinished.await(5, TimeUnit.SECONDS));
+            TaskResult secondResult = start(task(lockFree, second));
+
+            assertTrue(firstResult.get().getStepResult(first.getType()).throwable() instanceof TimeoutException);
+            assertTrue(secondResult.isSuccessful());
+            assertEquals(1, peaks.get(db).max.get());
+            assertTrue(secondResult.getContentionNanos().get("db") > 0);
+            assertEquals(1, db.getAvailablePermits());
+        }
+    }
+
+    //许可已经全部被占用的资源组
+    static ResourceGroup exhausted(){
+        ResourceGroup group = new ResourceGroup("exhausted", 1);
+        assertTrue(group.acquireOrWait(new ResourceGroup.Waiter() {
+            @Override
+            public long priority() {
+                return 0;
+            }
+
+            @Override
+            public void onPermit(@NonNull ResourceGroup group) {
+            }
+        }));
+        return group;
+    }
+
+    //属于 groups 的步骤，执行期间在 peaks 中记录每个资源组同时执行的步骤数量
+    static class GroupStep extends RecordingStep {
+        private final ResourceGroup[] groups;
+        private final Map<ResourceGroup, Peak> peaks;
+        final CountDownLatch started = new CountDownLatch(1);
+        long sleepMillis;
+        long timeout;
+
+        GroupStep(int id, Lane lane, Map<ResourceGroup, Peak> peaks, ResourceGroup... groups){
+            super(id, lane);
+            this.groups = groups;
+            this.peaks = peaks;
+        }
+
+        @Override
+        public ResourceGroup[] getResourceGroups() {
+            return groups;
+        }
+
+        @Override
+        public long getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            for (ResourceGroup group : groups) peaks.get(group).enter();
+            started.countDown();
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            } finally {
+                for (ResourceGroup group : groups) peaks.get(group).exit();
+            }
+            super.executeImpl(container, callback);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ukom.aboot.BootTaskTest.run;
+import static org.junit.Assert.*;
+
+/**
+ * 步骤的重试策略：退避间隔、重试次数用尽或异常不可重试时失败，以及超时的执行与重试互不影响
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void transientFailuresAreRetriedWithBackoff() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            FlakyStep flaky = new FlakyStep(0, BootStep.Lane.IO, RetryPolicy.of(4, 20).withJitter(0), 2);
+            RecordingStep dependent = new RecordingStep(1, BootStep.Lane.COORDINATOR, flaky);
+            TaskResult result = run(lockFree, flaky, dependent);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(3, flaky.executions.get());
+            assertEquals(1, dependent.executions.get());
+            assertEquals(Collections.singletonList(0), dependent.seen);
+            List<StepAttempt> attempts = result.getAttempts(flaky.getType());
+            assertEquals(3, attempts.size());
+            assertEquals(Arrays.asList(0L, 20L, 40L), Arrays.asList(attempts.get(0).getBackoffMillis(),
+                    attempts.get(1).getBackoffMillis(), attempts.get(2).getBackoffMillis()));
+            assertFalse(attempts.get(1).getResult().isSuccessful());
+            assertTrue(attempts.get(2).getResult().isSuccessful());
+        }
+    }
+
+    @Test
+    public void exhaustedOrNonRetryableFailuresFailDependents() throws InterruptedException {
+        FlakyStep exhausted = new FlakyStep(0, BootStep.Lane.CPU, RetryPolicy.of(3, 1), Integer.MAX_VALUE);
+        FlakyStep filtered = new FlakyStep(1, BootStep.Lane.IO,
+                RetryPolicy.of(3, 1).retryOn(TimeoutException.class), Integer.MAX_VALUE);
+        RecordingStep dependent = new RecordingStep(2, BootStep.Lane.CPU, exhausted);
+        TaskResult result = run(false, exhausted, filtered, dependent);
+
+        assertEquals(3, result.getFailedSteps().size());
+        assertEquals(3, exhausted.executions.get());
+        assertEquals(3, result.getAttempts(exhausted.getType()).size());
+        assertEquals(1, filtered.executions.get());
+        assertEquals(0, dependent.executions.get());
+    }
+
+    @Test
+    public void timedOutAttemptStaysCancelledAfterRetryStarts() throws InterruptedException {
+        final CountDownLatch retried = new CountDownLatch(1);
+        final AtomicReference<Boolean> firstCancelled = new AtomicReference<>();
+        final AtomicReference<Boolean> retryCancelled = new AtomicReference<>();
+        RecordingStep slow = new FlakyStep(0, BootStep.Lane.IO, RetryPolicy.of(2, 1).withJitter(0), 0) {
+            @Override
+            public long getTimeout() {
+                return 30;
+            }
+
+            @Override
+            public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+                if (executions.incrementAndGet() == 1){
+                    //超时之后继续执行，重试开始之后才检查取消标记
+                    try {
+                        retried.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e){
+                        Thread.currentThread().interrupt();
+                    }
+                    firstCancelled.set(getCancellationToken().isCancelled());
+                    return;
+                }
+                retryCancelled.set(getCancellationToken().isCancelled());
+                retried.countDown();
+                callback.onStepFinished(getType(), Result.success(0));
+            }
+        };
+        TaskResult result = run(false, slow);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(2, result.getAttempts(slow.getType()).size());
+        assertFalse(retryCancelled.get());
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (firstCancelled.get() == null && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        assertTrue(firstCancelled.get());
+    }
+
+    //前 failures 次执行抛出异常，之后正常结束
+    static class FlakyStep extends RecordingStep {
+        private final RetryPolicy policy;
+        private final int failures;
+
+        FlakyStep(int id, Lane lane, RetryPolicy policy, int failures){
+            super(id, lane);
+            this.policy = policy;
+            this.failures = failures;
+        }
+
+        @Override
+        public RetryPolicy getRetryPolicy() {
+            return policy;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            if (executions.get() < failures){
+                executions.incrementAndGet();
+                throw new IllegalStateException("transient failure of " + getType());
+            }
+            super.executeImpl(container, callback);
+        }
+    }
+}
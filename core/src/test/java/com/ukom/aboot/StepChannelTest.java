@@ -0,0 +1,166 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.ukom.aboot.BootTaskTest.run;
+import static org.junit.Assert.*;
+
+/**
+ * 流式依赖：消费者在生产者发布第一个元素之后开始，生产者失败时一起失败，发布之后不再重试
+ */
+public class StepChannelTest {
+
+    @Test
+    public void streamingDependentsStartOnTheFirstItem() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            final CountDownLatch firstTaken = new CountDownLatch(1);
+            //消费者取出第一个元素之后才发布其余的元素，消费者必须在生产者结束之前开始
+            Producer producer = new Producer("stream.producer", 10, firstTaken, false);
+            Consumer consumer = new Consumer("stream.consumer", producer, firstTaken);
+            RecordingStep after = new RecordingStep(0, BootStep.Lane.CPU);
+            after.addDependency(consumer.getType(), true);
+            TaskResult result = run(lockFree, producer, consumer, after);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), consumer.items);
+            assertEquals(10, result.getStepResult(consumer.getType()).getValue());
+            assertEquals(1, after.executions.get());
+        }
+    }
+
+    @Test
+    public void streamingDependentsFailWithTheProducer() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            final CountDownLatch firstTaken = new CountDownLatch(1);
+            Producer producer = new Producer("stream.failing", 3, firstTaken, true);
+            Consumer consumer = new Consumer("stream.failingConsumer", producer, firstTaken);
+            RecordingStep after = new RecordingStep(0, BootStep.Lane.CPU);
+            after.addDependency(consumer.getType(), false);
+            TaskResult result = run(lockFree, producer, consumer, after);
+
+            assertFalse(result.isSuccessful());
+            assertFalse(result.getStepResult(consumer.getType()).isSuccessful());
+            assertFalse(result.getStepResult(after.getType()).isSuccessful());
+            assertEquals(0, after.executions.get());
+            assertEquals(0, (int) consumer.items.get(0));
+        }
+    }
+
+    @Test
+    public void streamingProducersAreNotRetriedAfterPublishing() throws InterruptedException {
+        final CountDownLatch firstTaken = new CountDownLatch(1);
+        Producer producer = new Producer("stream.flaky", 3, firstTaken, true) {
+            @Override
+            public RetryPolicy getRetryPolicy() {
+                return RetryPolicy.of(3, 1);
+            }
+        };
+        Consumer consumer = new Consumer("stream.flakyConsumer", producer, firstTaken);
+        TaskResult result = run(false, producer, consumer);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getAttempts(producer.getType()).size());
+        assertFalse(result.getStepResult(consumer.getType()).isSuccessful());
+        //重试会把已经发布的元素再发布一次
+        assertEquals(new HashSet<>(consumer.items).size(), consumer.items.size());
+    }
+
+    //在 IO Lane 中逐个发布 0 到 count - 1
+    static class Producer extends BootStep {
+        private final Type type;
+        private final int count;
+        private final CountDownLatch firstTaken;
+        private final boolean fail;
+
+        Producer(String name, int count, CountDownLatch firstTaken, boolean fail){
+            this.type = typeOfName(name);
+            this.count = count;
+            this.firstTaken = firstTaken;
+            this.fail = fail;
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Lane getLane() {
+            return Lane.IO;
+        }
+
+        @Override
+        public int getChannelCapacity() {
+            return 2;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            StepChannel<Integer> channel = container.getChannel(type);
+            try {
+                for (int i = 0; i < count; i++){
+                    if (!channel.put(i)) break;
+                    if (i == 0 && !firstTaken.await(5, TimeUnit.SECONDS)) throw new TimeoutException("consumer did not start");
+                }
+            } catch (Exception e){
+                callback.onStepFinished(type, Result.failure(e));
+                return;
+            }
+            callback.onStepFinished(type, fail ? Result.failure(new IllegalStateException("producer failed")) : Result.success(count));
+        }
+    }
+
+    //在 CPU Lane 中读取所有元素，结果为读取的元素个数
+    static class Consumer extends BootStep {
+        private final Type type;
+        private final Type source;
+        private final CountDownLatch firstTaken;
+        final List<Integer> items = new ArrayList<>();
+
+        Consumer(String name, Producer producer, CountDownLatch firstTaken){
+            this.type = typeOfName(name);
+            this.source = producer.getType();
+            this.firstTaken = firstTaken;
+            addStreamingDependency(source);
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Lane getLane() {
+            return Lane.CPU;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            StepChannel<Integer> channel = container.getChannel(source);
+            try {
+                Integer item;
+                while ((item = channel.take()) != null){
+                    items.add(item);
+                    firstTaken.countDown();
+                }
+            } catch (InterruptedException | ExecutionException e){
+                callback.onStepFinished(type, Result.failure(e));
+                return;
+            }
+            callback.onStepFinished(type, Result.success(items.size()));
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * StepGraph 的单元测试，以及大规模依赖图（10 ~ 10,000 个步骤）的检查与完成、
+ * 关键路径优先与装载顺序两种调度方式在随机 DAG 上的模拟总耗时对比，以及无锁完成模式的并发压力测试
+ */
+public class StepGraphTest {
+
+    @Test
+    public void releasesDependentsInDependencyOrder() {
+        TestStep a = new TestStep("a");
+        TestStep b = new TestStep("b", a);
+        TestStep c = new TestStep("c", a);
+        TestStep d = new TestStep("d", b, c);
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(d);
+        steps.add(c);
+        steps.add(b);
+        steps.add(a);
+
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        assertEquals(graph.indexOf(a.getType()), graph.pollReady());
+        assertEquals(-1, graph.pollReady());
+
+        List<BootStep.Type> order = drain(graph, graph.indexOf(a.getType()));
+        assertEquals(a.getType(), order.get(0));
+        assertEquals(d.getType(), order.get(3));
+        assertTrue(graph.isAllFinished());
+    }
+
+    @Test
+    public void doomedStepNeverBecomesReady() {
+        TestStep a = new TestStep("a");
+        TestStep b = new TestStep("b");
+        TestStep c = new TestStep("c", a, b);
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(a);
+        steps.add(b);
+        steps.add(c);
+
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        int ia = graph.indexOf(a.getType());
+        int ib = graph.indexOf(b.getType());
+        int ic = graph.indexOf(c.getType());
+
+        assertEquals(2, graph.complete(ia));
+        assertTrue(graph.doom(ic));
+        assertFalse(graph.doom(ic));
+
+        assertEquals(1, graph.complete(ib));
+        assertFalse(graph.release(ic));
+        assertEquals(-1, graph.complete(ib));
+    }
+
+    @Test
+    public void phasesGateReadySteps() {
+        TestStep critical = new TestStep("critical");
+        TestStep deferred = new TestStep("deferred");
+        deferred.phase = BootStep.Phase.DEFERRED;
+        TestStep idleShort = new TestStep("idleShort");
+        idleShort.phase = BootStep.Phase.IDLE;
+        TestStep idleLong = new TestStep("idleLong");
+        idleLong.phase = BootStep.Phase.IDLE;
+        idleLong.cost = 10;
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(idleShort);
+        steps.add(idleLong);
+        steps.add(deferred);
+        steps.add(critical);
+
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        assertEquals(graph.indexOf(critical.getType()), graph.pollReady());
+        assertEquals(-1, graph.pollReady());
+        //里程碑之前不投放 IDLE 步骤
+        assertFalse(graph.releaseIdle());
+
+        graph.openDeferred();
+        assertEquals(graph.indexOf(deferred.getType()), graph.pollReady());
+        assertEquals(-1, graph.pollReady());
+
+        //每次空闲只投放一个，优先级高的先投放；上一个结束之前不再投放
+        assertTrue(graph.releaseIdle());
+        assertEquals(graph.indexOf(idleLong.getType()), graph.pollReady());
+        assertEquals(-1, graph.pollReady());
+        assertFalse(graph.releaseIdle());
+        graph.complete(graph.indexOf(idleLong.getType()));
+        assertTrue(graph.releaseIdle());
+        assertEquals(graph.indexOf(idleShort.getType()), graph.pollReady());
+        assertFalse(graph.releaseIdle());
+    }
+
+    @Test
+    public void earlierPhaseDependentPromotesStep() {
+        TestStep idle = new TestStep("idle");
+        idle.phase = BootStep.Phase.IDLE;
+        TestStep deferred = new TestStep("deferred", idle);
+        deferred.phase = BootStep.Phase.DEFERRED;
+        TestStep critical = new TestStep("critical", deferred);
+        TestStep lonelyIdle = new TestStep("lonelyIdle");
+        lonelyIdle.phase = BootStep.Phase.IDLE;
+        TestStep lateDeferred = new TestStep("lateDeferred", lonelyIdle);
+        lateDeferred.phase = BootStep.Phase.DEFERRED;
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(idle);
+        steps.add(deferred);
+        steps.add(critical);
+        steps.add(lonelyIdle);
+        steps.add(lateDeferred);
+
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        assertEquals(BootStep.Phase.CRITICAL, graph.phase(graph.indexOf(idle.getType())));
+        assertEquals(BootStep.Phase.CRITICAL, graph.phase(graph.indexOf(deferred.getType())));
+        assertEquals(BootStep.Phase.DEFERRED, graph.phase(graph.indexOf(lonelyIdle.getType())));
+        assertEquals(BootStep.Phase.DEFERRED, graph.phase(graph.indexOf(lateDeferred.getType())));
+
+        List<BootStep.Type> order = drain(graph, graph.pollReady());
+        assertEquals(3, order.size());
+        assertEquals(critical.getType(), order.get(2));
+    }
+
+    @Test
+    public void reportsMissingDependency() {
+        TestStep a = new TestStep("a");
+        TestStep b = new TestStep("b", a);
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(b);
+
+        Result<StepGraph> result = StepGraph.compile(steps);
+        assertFalse(result.isSuccessful());
+        assertEquals("lack of dependency[a] by type[b]", result.getMessage());
+    }
+
+    @Test
+    public void reportsExactCyclePath() {
+        TestStep a = new TestStep("a");
+        TestStep b = new TestStep("b");
+        TestStep c = new TestStep("c");
+        TestStep d = new TestStep("d", a);
+        a.addDependency(b.getType(), false);
+        b.addDependency(c.getType(), false);
+        c.addDependency(a.getType(), false);
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(d);
+        steps.add(a);
+        steps.add(b);
+        steps.add(c);
+
+        Result<StepGraph> result = StepGraph.compile(steps);
+        assertFalse(result.isSuccessful());
+        assertEquals("circular dependencies, chain: [a, b, c], tail: a", result.getMessage());
+    }
+
+    @Test
+    public void diamondLatticeIsValidatedInLinearTime() {
+        //每一层的两个步骤都依赖上一层的两个步骤，路径数为 2^layers
+        List<BootStep> steps = new ArrayList<>();
+        TestStep left = new TestStep("l0");
+        TestStep right = new TestStep("r0");
+        steps.add(left);
+        steps.add(right);
+        for (int i = 1; i < 5_000; i++){
+            TestStep l = new TestStep("l" + i, left, right);
+            TestStep r = new TestStep("r" + i, left, right);
+            steps.add(l);
+            steps.add(r);
+            left = l;
+            right = r;
+        }
+
+        Result<StepGraph> result = StepGraph.compile(steps);
+
+        assertTrue(result.isSuccessful());
+        StepGraph graph = result.getValue();
+        int[] order = graph.topologicalOrder();
+        assertEquals(steps.size(), order.length);
+        int[] position = new int[order.length];
+        for (int i = 0; i < order.length; i++) position[order[i]] = i;
+        for (int i = 0; i < order.length; i++){
+            for (int dependent : graph.dependents(i)) assertTrue(position[i] < position[dependent]);
+        }
+    }
+
+    @Test
+    public void readyStepsLeaveByCriticalPath() {
+        TestStep shortStep = new TestStep("short");
+        TestStep head = new TestStep("head");
+        TestStep tail = new TestStep("tail", head);
+        tail.cost = 100;
+        List<BootStep> steps = new ArrayList<>();
+        steps.add(shortStep);
+        steps.add(head);
+        steps.add(tail);
+
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        assertEquals(101, graph.priority(graph.indexOf(head.getType())));
+        assertEquals(graph.indexOf(head.getType()), graph.pollReady());
+        assertEquals(graph.indexOf(shortStep.getType()), graph.pollReady());
+    }
+
+    @Test
+    public void criticalPathFirstShortensMakespan() {
+        Random random = new Random(20210615L);
+        int workers = 4;
+        long prioritized = 0, arbitrary = 0;
+        for (int round = 0; round < 50; round++){
+            List<BootStep> steps = randomDag(random, 300);
+            long[] costs = new long[steps.size()];
+
+            StepGraph graph = StepGraph.compile(steps).getValue();
+            for (int i = 0; i < costs.length; i++) costs[i] = graph.step(i).getCost();
+            prioritized += simulateMakespan(graph, costs, workers);
+
+            //所有优先级相同时，就绪步骤按装载顺序执行
+            graph = StepGraph.compile(steps).getValue();
+            graph.prioritize(new long[costs.length]);
+            arbitrary += simulateMakespan(graph, costs, workers);
+        }
+        assertTrue(prioritized <= arbitrary);
+    }
+
+    //每个步骤随机依赖之前的 0 ~ 3 个步骤，耗时服从长尾分布，部分重步骤较晚装载
+    private static List<BootStep> randomDag(Random random, int size) {
+        List<TestStep> created = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            TestStep step = new TestStep("s" + i);
+            int dependencies = i == 0 ? 0 : random.nextInt(Math.min(i, 3) + 1);
+            for (int j = 0; j < dependencies; j++){
+                step.addDependency(created.get(random.nextInt(i)).getType(), false);
+            }
+            step.cost = random.nextInt(10) == 0 ? 50 + random.nextInt(200) : 1 + random.nextInt(20);
+            created.add(step);
+        }
+        List<BootStep> steps = new ArrayList<>(created);
+        Collections.reverse(steps);
+        return steps;
+    }
+
+    //离散事件模拟：workers 个线程，就绪步骤按 StepGraph 的就绪队列顺序执行
+    private static long simulateMakespan(StepGraph graph, long[] costs, int workers) {
+        PriorityQueue<long[]> running = new PriorityQueue<>(workers, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]);
+            }
+        });
+        long now = 0;
+        int idle = workers;
+        while (true){
+            int index;
+            while (idle > 0 && (index = graph.pollReady()) >= 0){
+                running.add(new long[]{now + costs[index], index});
+                idle--;
+            }
+            long[] done = running.poll();
+            if (done == null) break;
+            now = done[0];
+            idle++;
+            graph.complete((int) done[1]);
+            for (int dependent : graph.dependents((int) done[1])) graph.release(dependent);
+        }
+        assertTrue(graph.isAllFinished());
+        return now;
+    }
+
+    @Test
+    public void concurrentCompletionsReleaseEachStepOnce() throws InterruptedException {
+        for (int round = 0; round < 20; round++){
+            stressConcurrentCompletion(new Random(round), 4_000, 8, false);
+        }
+    }
+
+    @Test
+    public void concurrentFailuresFinishExactlyOnce() throws InterruptedException {
+        for (int round = 0; round < 20; round++){
+            stressConcurrentCompletion(new Random(round), 4_000, 8, true);
+        }
+    }
+
+    /**
+     * 多个线程同时完成步骤并以 releaseConcurrently / doom 更新依赖计数，
+     * 检查每个步骤只会就绪一次、被判定失败的步骤不会执行、只有一个线程得到剩余步骤数 0
+     */
+    private static void stressConcurrentCompletion(Random random, int size, int threads, boolean withFailures)
+            throws InterruptedException {
+        List<BootStep> steps = new ArrayList<>(size);
+        List<TestStep> created = new ArrayList<>(size);
+        for (int i = 0; i < size; i++){
+            TestStep step = new TestStep("s" + i);
+            //前一半为根步骤，保证一开始就有大量步骤并发完成
+            int dependencies = i < size / 2 ? 0 : 1 + random.nextInt(8);
+            for (int j = 0; j < dependencies; j++){
+                step.addDependency(created.get(random.nextInt(i)).getType(), false);
+            }
+            created.add(step);
+            steps.add(step);
+        }
+        final StepGraph graph = StepGraph.compile(steps).getValue();
+        final boolean[] failing = new boolean[size];
+        if (withFailures){
+            for (int i = 0; i < size; i++) failing[i] = random.nextInt(50) == 0;
+        }
+
+        final ConcurrentLinkedQueue<Integer> ready = new ConcurrentLinkedQueue<>();
+        int index;
+        while ((index = graph.pollReady()) >= 0) ready.add(index);
+
+        final AtomicIntegerArray executed = new AtomicIntegerArray(size);
+        final AtomicIntegerArray finished = new AtomicIntegerArray(size);
+        final AtomicInteger lastFinishers = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final CountDownLatch go = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++){
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e){
+                        return;
+                    }
+                    while (done.getCount() > 0){
+                        Integer next = ready.poll();
+                        if (next == null){
+                            Thread.yield();
+                            continue;
+                        }
+                        executed.incrementAndGet(next);
+                        finish(graph, next, failing[next], ready, finished, lastFinishers, done);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        go.countDown();
+        for (Thread worker : workers) worker.join(10_000);
+
+        assertEquals(1, lastFinishers.get());
+        assertTrue(graph.isAllFinished());
+        for (int i = 0; i < size; i++){
+            assertEquals(1, finished.get(i));
+            assertTrue(executed.get(i) <= 1);
+            if (!withFailures) assertEquals(1, executed.get(i));
+        }
+    }
+
+    //与 BootTask 的无锁模式相同：成功时释放后继，失败时逐个判定后继失败
+    private static void finish(StepGraph graph, int index, boolean failed, ConcurrentLinkedQueue<Integer> ready,
+                               AtomicIntegerArray finished, AtomicInteger lastFinishers, CountDownLatch done) {
+        finished.incrementAndGet(index);
+        if (graph.complete(index) == 0){
+            lastFinishers.incrementAndGet();
+            done.countDown();
+            return;
+        }
+        for (int dependent : graph.dependents(index)){
+            if (!failed){
+                if (graph.releaseConcurrently(dependent)) ready.add(dependent);
+            } else if (graph.doom(dependent)){
+                finish(graph, dependent, true, ready, finished, lastFinishers, done);
+            }
+        }
+    }
+
+    @Test
+    public void completesLargeFanOutsAndChains() {
+        for (int size = 10; size <= 10_000; size *= 10){
+            runFanOut(size);
+            runChain(size);
+        }
+    }
+
+    //一个根步骤，其余步骤都依赖它
+    private static void runFanOut(int size) {
+        List<BootStep> steps = new ArrayList<>(size);
+        TestStep root = new TestStep("root");
+        steps.add(root);
+        for (int i = 1; i < size; i++) steps.add(new TestStep("s" + i, root));
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        drain(graph, graph.pollReady());
+        assertTrue(graph.isAllFinished());
+    }
+
+    private static void runChain(int size) {
+        List<BootStep> steps = new ArrayList<>(size);
+        TestStep previous = new TestStep("s0");
+        steps.add(previous);
+        for (int i = 1; i < size; i++){
+            previous = new TestStep("s" + i, previous);
+            steps.add(previous);
+        }
+        StepGraph graph = StepGraph.compile(steps).getValue();
+        drain(graph, graph.pollReady());
+        assertTrue(graph.isAllFinished());
+    }
+
+    //模拟 BootTask 的调度：完成一个步骤，释放其后继，再依次执行就绪的步骤
+    private static List<BootStep.Type> drain(StepGraph graph, int first) {
+        List<BootStep.Type> order = new ArrayList<>(graph.size());
+        int index = first;
+        while (index >= 0){
+            order.add(graph.step(index).getType());
+            graph.complete(index);
+            for (int dependent : graph.dependents(index)) graph.release(dependent);
+            index = graph.pollReady();
+        }
+        return order;
+    }
+
+    static class TestStep extends BootStep {
+        private final Type type;
+        long cost = 1;
+        Phase phase = Phase.CRITICAL;
+        Lane lane = Lane.COORDINATOR;
+
+        TestStep(String name, TestStep... dependencies) {
+            type = typeOfName(name);
+            for (TestStep dependency : dependencies) addDependency(dependency.getType(), false);
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public long getCost() {
+            return cost;
+        }
+
+        @Override
+        public Phase getPhase() {
+            return phase;
+        }
+
+        @Override
+        public Lane getLane() {
+            return lane;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            callback.onStepFinished(type, Result.success());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ukom.aboot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * StepProfile 的读写、损坏文件的容错、数百个步骤的记录，以及任务结束之后的保存
+ */
+public class StepProfileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final BootStep.Type A = BootStep.typeOfName("A");
+    private static final BootStep.Type B = BootStep.typeOfName("B");
+
+    @Test
+    public void recordsAreSmoothedAcrossLaunches() throws IOException {
+        File file = folder.newFile();
+        StepProfile profile = new StepProfile(file, 0.5f);
+        profile.record(A, 1000, 10);
+        profile.save();
+
+        profile = new StepProfile(file, 0.5f);
+        assertEquals(1000, profile.getCostMicros(A));
+        assertEquals(-1, profile.getCostMicros(B));
+        profile.record(A, 2000, 30);
+        profile.save();
+
+        profile = new StepProfile(file, 0.5f);
+        assertEquals(1500, profile.getCostMicros(A));
+        assertEquals(20, profile.getWaitMicros(A));
+    }
+
+    @Test
+    public void missingOrCorruptFileFallsBackSilently() throws IOException {
+        StepProfile missing = new StepProfile(new File(folder.getRoot(), "missing"));
+        assertEquals(-1, missing.getCostMicros(A));
+
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)){
+            out.write("not a profile at all".getBytes("UTF-8"));
+        }
+        StepProfile corrupt = new StepProfile(file);
+        assertEquals(-1, corrupt.getCostMicros(A));
+
+        //损坏的文件会在下一次保存时被重写
+        corrupt.record(A, 500, 0);
+        corrupt.save();
+        assertEquals(500, new StepProfile(file).getCostMicros(A));
+    }
+
+    @Test
+    public void truncatedAndDamagedRecordsAreSkipped() throws IOException {
+        File file = folder.newFile();
+        StepProfile profile = new StepProfile(file);
+        profile.record(A, 700, 0);
+        profile.record(B, 900, 0);
+        profile.save();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            //破坏第二条记录的耗时，并在末尾留下半条记录
+            raf.seek(8 + 20 + 8);
+            raf.writeInt(12345);
+            raf.seek(raf.length());
+            raf.write(new byte[7]);
+        }
+
+        profile = new StepProfile(file);
+        assertEquals(700, profile.getCostMicros(A));
+        assertEquals(-1, profile.getCostMicros(B));
+
+        profile.record(B, 900, 0);
+        profile.save();
+        assertEquals(900, new StepProfile(file).getCostMicros(B));
+        assertEquals(700, new StepProfile(file).getCostMicros(A));
+    }
+
+    @Test
+    public void loadsHundredsOfSteps() throws IOException {
+        File file = folder.newFile();
+        BootStep.Type[] types = new BootStep.Type[300];
+        for (int i = 0; i < types.length; i++) types[i] = BootStep.typeOfName("step" + i);
+        for (int launch = 0; launch < 8; launch++){
+            StepProfile profile = new StepProfile(file);
+            for (BootStep.Type type : types) profile.record(type, 1000 + launch, 10);
+            profile.save();
+        }
+
+        StepProfile profile = new StepProfile(file);
+        profile.load();
+        for (BootStep.Type type : types){
+            long cost = profile.getCostMicros(type);
+            assertTrue(cost >= 1000 && cost <= 1007);
+            assertEquals(10, profile.getWaitMicros(type));
+        }
+    }
+
+    @Test
+    public void profileIsSavedAfterTheTaskFinishes() throws Exception {
+        File file = new File(folder.getRoot(), "profile");
+        BootReportTest.SleepStep a = new BootReportTest.SleepStep(0, BootStep.Lane.CPU, 5);
+        BootTask task = task(false, a);
+        task.setProfile(new StepProfile(file));
+        assertTrue(start(task).isSuccessful());
+
+        //耗时记录在 IO Lane 中异步写入
+        long deadline = System.currentTimeMillis() + 5000;
+        while (new StepProfile(file).getCostMicros(a.getType()) < 0){
+            assertTrue("profile not saved", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertTrue(new StepProfile(file).getCostMicros(a.getType()) >= 5_000);
+    }
+}
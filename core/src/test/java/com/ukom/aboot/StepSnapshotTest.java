@@ -0,0 +1,162 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static com.ukom.aboot.BootTaskTest.start;
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * StepSnapshot 的读写、失效标识、损坏文件的容错，以及启动时以快照恢复步骤
+ */
+public class StepSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final StepSnapshot.Serializer<Integer> INTEGER = new StepSnapshot.Serializer<Integer>() {
+        @Override
+        public void write(@NonNull Integer value, @NonNull DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @NonNull
+        @Override
+        public Integer read(@NonNull ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    @Test
+    public void restoresOnlyWithTheSameKey() throws IOException {
+        File file = folder.newFile();
+        StepSnapshot snapshot = new StepSnapshot(file);
+        snapshot.record(step("snapshot.a", "v1"), 42);
+        snapshot.record(step("snapshot.b", "v1"), null);
+        //保存之前不会被恢复
+        assertNull(snapshot.restore(step("snapshot.a", "v1")));
+        snapshot.save();
+
+        snapshot = new StepSnapshot(file);
+        assertEquals(42, snapshot.restore(step("snapshot.a", "v1")).getValue());
+        assertNull(snapshot.restore(step("snapshot.a", "v2")));
+        Result<?> b = snapshot.restore(step("snapshot.b", "v1"));
+        assertTrue(b.isSuccessful());
+        assertNull(b.getValue());
+        assertNull(snapshot.restore(step("snapshot.c", "v1")));
+    }
+
+    @Test
+    public void corruptRecordsAreIgnored() throws IOException {
+        File file = folder.newFile();
+        StepSnapshot snapshot = new StepSnapshot(file);
+        snapshot.record(step("snapshot.a", "v1"), 1);
+        snapshot.save();
+        //破坏值的最后一个字节
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            raf.seek(raf.length() - 5);
+            raf.write(0x7f);
+        }
+        snapshot = new StepSnapshot(file);
+        assertFalse(snapshot.contains(step("snapshot.a", "v1").getType(), "v1"));
+        assertNull(snapshot.restore(step("snapshot.a", "v1")));
+
+        //损坏的文件会在下一次保存时被重写
+        snapshot.record(step("snapshot.a", "v1"), 2);
+        snapshot.save();
+        assertEquals(2, new StepSnapshot(file).restore(step("snapshot.a", "v1")).getValue());
+    }
+
+    @Test
+    public void snapshotRestoresStepsWithTheSameKey() throws Exception {
+        File file = new File(folder.getRoot(), "snapshot");
+        String[] keys = {"v1", "v1", "v2"};
+        //第二次启动时失效标识一致，不再执行
+        int[] executions = {1, 0, 1};
+        for (int i = 0; i < keys.length; i++){
+            String key = keys[i];
+            SnapshotStep a = new SnapshotStep(0, BootStep.Lane.CPU, key);
+            RecordingStep b = new RecordingStep(1, BootStep.Lane.IO, a);
+            //以快照恢复的步骤在分发之前完成，不需要许可
+            if (executions[i] == 0) a.groups = new ResourceGroup[]{ResourceGroupTest.exhausted()};
+            BootTask task = task(false, a, b);
+            task.setSnapshot(new StepSnapshot(file));
+            TaskResult result = start(task);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(0, result.getStepResult(a.getType()).getValue());
+            assertEquals(Collections.singletonList(0), b.seen);
+            assertEquals(executions[i], a.executions.get());
+            assertEquals(1, b.executions.get());
+
+            //快照在 onTaskFinished 之后异步写入
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!new StepSnapshot(file).contains(a.getType(), key)){
+                assertTrue("snapshot not saved", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static BootStep step(final String name, final String key){
+        return new BootStep() {
+            @Override
+            public Type getType() {
+                return typeOfName(name);
+            }
+
+            @Override
+            public String getSnapshotKey() {
+                return key;
+            }
+
+            @Override
+            public StepSnapshot.Serializer<?> getSnapshotSerializer() {
+                return INTEGER;
+            }
+
+            @Override
+            public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+                callback.onStepFinished(getType(), Result.success());
+            }
+        };
+    }
+
+    //以 key 为失效标识保存结果的步骤
+    static class SnapshotStep extends RecordingStep {
+        private final String key;
+        ResourceGroup[] groups;
+
+        SnapshotStep(int id, Lane lane, String key, BootStep... dependencies){
+            super(id, lane, dependencies);
+            this.key = key;
+        }
+
+        @Override
+        public String getSnapshotKey() {
+            return key;
+        }
+
+        @Override
+        public StepSnapshot.Serializer<?> getSnapshotSerializer() {
+            return INTEGER;
+        }
+
+        @Override
+        public ResourceGroup[] getResourceGroups() {
+            return groups;
+        }
+    }
+}
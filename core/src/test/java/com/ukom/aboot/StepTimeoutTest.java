@@ -0,0 +1,136 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ukom.aboot.BootTaskTest.run;
+import static com.ukom.aboot.BootTaskTest.start;
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * 步骤超时、任务时限与 cancel()：未完成的步骤以失败结束，正在执行的步骤收到取消
+ */
+public class StepTimeoutTest {
+
+    @Test
+    public void timedOutStepFailsWithItsDependents() throws InterruptedException {
+        BlockingStep hanging = new BlockingStep(0, BootStep.Lane.IO);
+        hanging.timeout = 50;
+        RecordingStep b = new RecordingStep(1, BootStep.Lane.CPU, hanging);
+        RecordingStep c = new RecordingStep(2, BootStep.Lane.COORDINATOR, b);
+        RecordingStep d = new RecordingStep(3, BootStep.Lane.CPU);
+        TaskResult result = run(false, hanging, b, c, d);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(3, result.getFailedSteps().size());
+        assertTrue(result.getStepResult(hanging.getType()).throwable() instanceof TimeoutException);
+        assertTrue(hanging.token.isCancelled());
+        assertEquals(0, b.executions.get() + c.executions.get());
+        assertTrue(result.getStepResult(d.getType()).isSuccessful());
+    }
+
+    @Test
+    public void deadlineFailsUnfinishedSteps() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            BlockingStep hanging = new BlockingStep(0, BootStep.Lane.IO);
+            RecordingStep b = new RecordingStep(1, BootStep.Lane.CPU, hanging);
+            RecordingStep c = new RecordingStep(2, BootStep.Lane.CPU);
+            BootTask task = task(lockFree, hanging, b, c);
+            task.setDeadline(100, TimeUnit.MILLISECONDS);
+            TaskResult result = start(task);
+
+            assertEquals(2, result.getFailedSteps().size());
+            assertTrue(result.getStepResult(hanging.getType()).throwable() instanceof TimeoutException);
+            assertTrue(result.getStepResult(b.getType()).throwable() instanceof TimeoutException);
+            assertTrue(result.getStepResult(c.getType()).isSuccessful());
+            assertTrue(hanging.token.isCancelled());
+        }
+    }
+
+    @Test
+    public void cancelStopsDispatchAndCancelsRunningSteps() throws InterruptedException {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(1, 1));
+        try {
+            BlockingStep running = new BlockingStep(0, BootStep.Lane.CPU);
+            running.cost = 100;
+            running.gate = new CountDownLatch(1);
+            List<BootStep> steps = new ArrayList<>();
+            steps.add(running);
+            List<RecordingStep> queued = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) queued.add(new RecordingStep(i, BootStep.Lane.CPU));
+            steps.addAll(queued);
+            BootTask task = task(runtime, steps.toArray(new BootStep[0]));
+            final AtomicReference<TaskResult> result = new AtomicReference<>();
+            final CountDownLatch finished = new CountDownLatch(1);
+            task.start(new BootTask.Callback() {
+                @Override
+                public void onTaskFinished(TaskResult r) {
+                    result.set(r);
+                    finished.countDown();
+                }
+            });
+            assertTrue(running.started.await(5, TimeUnit.SECONDS));
+            task.cancel();
+            //正在执行的步骤尚未回调，任务已经结束
+            assertTrue(finished.await(5, TimeUnit.SECONDS));
+            assertTrue(running.token.isCancelled());
+            assertEquals(6, result.get().getFailedSteps().size());
+            assertTrue(result.get().getStepResult(running.getType()).throwable() instanceof CancellationException);
+
+            //之后的回调被忽略，排队的步骤不再执行
+            running.gate.countDown();
+            Thread.sleep(50);
+            for (RecordingStep step : queued) assertEquals(0, step.executions.get());
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    //记录本次执行的取消标记；gate 为 null 时不回调，模拟吞掉异常的步骤，否则等待 gate 之后正常结束
+    static class BlockingStep extends RecordingStep {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile CancellationToken token;
+        CountDownLatch gate;
+        long timeout;
+        long cost = 1;
+
+        BlockingStep(int id, Lane lane, BootStep... dependencies){
+            super(id, lane, dependencies);
+        }
+
+        @Override
+        public long getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        public long getCost() {
+            return cost;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            token = getCancellationToken();
+            started.countDown();
+            if (gate == null) return;
+            try {
+                gate.await();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            super.executeImpl(container, callback);
+        }
+    }
+}
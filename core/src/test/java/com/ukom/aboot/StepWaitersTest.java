@@ -0,0 +1,142 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ukom.aboot.BootTaskTest.task;
+import static org.junit.Assert.*;
+
+/**
+ * BootTask.await 与 whenReady：被等待的步骤及其祖先优先执行，以及启动之前与结束之后的等待
+ */
+public class StepWaitersTest {
+
+    @Test
+    public void awaitedStepAndAncestorsJumpTheQueue() throws Exception {
+        BootRuntime runtime = new BootRuntime(new StepDispatcher(1, 1));
+        try {
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch gate = new CountDownLatch(1);
+            //唯一的 CPU 线程先被 blocker 占住，其余步骤都在线程池中排队
+            OrderedStep blocker = new OrderedStep(100, BootStep.Lane.CPU, 1_000, order);
+            blocker.gate = gate;
+            List<BootStep> steps = new ArrayList<>();
+            steps.add(blocker);
+            for (int i = 0; i < 10; i++) steps.add(new OrderedStep(200 + i, BootStep.Lane.CPU, 100, order));
+            OrderedStep ancestor = new OrderedStep(300, BootStep.Lane.CPU, 1, order);
+            OrderedStep awaited = new OrderedStep(301, BootStep.Lane.COORDINATOR, 1, order, ancestor);
+            steps.add(ancestor);
+            steps.add(awaited);
+
+            BootTask task = task(runtime, steps.toArray(new BootStep[0]));
+            final AtomicReference<TaskResult> taskResult = new AtomicReference<>();
+            final CountDownLatch finished = new CountDownLatch(1);
+            task.start(new BootTask.Callback() {
+                @Override
+                public void onTaskFinished(TaskResult result) {
+                    taskResult.set(result);
+                    finished.countDown();
+                }
+            });
+            assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException ignored){ }
+                    gate.countDown();
+                }
+            }).start();
+
+            Result<?> result = task.await(awaited.getType(), 5, TimeUnit.SECONDS);
+            assertTrue(result.isSuccessful());
+            assertEquals(301, result.getValue());
+            assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+            //被等待的步骤的祖先先于所有无关的步骤执行（被等待的步骤在工作线程中执行，与 CPU 线程上的步骤顺序不定）
+            assertEquals(Arrays.asList(100, 300), order.subList(0, 2));
+            assertTrue(taskResult.get().getBlockedNanos(awaited.getType()) > 0);
+            assertEquals(0, taskResult.get().getBlockedNanos(ancestor.getType()));
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    @Test
+    public void whenReadyBeforeStartAndAfterFinish() throws Exception {
+        RecordingStep a = new RecordingStep(0, BootStep.Lane.IO);
+        RecordingStep b = new RecordingStep(1, BootStep.Lane.CPU, a);
+        BootTask task = task(false, a, b);
+
+        final AtomicReference<Result> early = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        task.whenReady(b.getType(), new BootStep.Callback() {
+            @Override
+            public void onStepFinished(BootStep.Type type, Result result) {
+                early.set(result);
+                latch.countDown();
+            }
+        });
+        final CountDownLatch finished = new CountDownLatch(1);
+        task.start(new BootTask.Callback() {
+            @Override
+            public void onTaskFinished(TaskResult result) {
+                finished.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, early.get().getValue());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        //执行完成之后返回最近一次执行的结果，没有被装载的步骤返回失败
+        assertEquals(0, task.await(a.getType(), 1, TimeUnit.SECONDS).getValue());
+        assertFalse(task.await(BootStep.typeOfName("not loaded"), 1, TimeUnit.SECONDS).isSuccessful());
+    }
+
+    //按开始执行的顺序记录 id，gate 不为 null 时等待 gate 之后才结束
+    static class OrderedStep extends RecordingStep {
+        private final int id;
+        private final long cost;
+        private final List<Integer> order;
+        final CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate;
+
+        OrderedStep(int id, Lane lane, long cost, List<Integer> order, BootStep... dependencies){
+            super(id, lane, dependencies);
+            this.id = id;
+            this.cost = cost;
+            this.order = order;
+        }
+
+        @Override
+        public long getCost() {
+            return cost;
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            order.add(id);
+            started.countDown();
+            if (gate != null){
+                try {
+                    gate.await();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.executeImpl(container, callback);
+        }
+    }
+}
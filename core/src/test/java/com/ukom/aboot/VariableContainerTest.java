@@ -0,0 +1,167 @@
+package com.ukom.aboot;
+
+import androidx.annotation.NonNull;
+
+import com.ukom.aboot.BootTaskTest.RecordingStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.ukom.aboot.BootTaskTest.run;
+import static org.junit.Assert.*;
+
+public class VariableContainerTest {
+
+    @Test
+    public void typesOfSameNameAreInterned() {
+        BootStep.Type a = BootStep.typeOfName("interned");
+        assertSame(a, BootStep.typeOfName("interned"));
+        assertNotEquals(a.getId(), BootStep.typeOfName("interned2").getId());
+        assertTrue(a.getId() < BootStep.Type.count());
+    }
+
+    @Test
+    public void idsOfCollectedTypesAreReused() throws InterruptedException {
+        int created = 0;
+        for (int round = 0; round < 100; round++){
+            //动态命名、不再被引用的 Type
+            for (int i = 0; i < 1000; i++) BootStep.typeOfName("container.dynamic" + created++);
+            System.gc();
+            Thread.sleep(1);
+        }
+        //被回收的 Type 的 id 分配给之后新建的 Type，数组的大小不随创建过的 Type 总数增长
+        assertTrue(BootStep.Type.count() < created / 2);
+    }
+
+    @Test
+    public void putGetAndClear() {
+        BootStep.Type a = BootStep.typeOfName("container.a");
+        BootStep.Type b = BootStep.typeOfName("container.b");
+        VariableContainer container = new VariableContainer();
+        container.ensureCapacity(BootStep.Type.count());
+
+        container.putVariable(a, "a");
+        container.putVariable(b, null);
+        assertTrue(container.isVariableExist(a));
+        assertEquals("a", container.getVariable(a));
+        //null 不会被保存
+        assertFalse(container.isVariableExist(b));
+
+        container.clear();
+        assertFalse(container.isVariableExist(a));
+        assertNull(container.getVariable(a));
+    }
+
+    @Test
+    public void requestVariableCompletesForExistingVariables() throws Exception {
+        BootStep.Type a = BootStep.typeOfName("container.a");
+        BootStep.Type b = BootStep.typeOfName("container.b");
+        VariableContainer container = new VariableContainer();
+        container.ensureCapacity(BootStep.Type.count());
+        container.putVariable(a, "a");
+
+        assertEquals("a", container.requestVariable(a).get(0, TimeUnit.MILLISECONDS));
+        //没有 BootTask 可以产生该变量
+        try {
+            container.requestVariable(b).get(0, TimeUnit.MILLISECONDS);
+            fail("no loader");
+        } catch (ExecutionException expected){
+            assertTrue(container.requestVariable(b).isDone());
+        }
+    }
+
+    @Test
+    public void removeKeepsOtherVariables() {
+        BootStep.Type a = BootStep.typeOfName("container.a");
+        BootStep.Type b = BootStep.typeOfName("container.b");
+        VariableContainer container = new VariableContainer();
+        container.ensureCapacity(BootStep.Type.count());
+
+        container.putVariable(a, "a");
+        container.putVariable(b, "b");
+        container.removeVariable(a);
+        assertFalse(container.isVariableExist(a));
+        assertNull(container.getVariable(a));
+        assertEquals("b", container.getVariable(b));
+        //不存在的变量
+        container.removeVariable(a);
+        assertTrue(container.isVariableExist(b));
+    }
+
+    @Test
+    public void concurrentPutsToSameWordAreNotLost() throws InterruptedException {
+        final int size = 64 * 4;
+        final BootStep.Type[] types = new BootStep.Type[size];
+        for (int i = 0; i < size; i++) types[i] = BootStep.typeOfName("container.concurrent" + i);
+
+        for (int round = 0; round < 50; round++){
+            final VariableContainer container = new VariableContainer();
+            container.ensureCapacity(BootStep.Type.count());
+            final int threadCount = 4;
+            final CountDownLatch latch = new CountDownLatch(threadCount);
+            for (int t = 0; t < threadCount; t++){
+                final int offset = t;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        //相邻的 id 分给不同的线程，写入同一个字
+                        for (int i = offset; i < size; i += threadCount) container.putVariable(types[i], i);
+                        latch.countDown();
+                    }
+                }).start();
+            }
+            latch.await();
+            for (int i = 0; i < size; i++) assertTrue(container.isVariableExist(types[i]));
+        }
+    }
+
+    @Test
+    public void variablesAreReleasedAfterTheirLastConsumer() throws InterruptedException {
+        for (boolean lockFree : new boolean[]{false, true}){
+            RecordingStep source = new RecordingStep(0, BootStep.Lane.CPU) {
+                @Override
+                public Retention getRetention() {
+                    return Retention.TRANSIENT;
+                }
+            };
+            RecordingStep kept = new RecordingStep(1, BootStep.Lane.IO);
+            RecordingStep a = new RecordingStep(2, BootStep.Lane.CPU, source, kept);
+            RecordingStep b = new RecordingStep(3, BootStep.Lane.IO, source);
+            ProbeStep last = new ProbeStep(4, BootStep.Lane.COORDINATOR, a, b);
+            last.probe = Arrays.asList(source.getType(), kept.getType(), a.getType());
+            TaskResult result = run(lockFree, source, kept, a, b, last);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(Arrays.asList(0, 1), a.seen);
+            assertEquals(Collections.singletonList(0), b.seen);
+            //读取者都已结束的变量已经释放，正在读取的仍然存在
+            assertEquals(Arrays.asList(false, false, true), last.probed);
+            assertNull(result.getStepResult(source.getType()).getValue());
+            assertTrue(result.getStepResult(source.getType()).isSuccessful());
+            assertEquals(1, result.getStepResult(kept.getType()).getValue());
+        }
+    }
+
+    //执行时检查 probe 中的变量是否还在容器中
+    static class ProbeStep extends RecordingStep {
+        List<BootStep.Type> probe = Collections.emptyList();
+        final List<Boolean> probed = new ArrayList<>();
+
+        ProbeStep(int id, Lane lane, BootStep... dependencies){
+            super(id, lane, dependencies);
+        }
+
+        @Override
+        public void executeImpl(@NonNull VariableContainer container, Callback callback) {
+            for (Type variable : probe) probed.add(container.isVariableExist(variable));
+            super.executeImpl(container, callback);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+# BootPlatform.get() 通过反射创建 AndroidPlatform
+-keep class com.ukom.aboot.AndroidPlatform {
+    <init>();
+}
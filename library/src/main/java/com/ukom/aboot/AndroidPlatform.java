@@ -0,0 +1,34 @@
+package com.ukom.aboot;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Android 平台的实现：HandlerThread 作为工作线程，android.util.Log 输出日志
+ *
+ * 由 BootPlatform.get() 通过反射创建
+ */
+final class AndroidPlatform extends BootPlatform {
+    private final BootLogger logger = new BootLogger() {
+        @Override
+        public void log(int priority, @NonNull String tag, @NonNull String msg, Throwable throwable) {
+            if (throwable != null) msg = msg + '\n' + Log.getStackTraceString(throwable);
+            Log.println(priority, tag, msg);
+        }
+    };
+
+    AndroidPlatform(){ }
+
+    @NonNull
+    @Override
+    public CoordinatorExecutor newCoordinator() {
+        return new HandlerThreadExecutor();
+    }
+
+    @NonNull
+    @Override
+    public BootLogger logger() {
+        return logger;
+    }
+}
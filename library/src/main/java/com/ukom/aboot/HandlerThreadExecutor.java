@@ -3,9 +3,10 @@ package com.ukom.aboot;
 import android.os.Handler;
 import android.os.HandlerThread;
 
-import java.util.concurrent.Executor;
-
-public class HandlerThreadExecutor implements Executor {
+/**
+ * 基于 HandlerThread 的 BootTask 工作线程
+ */
+public class HandlerThreadExecutor implements CoordinatorExecutor {
 
     private HandlerThread mWorkThread;
     private Handler mHandler;
@@ -13,7 +14,7 @@ public class HandlerThreadExecutor implements Executor {
     private volatile boolean isReleased;
 
     public HandlerThreadExecutor(){
-        mWorkThread = new HandlerThread("HttpWorkThread");
+        mWorkThread = new HandlerThread("aBoot-coordinator");
         mWorkThread.start();
         mHandler = new Handler(mWorkThread.getLooper());
     }
@@ -24,6 +25,7 @@ public class HandlerThreadExecutor implements Executor {
         mHandler.post(runnable);
     }
 
+    @Override
     public void release(){
         isReleased = true;
 
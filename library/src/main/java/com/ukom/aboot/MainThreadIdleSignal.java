@@ -0,0 +1,51 @@
+package com.ukom.aboot;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 主线程消息队列空闲时回调的空闲信号，基于 MessageQueue.IdleHandler
+ */
+public class MainThreadIdleSignal implements PhaseSignal {
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    //只在主线程中访问
+    private final Map<Listener, MessageQueue.IdleHandler> mIdleHandlers = new HashMap<>();
+
+    @Override
+    public void observe(@NonNull final Listener listener) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mIdleHandlers.containsKey(listener)) return;
+                MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+                    @Override
+                    public boolean queueIdle() {
+                        listener.onSignal();
+                        //保留，下次空闲时继续回调
+                        return true;
+                    }
+                };
+                mIdleHandlers.put(listener, idleHandler);
+                Looper.myQueue().addIdleHandler(idleHandler);
+            }
+        });
+    }
+
+    @Override
+    public void remove(@NonNull final Listener listener) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                MessageQueue.IdleHandler idleHandler = mIdleHandlers.remove(listener);
+                if (idleHandler != null) Looper.myQueue().removeIdleHandler(idleHandler);
+            }
+        });
+    }
+}
@@ -0,0 +1,428 @@
+package com.ukom.aboot.processor;
+
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * 处理 @Step 注解：编译期检查依赖缺失与循环依赖，生成步骤清单或注册表
+ *
+ * - 库模块：生成 com.ukom.aboot.generated.BootSteps_<模块名>，以 @StepContribution 列出本模块的步骤，
+ *   模块名由处理器参数 aboot.module 指定；
+ * - 应用模块：以处理器参数 aboot.registry 指定注册表的全限定类名，从编译路径中收集所有模块的清单，
+ *   与本模块的步骤合并成完整的依赖图，检查之后按拓扑序生成 BootRegistry 的实现。
+ *
+ * 依赖图的检查与 StepGraph.compile 相同：依赖的类没有被 @Step 注解（或其模块没有运行处理器）视为依赖缺失，
+ * 循环依赖报告环上的步骤。拓扑序中同时就绪的步骤按类名排序，生成的代码与编译顺序无关
+ *
+ */
+public class BootStepProcessor extends AbstractProcessor {
+
+    static final String OPTION_MODULE = "aboot.module";
+    static final String OPTION_REGISTRY = "aboot.registry";
+
+    private static final String STEP = "com.ukom.aboot.Step";
+    private static final String BOOT_STEP = "com.ukom.aboot.BootStep";
+    private static final String CONTRIBUTION = "com.ukom.aboot.StepContribution";
+    private static final String GENERATED_PACKAGE = "com.ukom.aboot.generated";
+
+    //本模块中的步骤，按类名排序
+    private final Map<String, Node> localSteps = new TreeMap<>();
+    private boolean isGenerated;
+
+    //应用模块可以没有自己的 @Step 步骤，只声明 @Step 时 javac 不会调用处理器，注册表也不会生成；
+    //声明处理所有注解，但 process 始终返回 false，不影响其他处理器
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> options = new LinkedHashSet<>();
+        options.add(OPTION_MODULE);
+        options.add(OPTION_REGISTRY);
+        return options;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement stepAnnotation = processingEnv.getElementUtils().getTypeElement(STEP);
+        if (stepAnnotation != null){
+            for (Element element : roundEnv.getElementsAnnotatedWith(stepAnnotation)){
+                Node node = readStep(element);
+                if (node != null) localSteps.put(node.name, node);
+            }
+        }
+
+        //@Step 注解的都是手写的类，在第一轮全部可见，只生成一次
+        if (isGenerated || roundEnv.processingOver()) return false;
+        isGenerated = true;
+        String registry = processingEnv.getOptions().get(OPTION_REGISTRY);
+        if (registry != null){
+            generateRegistry(registry);
+        } else if (!localSteps.isEmpty()){
+            generateContribution();
+        }
+        return false;
+    }
+
+    //检查被注解的类并读取依赖，不符合要求时报告错误并返回 null
+    private Node readStep(Element element){
+        if (element.getKind() != ElementKind.CLASS){
+            error(element, "@Step can only be applied to classes");
+            return null;
+        }
+        TypeElement type = (TypeElement) element;
+        Set<Modifier> modifiers = type.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)){
+            error(type, "@Step class must be public and not abstract: " + type.getQualifiedName());
+            return null;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)){
+            error(type, "nested @Step class must be static: " + type.getQualifiedName());
+            return null;
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS){
+            error(type, "@Step class must be a top level or static nested class: " + type.getQualifiedName());
+            return null;
+        }
+        TypeElement bootStep = processingEnv.getElementUtils().getTypeElement(BOOT_STEP);
+        if (bootStep != null && !processingEnv.getTypeUtils().isAssignable(type.asType(),
+                processingEnv.getTypeUtils().erasure(bootStep.asType()))){
+            error(type, "@Step class must extend " + BOOT_STEP + ": " + type.getQualifiedName());
+            return null;
+        }
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())){
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)){
+                hasConstructor = true;
+                break;
+            }
+        }
+        if (!hasConstructor){
+            error(type, "@Step class must have a public no-arg constructor: " + type.getQualifiedName());
+            return null;
+        }
+        return readNode(type);
+    }
+
+    //读取 @Step 的依赖，类没有被 @Step 注解时返回 null
+    private Node readNode(TypeElement type){
+        AnnotationMirror mirror = findAnnotation(type, STEP);
+        if (mirror == null) return null;
+        Node node = new Node(type.getQualifiedName().toString(), type);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()){
+            String key = entry.getKey().getSimpleName().toString();
+            boolean needVariable = key.equals("needVariable");
+            if (!needVariable && !key.equals("dependsOn")) continue;
+            for (String dependency : classNames(type, entry.getValue())){
+                if (!node.dependencies.contains(dependency)) node.dependencies.add(dependency);
+                if (needVariable && !node.variables.contains(dependency)) node.variables.add(dependency);
+            }
+        }
+        return node;
+    }
+
+    private List<String> classNames(Element element, AnnotationValue value){
+        List<String> names = new ArrayList<>();
+        Object list = value.getValue();
+        if (!(list instanceof List)) return names;
+        for (Object item : (List<?>) list){
+            Object type = ((AnnotationValue) item).getValue();
+            if (type instanceof DeclaredType){
+                names.add(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+            } else if (type instanceof TypeMirror){
+                //类不存在时为错误类型，编译器会另外报告
+                error(element, "unresolved dependency: " + type);
+            }
+        }
+        return names;
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String name){
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()){
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(name)) return mirror;
+        }
+        return null;
+    }
+
+    //库模块：检查依赖都是 @Step 步骤、本模块内没有循环依赖，生成步骤清单
+    private void generateContribution(){
+        for (Node node : localSteps.values()){
+            for (String dependency : node.dependencies){
+                if (localSteps.containsKey(dependency)) continue;
+                TypeElement type = processingEnv.getElementUtils().getTypeElement(dependency);
+                if (type == null || findAnnotation(type, STEP) == null){
+                    error(node.element, "lack of dependency[" + dependency + "] by type[" + node.name
+                            + "]: dependency is not annotated with @Step");
+                }
+            }
+        }
+        if (sort(new ArrayList<>(localSteps.values()), false) == null) return;
+
+        String module = processingEnv.getOptions().get(OPTION_MODULE);
+        if (module == null){
+            module = "m" + Integer.toHexString(localSteps.keySet().hashCode());
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "aBoot: no -A" + OPTION_MODULE + " option, step contribution named after its steps: " + module);
+        }
+        String simpleName = "BootSteps_" + identifier(module);
+        StringBuilder code = new StringBuilder()
+                .append("package ").append(GENERATED_PACKAGE).append(";\n\n")
+                .append("//由 BootStepProcessor 生成，不要修改\n")
+                .append("@").append(CONTRIBUTION).append("({");
+        boolean first = true;
+        for (String name : localSteps.keySet()){
+            code.append(first ? "\n        " : ",\n        ").append(name).append(".class");
+            first = false;
+        }
+        code.append("\n})\npublic final class ").append(simpleName).append(" {\n")
+                .append("    private ").append(simpleName).append("() { }\n")
+                .append("}\n");
+        write(GENERATED_PACKAGE + "." + simpleName, code.toString(), localSteps.values());
+    }
+
+    //应用模块：合并本模块与编译路径中所有模块的步骤，检查之后生成注册表
+    private void generateRegistry(String registry){
+        Map<String, Node> nodes = new TreeMap<>(localSteps);
+        PackageElement generated = processingEnv.getElementUtils().getPackageElement(GENERATED_PACKAGE);
+        if (generated != null){
+            for (TypeElement contribution : ElementFilter.typesIn(generated.getEnclosedElements())){
+                AnnotationMirror mirror = findAnnotation(contribution, CONTRIBUTION);
+                if (mirror == null) continue;
+                for (AnnotationValue value : mirror.getElementValues().values()){
+                    for (String name : classNames(contribution, value)){
+                        if (nodes.containsKey(name)) continue;
+                        TypeElement type = processingEnv.getElementUtils().getTypeElement(name);
+                        Node node = type == null ? null : readNode(type);
+                        if (node != null) nodes.put(name, node);
+                    }
+                }
+            }
+        }
+
+        List<Node> list = new ArrayList<>(nodes.values());
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) indexes.put(list.get(i).name, i);
+        boolean isComplete = true;
+        for (Node node : list){
+            for (String dependency : node.dependencies){
+                if (indexes.containsKey(dependency)) continue;
+                error(node.element, "lack of dependency[" + dependency + "] by type[" + node.name
+                        + "]: dependency is not annotated with @Step, or its module does not run the processor");
+                isComplete = false;
+            }
+        }
+        if (!isComplete) return;
+        List<Node> order = sort(list, true);
+        if (order == null) return;
+        write(registry, registryCode(registry, order), order);
+    }
+
+    /**
+     * Kahn 算法，同时就绪的步骤按类名排序
+     * @param complete 依赖是否都在 nodes 中，否则忽略 nodes 之外的依赖
+     * @return 拓扑序，存在循环依赖时报告错误并返回 null
+     */
+    private List<Node> sort(List<Node> nodes, boolean complete){
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) indexes.put(nodes.get(i).name, i);
+        int[] pending = new int[nodes.size()];
+        List<List<Integer>> dependents = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) dependents.add(new ArrayList<Integer>());
+        for (int i = 0; i < nodes.size(); i++){
+            for (String dependency : nodes.get(i).dependencies){
+                Integer from = indexes.get(dependency);
+                if (from == null){
+                    if (complete) throw new IllegalStateException("lack of dependency " + dependency);
+                    continue;
+                }
+                pending[i]++;
+                dependents.get(from).add(i);
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < pending.length; i++){
+            if (pending[i] == 0) ready.add(i);
+        }
+        List<Node> order = new ArrayList<>(nodes.size());
+        boolean[] sorted = new boolean[nodes.size()];
+        while (!ready.isEmpty()){
+            int index = ready.poll();
+            order.add(nodes.get(index));
+            sorted[index] = true;
+            for (int dependent : dependents.get(index)){
+                if (--pending[dependent] == 0) ready.add(dependent);
+            }
+        }
+        if (order.size() == nodes.size()) return order;
+
+        //未排序的步骤都至少有一个依赖同样未排序，沿依赖前进直到重复出现
+        int start = 0;
+        while (sorted[start]) start++;
+        List<String> path = new ArrayList<>();
+        Map<Integer, Integer> position = new HashMap<>();
+        int cursor = start;
+        while (!position.containsKey(cursor)){
+            position.put(cursor, path.size());
+            path.add(nodes.get(cursor).name);
+            for (String dependency : nodes.get(cursor).dependencies){
+                Integer next = indexes.get(dependency);
+                if (next != null && !sorted[next]){
+                    cursor = next;
+                    break;
+                }
+            }
+        }
+        List<String> chain = path.subList(position.get(cursor), path.size());
+        error(nodes.get(cursor).element, "circular dependencies, chain: " + chain + ", tail: " + nodes.get(cursor).name);
+        return null;
+    }
+
+    private static String registryCode(String registry, List<Node> order){
+        int dot = registry.lastIndexOf('.');
+        String packageName = dot < 0 ? "" : registry.substring(0, dot);
+        String simpleName = registry.substring(dot + 1);
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) indexes.put(order.get(i).name, i);
+
+        List<List<Integer>> dependents = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) dependents.add(new ArrayList<Integer>());
+        List<List<Integer>> dependencies = new ArrayList<>();
+        List<List<Integer>> variables = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++){
+            List<Integer> list = new ArrayList<>();
+            for (String dependency : order.get(i).dependencies){
+                int from = indexes.get(dependency);
+                list.add(from);
+                dependents.get(from).add(i);
+            }
+            Collections.sort(list);
+            dependencies.add(list);
+            List<Integer> variableList = new ArrayList<>();
+            for (String variable : order.get(i).variables) variableList.add(indexes.get(variable));
+            Collections.sort(variableList);
+            variables.add(variableList);
+        }
+
+        StringBuilder code = new StringBuilder();
+        if (!packageName.isEmpty()) code.append("package ").append(packageName).append(";\n\n");
+        code.append("/**\n")
+                .append(" * 由 BootStepProcessor 生成，不要修改：").append(order.size()).append(" 个步骤，已按拓扑序排列\n")
+                .append(" */\n")
+                .append("public final class ").append(simpleName).append(" implements com.ukom.aboot.BootRegistry {\n\n");
+        appendArrays(code, "DEPENDENCIES", dependencies);
+        appendArrays(code, "VARIABLES", variables);
+        appendArrays(code, "DEPENDENTS", dependents);
+        code.append("    @Override\n")
+                .append("    public int size() {\n")
+                .append("        return ").append(order.size()).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public com.ukom.aboot.BootStep create(int index) {\n")
+                .append("        switch (index) {\n");
+        for (int i = 0; i < order.size(); i++){
+            code.append("            case ").append(i).append(": return new ").append(order.get(i).name).append("();\n");
+        }
+        code.append("            default: throw new IndexOutOfBoundsException(\"index: \" + index);\n")
+                .append("        }\n")
+                .append("    }\n\n");
+        appendGetter(code, "dependencies", "DEPENDENCIES");
+        appendGetter(code, "variables", "VARIABLES");
+        appendGetter(code, "dependents", "DEPENDENTS");
+        code.setLength(code.length() - 1);
+        return code.append("}\n").toString();
+    }
+
+    private static void appendArrays(StringBuilder code, String name, List<List<Integer>> arrays){
+        code.append("    private static final int[][] ").append(name).append(" = {\n");
+        for (List<Integer> array : arrays){
+            code.append("            {");
+            for (int i = 0; i < array.size(); i++){
+                if (i > 0) code.append(", ");
+                code.append(array.get(i));
+            }
+            code.append("},\n");
+        }
+        code.append("    };\n\n");
+    }
+
+    private static void appendGetter(StringBuilder code, String method, String array){
+        code.append("    @Override\n")
+                .append("    public int[] ").append(method).append("(int index) {\n")
+                .append("        return ").append(array).append("[index];\n")
+                .append("    }\n\n");
+    }
+
+    private void write(String className, String code, Iterable<Node> nodes){
+        List<Element> originating = new ArrayList<>();
+        for (Node node : nodes) originating.add(node.element);
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(className, originating.toArray(new Element[0])).openWriter()){
+            writer.write(code);
+        } catch (IOException e){
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "aBoot: failed to generate " + className + ": " + e);
+        }
+    }
+
+    private static String identifier(String name){
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++){
+            char c = name.charAt(i);
+            builder.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private void error(Element element, String message){
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "aBoot: " + message, element);
+    }
+
+    private static final class Node {
+        final String name;
+        final TypeElement element;
+        final List<String> dependencies = new ArrayList<>();
+        final List<String> variables = new ArrayList<>();
+
+        Node(String name, TypeElement element){
+            this.name = name;
+            this.element = element;
+        }
+    }
+}
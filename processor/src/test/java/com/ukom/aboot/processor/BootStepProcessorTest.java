@@ -0,0 +1,190 @@
+package com.ukom.aboot.processor;
+
+import com.ukom.aboot.BootRegistry;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用 javax.tools 在测试中编译带 @Step 的源码，检查处理器报告的错误与生成的注册表
+ */
+public class BootStepProcessorTest {
+
+    @Test
+    public void generatesRegistryInTopologicalOrder() throws Exception {
+        Compilation compilation = compile(Collections.<File>emptyList(), "-A" + BootStepProcessor.OPTION_REGISTRY + "=app.AppRegistry",
+                step("app.C", "dependsOn = {app.A.class}, needVariable = {app.B.class}"),
+                step("app.B", "dependsOn = app.A.class"),
+                step("app.A", ""),
+                step("app.D", ""));
+        assertTrue(compilation.errors.toString(), compilation.errors.isEmpty());
+
+        BootRegistry registry = compilation.registry("app.AppRegistry");
+        assertEquals(Arrays.asList("app.A", "app.B", "app.C", "app.D"), names(registry));
+        assertArrayEquals(new int[]{0, 1}, registry.dependencies(2));
+        assertArrayEquals(new int[]{1}, registry.variables(2));
+        assertArrayEquals(new int[]{1, 2}, registry.dependents(0));
+        assertArrayEquals(new int[0], registry.dependencies(3));
+    }
+
+    @Test
+    public void reportsCircularDependencies() throws Exception {
+        Compilation compilation = compile(Collections.<File>emptyList(), "-A" + BootStepProcessor.OPTION_REGISTRY + "=app.AppRegistry",
+                step("app.A", "dependsOn = app.C.class"),
+                step("app.B", "dependsOn = app.A.class"),
+                step("app.C", "dependsOn = app.B.class"),
+                step("app.D", "dependsOn = app.C.class"));
+
+        assertEquals(1, compilation.errors.size());
+        String error = compilation.errors.get(0);
+        assertTrue(error, error.contains("circular dependencies"));
+        assertTrue(error, error.contains("app.A") && error.contains("app.B") && error.contains("app.C"));
+        assertFalse(error, error.contains("app.D"));
+    }
+
+    @Test
+    public void reportsMissingDependencies() throws Exception {
+        //依赖的步骤没有被 @Step 注解
+        Compilation compilation = compile(Collections.<File>emptyList(), "-A" + BootStepProcessor.OPTION_REGISTRY + "=app.AppRegistry",
+                step("app.A", "dependsOn = app.B.class"),
+                source("app.B", "public class B extends com.ukom.aboot.BootStep {\n" + BODY + "}\n"));
+
+        assertEquals(1, compilation.errors.size());
+        assertTrue(compilation.errors.get(0), compilation.errors.get(0).contains("lack of dependency[app.B] by type[app.A]"));
+    }
+
+    @Test
+    public void rejectsStepsThatCannotBeCreated() throws Exception {
+        Compilation compilation = compile(Collections.<File>emptyList(), "-A" + BootStepProcessor.OPTION_MODULE + "=lib",
+                source("lib.A", "@com.ukom.aboot.Step\npublic class A extends com.ukom.aboot.BootStep {\n"
+                        + "    public A(int value) { }\n" + BODY + "}\n"));
+
+        assertEquals(1, compilation.errors.size());
+        assertTrue(compilation.errors.get(0), compilation.errors.get(0).contains("public no-arg constructor"));
+    }
+
+    @Test
+    public void mergesStepsOfLibraryModules() throws Exception {
+        Compilation library = compile(Collections.<File>emptyList(), "-A" + BootStepProcessor.OPTION_MODULE + "=lib",
+                step("lib.Network", ""),
+                step("lib.Account", "needVariable = lib.Network.class"));
+        assertTrue(library.errors.toString(), library.errors.isEmpty());
+
+        Compilation app = compile(Collections.singletonList(library.output), "-A" + BootStepProcessor.OPTION_REGISTRY + "=app.AppRegistry",
+                step("app.Home", "dependsOn = {lib.Account.class, app.Config.class}"),
+                step("app.Config", ""));
+        assertTrue(app.errors.toString(), app.errors.isEmpty());
+
+        BootRegistry registry = app.registry("app.AppRegistry");
+        assertEquals(Arrays.asList("app.Config", "lib.Network", "lib.Account", "app.Home"), names(registry));
+        assertArrayEquals(new int[]{1}, registry.variables(2));
+        assertArrayEquals(new int[]{0, 2}, registry.dependencies(3));
+    }
+
+    @Test
+    public void mergesStepsOfLibraryModulesIntoAnAppWithoutSteps() throws Exception {
+        Compilation library = compile(Collections.<File>emptyList(), "-A" + BootStepProcessor.OPTION_MODULE + "=lib",
+                step("lib.Network", ""),
+                step("lib.Account", "needVariable = lib.Network.class"));
+        assertTrue(library.errors.toString(), library.errors.isEmpty());
+
+        //应用模块没有 @Step 注解的类
+        Compilation app = compile(Collections.singletonList(library.output), "-A" + BootStepProcessor.OPTION_REGISTRY + "=app.AppRegistry",
+                source("app.App", "public class App {\n}\n"));
+        assertTrue(app.errors.toString(), app.errors.isEmpty());
+
+        BootRegistry registry = app.registry("app.AppRegistry");
+        assertEquals(Arrays.asList("lib.Network", "lib.Account"), names(registry));
+        assertArrayEquals(new int[]{0}, registry.variables(1));
+    }
+
+    private static final String BODY = "    private final Type type = typeOfName(getClass().getName());\n"
+            + "    @Override public Type getType() { return type; }\n"
+            + "    @Override public void executeImpl(com.ukom.aboot.VariableContainer container, Callback callback) {\n"
+            + "        callback.onStepFinished(type, com.ukom.aboot.Result.success(null));\n"
+            + "    }\n";
+
+    private static JavaFileObject step(String name, String annotation){
+        String simpleName = name.substring(name.lastIndexOf('.') + 1);
+        return source(name, "@com.ukom.aboot.Step(" + annotation + ")\n"
+                + "public class " + simpleName + " extends com.ukom.aboot.BootStep {\n" + BODY + "}\n");
+    }
+
+    private static JavaFileObject source(String name, String body){
+        final String code = "package " + name.substring(0, name.lastIndexOf('.')) + ";\n\n" + body;
+        return new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static List<String> names(BootRegistry registry){
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < registry.size(); i++) names.add(registry.create(i).getClass().getName());
+        return names;
+    }
+
+    private static Compilation compile(List<File> classpath, String option, JavaFileObject... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        File output = Files.createTempDirectory("aboot-processor").toFile();
+        StringBuilder path = new StringBuilder(System.getProperty("java.class.path"));
+        for (File file : classpath) path.append(File.pathSeparator).append(file.getPath());
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)){
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList(option, "-classpath", path.toString(),
+                            "-d", output.getPath(), "-s", output.getPath()),
+                    null, Arrays.asList(sources));
+            task.setProcessors(Collections.singletonList(new BootStepProcessor()));
+            task.call();
+        }
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()){
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) errors.add(diagnostic.getMessage(null));
+        }
+        return new Compilation(output, errors, classpath);
+    }
+
+    private static final class Compilation {
+        final File output;
+        final List<String> errors;
+        final List<File> classpath;
+
+        Compilation(File output, List<String> errors, List<File> classpath){
+            this.output = output;
+            this.errors = errors;
+            this.classpath = classpath;
+        }
+
+        BootRegistry registry(String name) throws Exception {
+            List<URL> urls = new ArrayList<>();
+            urls.add(output.toURI().toURL());
+            for (File file : classpath) urls.add(file.toURI().toURL());
+            ClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), BootStepProcessorTest.class.getClassLoader());
+            return (BootRegistry) loader.loadClass(name).getDeclaredConstructor().newInstance();
+        }
+    }
+}
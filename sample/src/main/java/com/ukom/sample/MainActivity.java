@@ -13,14 +13,10 @@ import com.ukom.aboot.VariableContainer;
 import com.ukom.aboot.Result;
 
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
 
-    private static Executor executor = Executors.newFixedThreadPool(4);
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -43,6 +39,8 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onTaskFinished(TaskResult result) {
                 Log.i(TAG, "onTaskFinished: " + result);
+                //关键路径、松弛时间与工作线程延迟
+                if (result.getReport() != null) Log.i(TAG, "onTaskFinished: " + result.getReport());
 
                 if (result.isSuccessful()){
                     Result<?> stepResult = result.getStepResult(BStep.TYPE);
@@ -75,14 +73,17 @@ public class MainActivity extends AppCompatActivity {
             return TYPE;
         }
 
+        @Override
+        public Lane getLane() {
+            return Lane.CPU;
+        }
+
         @Override
         public void executeImpl(VariableContainer container, Callback callback) {
-            executor.execute(() -> {
-                String b = (String)container.getVariable(BStep.TYPE);
-                Object c = container.getVariable(CStep.TYPE);
-                Log.i(TAG, "AStep, executeImpl: b: " + b + ", c: " + c);
-                callback.onStepFinished(TYPE, Result.success());
-            });
+            String b = (String)container.getVariable(BStep.TYPE);
+            Object c = container.getVariable(CStep.TYPE);
+            Log.i(TAG, "AStep, executeImpl: b: " + b + ", c: " + c);
+            callback.onStepFinished(TYPE, Result.success());
         }
     }
 
@@ -98,18 +99,21 @@ public class MainActivity extends AppCompatActivity {
             return TYPE;
         }
 
+        @Override
+        public Lane getLane() {
+            return Lane.IO;
+        }
+
         @Override
         public void executeImpl(VariableContainer container, Callback callback) {
-            executor.execute(() -> {
-                try {
-                    Log.i(TAG, "BStep, executeImpl: ");
-                    Thread.sleep(1000);
-                    Result<String> result = Result.success("haha");
-                    callback.onStepFinished(TYPE, result);
-                } catch (InterruptedException e) {
-                    callback.onStepFinished(TYPE, Result.failure(e));
-                }
-            });
+            try {
+                Log.i(TAG, "BStep, executeImpl: ");
+                Thread.sleep(1000);
+                Result<String> result = Result.success("haha");
+                callback.onStepFinished(TYPE, result);
+            } catch (InterruptedException e) {
+                callback.onStepFinished(TYPE, Result.failure(e));
+            }
         }
     }
 
@@ -121,18 +125,29 @@ public class MainActivity extends AppCompatActivity {
             return TYPE;
         }
 
+        @Override
+        public Lane getLane() {
+            return Lane.IO;
+        }
+
+        //最多执行 10 秒，超时后以失败的结果结束
+        @Override
+        public long getTimeout() {
+            return 10_000;
+        }
+
         @Override
         public void executeImpl(VariableContainer container, Callback callback) {
-            executor.execute(() -> {
-                try {
-                    Log.i(TAG, "CStep, executeImpl: ");
-                    Thread.sleep(5000);
-                    callback.onStepFinished(TYPE, Result.success(17378L));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+            try {
+                Log.i(TAG, "CStep, executeImpl: ");
+                //分段等待，及时响应取消
+                for (int i = 0; i < 50 && !getCancellationToken().isCancelled(); i++){
+                    Thread.sleep(100);
                 }
-
-            });
+                callback.onStepFinished(TYPE, Result.success(17378L));
+            } catch (InterruptedException e) {
+                callback.onStepFinished(TYPE, Result.failure(e));
+            }
         }
     }
 
@@ -144,12 +159,11 @@ public class MainActivity extends AppCompatActivity {
             return TYPE;
         }
 
+        //默认在 BootTask 的工作线程中执行
         @Override
         public void executeImpl(VariableContainer container, Callback callback) {
-            executor.execute(() -> {
-                Log.i(TAG, "DStep, executeImpl: ");
-                callback.onStepFinished(TYPE, Result.success());
-            });
+            Log.i(TAG, "DStep, executeImpl: ");
+            callback.onStepFinished(TYPE, Result.success());
         }
     }
 